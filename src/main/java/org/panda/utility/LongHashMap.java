@@ -0,0 +1,177 @@
+package org.panda.utility;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing map from primitive longs to objects, like LongHashSet.
+ */
+public class LongHashMap<V>
+{
+	private static final float LOAD_FACTOR = 0.5F;
+
+	private long[] keys;
+	private Object[] values;
+	private boolean[] used;
+	private int size;
+	private int mask;
+	private int shift;
+
+	public LongHashMap()
+	{
+		this(16);
+	}
+
+	public LongHashMap(int expectedSize)
+	{
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) * 2 - 1);
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		values = new Object[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+		shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	private int slot(long key)
+	{
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift) & mask;
+	}
+
+	/**
+	 * Gets the value of the key, or null if the key is not in the map.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key)
+	{
+		int i = slot(key);
+		while (used[i])
+		{
+			if (keys[i] == key) return (V) values[i];
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	public boolean containsKey(long key)
+	{
+		int i = slot(key);
+		while (used[i])
+		{
+			if (keys[i] == key) return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Puts the value for the key and returns the previous value, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value)
+	{
+		int i = slot(key);
+		while (used[i])
+		{
+			if (keys[i] == key)
+			{
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		used[i] = true;
+		if (++size > keys.length * LOAD_FACTOR) grow();
+		return null;
+	}
+
+	/**
+	 * Removes the key and returns its value, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key)
+	{
+		int i = slot(key);
+		while (used[i])
+		{
+			if (keys[i] == key)
+			{
+				V old = (V) values[i];
+				shiftBack(i);
+				size--;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Moves the following entries of the probe chain back into the emptied slot, so no deletion markers are needed.
+	 */
+	private void shiftBack(int gap)
+	{
+		int i = gap;
+		while (true)
+		{
+			i = (i + 1) & mask;
+			if (!used[i]) break;
+
+			int home = slot(keys[i]);
+
+			// Move the entry if its home slot is not between the gap and its current position, cyclically
+			if (((i - home) & mask) >= ((i - gap) & mask))
+			{
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		used[gap] = false;
+		values[gap] = null;
+	}
+
+	private void grow()
+	{
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(keys.length * 2);
+
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldUsed[i])
+			{
+				int j = slot(oldKeys[i]);
+				while (used[j]) j = (j + 1) & mask;
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+				used[j] = true;
+			}
+		}
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(used, false);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+}
@@ -0,0 +1,147 @@
+package org.panda.utility;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A set of primitive longs with open addressing, which does not create an object per element.
+ */
+public class LongHashSet implements Serializable
+{
+	private static final float LOAD_FACTOR = 0.5F;
+
+	private long[] keys;
+	private boolean[] used;
+	private int size;
+	private int mask;
+	private int shift;
+
+	public LongHashSet()
+	{
+		this(16);
+	}
+
+	public LongHashSet(int expectedSize)
+	{
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) * 2 - 1);
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+		shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	private int slot(long key)
+	{
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift) & mask;
+	}
+
+	/**
+	 * Adds the key to the set, and tells if it was not in the set.
+	 */
+	public boolean add(long key)
+	{
+		int i = slot(key);
+		while (used[i])
+		{
+			if (keys[i] == key) return false;
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		used[i] = true;
+		if (++size > keys.length * LOAD_FACTOR) grow();
+		return true;
+	}
+
+	public boolean contains(long key)
+	{
+		int i = slot(key);
+		while (used[i])
+		{
+			if (keys[i] == key) return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the key from the set, and tells if it was in the set.
+	 */
+	public boolean remove(long key)
+	{
+		int i = slot(key);
+		while (used[i])
+		{
+			if (keys[i] == key)
+			{
+				shiftBack(i);
+				size--;
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Moves the following keys of the probe chain back into the emptied slot, so no deletion markers are needed.
+	 */
+	private void shiftBack(int gap)
+	{
+		int i = gap;
+		while (true)
+		{
+			i = (i + 1) & mask;
+			if (!used[i]) break;
+
+			int home = slot(keys[i]);
+
+			// Move the key if its home slot is not between the gap and its current position, cyclically
+			if (((i - home) & mask) >= ((i - gap) & mask))
+			{
+				keys[gap] = keys[i];
+				gap = i;
+			}
+		}
+		used[gap] = false;
+	}
+
+	private void grow()
+	{
+		long[] oldKeys = keys;
+		boolean[] oldUsed = used;
+		allocate(keys.length * 2);
+
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldUsed[i])
+			{
+				int j = slot(oldKeys[i]);
+				while (used[j]) j = (j + 1) & mask;
+				keys[j] = oldKeys[i];
+				used[j] = true;
+			}
+		}
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(used, false);
+		size = 0;
+	}
+}
@@ -0,0 +1,523 @@
+package org.panda.utility;
+
+import org.panda.utility.graph.DirectedGraph;
+import org.panda.utility.graph.NodeIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Index of the relation lines of a SIF file, saved next to it with the ".idx" extension. Its methods give the same
+ * results as the SIFFileUtil methods of the same name, reading only the selected lines.
+ */
+public class SIFIndex
+{
+	private static final int MAGIC = 0x53494658;
+	/**
+	 * Version 2 also ends lines at a lone "\r".
+	 */
+	private static final int VERSION = 2;
+
+	private static final int SAMPLE_COUNT = 16;
+	private static final int SAMPLE_SIZE = 1 << 16;
+	private static final int READ_SIZE = 1 << 16;
+
+	private final String sifFile;
+	private final NodeIndex nodes;
+
+	private final long[] lineOffset;
+	private final int[] lineSource;
+	private final int[] lineTarget;
+
+	// Lines of node v as source are sourceLines[sourceStart[v] .. sourceStart[v+1]), similar for targets
+	private final int[] sourceStart;
+	private final int[] sourceLines;
+	private final int[] targetStart;
+	private final int[] targetLines;
+
+	private SIFIndex(String sifFile, NodeIndex nodes, long[] lineOffset, int[] lineSource, int[] lineTarget)
+	{
+		this.sifFile = sifFile;
+		this.nodes = nodes;
+		this.lineOffset = lineOffset;
+		this.lineSource = lineSource;
+		this.lineTarget = lineTarget;
+
+		sourceStart = new int[nodes.size() + 1];
+		sourceLines = group(lineSource, sourceStart);
+		targetStart = new int[nodes.size() + 1];
+		targetLines = group(lineTarget, targetStart);
+	}
+
+	/**
+	 * Groups the line numbers by the given node of each line, keeping the file order in each group.
+	 */
+	private static int[] group(int[] node, int[] start)
+	{
+		for (int v : node)
+		{
+			start[v + 1]++;
+		}
+		for (int v = 0; v < start.length - 1; v++)
+		{
+			start[v + 1] += start[v];
+		}
+
+		int[] pos = Arrays.copyOf(start, start.length - 1);
+		int[] lines = new int[node.length];
+		for (int i = 0; i < node.length; i++)
+		{
+			lines[pos[node[i]]++] = i;
+		}
+		return lines;
+	}
+
+	/**
+	 * Reads the index file if it is up to date, otherwise indexes the SIF file and saves the index.
+	 */
+	public static SIFIndex open(String sifFile) throws IOException
+	{
+		String indexFile = sifFile + ".idx";
+		long checksum = checksum(sifFile);
+
+		if (Files.exists(Paths.get(indexFile)))
+		{
+			SIFIndex index = read(sifFile, indexFile, checksum);
+			if (index != null) return index;
+		}
+
+		SIFIndex index = build(sifFile);
+		try
+		{
+			index.write(indexFile, checksum);
+		}
+		catch (IOException e)
+		{
+			// The index is still usable, only it will be built again next time
+			e.printStackTrace();
+		}
+		return index;
+	}
+
+	/**
+	 * Indexes the SIF file without using or saving an index file.
+	 */
+	public static SIFIndex build(String sifFile) throws IOException
+	{
+		NodeIndex nodes = new NodeIndex();
+		Relations rels = new Relations();
+
+		byte[] line = new byte[256];
+		int lineLength = 0;
+		long lineStart = 0;
+		long pos = 0;
+
+		try (InputStream in = new BufferedInputStream(new FileInputStream(sifFile), READ_SIZE))
+		{
+			byte[] buf = new byte[READ_SIZE];
+			for (int n = in.read(buf); ; n = in.read(buf))
+			{
+				for (int i = 0; i < n; i++)
+				{
+					// "\r\n" gives an empty line between its two line ends, which is not a relation
+					if (buf[i] != '\n' && buf[i] != '\r')
+					{
+						if (lineLength == line.length) line = Arrays.copyOf(line, lineLength * 2);
+						line[lineLength++] = buf[i];
+						continue;
+					}
+
+					parseLine(line, lineLength, lineStart, nodes, rels);
+					lineStart = pos + i + 1;
+					lineLength = 0;
+				}
+
+				if (n < 0)
+				{
+					parseLine(line, lineLength, lineStart, nodes, rels);
+					break;
+				}
+				pos += n;
+			}
+		}
+
+		return new SIFIndex(sifFile, nodes, Arrays.copyOf(rels.offsets, rels.size),
+			Arrays.copyOf(rels.sources, rels.size), Arrays.copyOf(rels.targets, rels.size));
+	}
+
+	/**
+	 * Adds the line to the relations if it has at least three tab separated tokens.
+	 */
+	private static void parseLine(byte[] line, int length, long offset, NodeIndex nodes, Relations rels)
+	{
+		int tab1 = indexOf(line, 0, length);
+		if (tab1 < 0) return;
+		int tab2 = indexOf(line, tab1 + 1, length);
+		if (tab2 < 0) return;
+
+		boolean hasMore = false;
+		for (int i = tab2 + 1; i < length && !hasMore; i++)
+		{
+			hasMore = line[i] != '\t';
+		}
+		if (!hasMore) return;
+
+		int end = indexOf(line, tab2 + 1, length);
+		if (end < 0) end = length;
+
+		rels.add(offset, nodes.intern(new String(line, 0, tab1, StandardCharsets.UTF_8)),
+			nodes.intern(new String(line, tab2 + 1, end - tab2 - 1, StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Growing arrays of the relation lines during indexing.
+	 */
+	private static class Relations
+	{
+		long[] offsets = new long[1024];
+		int[] sources = new int[1024];
+		int[] targets = new int[1024];
+		int size;
+
+		void add(long offset, int source, int target)
+		{
+			if (size == offsets.length)
+			{
+				offsets = Arrays.copyOf(offsets, size * 2);
+				sources = Arrays.copyOf(sources, size * 2);
+				targets = Arrays.copyOf(targets, size * 2);
+			}
+			offsets[size] = offset;
+			sources[size] = source;
+			targets[size++] = target;
+		}
+	}
+
+	private static int indexOf(byte[] line, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			if (line[i] == '\t') return i;
+		}
+		return -1;
+	}
+
+	//--- Section: Index file -----------------------------------------------------------------------------------------|
+
+	/**
+	 * Computes a checksum of the size, modification time and some sampled blocks of the file.
+	 */
+	private static long checksum(String sifFile) throws IOException
+	{
+		File file = new File(sifFile);
+		long size = file.length();
+
+		CRC32 crc = new CRC32();
+		ByteBuffer header = ByteBuffer.allocate(16);
+		header.putLong(size);
+		header.putLong(file.lastModified());
+		crc.update(header.array());
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			ByteBuffer block = ByteBuffer.allocate(SAMPLE_SIZE);
+			for (int i = 0; i < SAMPLE_COUNT; i++)
+			{
+				long pos = size <= SAMPLE_SIZE ? 0 : (size - SAMPLE_SIZE) / (SAMPLE_COUNT - 1) * i;
+				block.clear();
+				while (block.hasRemaining() && channel.read(block, pos + block.position()) > 0);
+				crc.update(block.array(), 0, block.position());
+				if (size <= SAMPLE_SIZE) break;
+			}
+		}
+		return crc.getValue();
+	}
+
+	private void write(String indexFile, long checksum) throws IOException
+	{
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile),
+			READ_SIZE)))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(checksum);
+
+			out.writeInt(nodes.size());
+			for (int i = 0; i < nodes.size(); i++)
+			{
+				out.writeUTF(nodes.getName(i));
+			}
+
+			out.writeInt(lineOffset.length);
+			for (int i = 0; i < lineOffset.length; i++)
+			{
+				out.writeLong(lineOffset[i]);
+				out.writeInt(lineSource[i]);
+				out.writeInt(lineTarget[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads the index file, or returns null if it is stale or is not an index file.
+	 */
+	private static SIFIndex read(String sifFile, String indexFile, long checksum) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile),
+			READ_SIZE)))
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != checksum) return null;
+
+			int nodeCount = in.readInt();
+			NodeIndex nodes = new NodeIndex(nodeCount);
+			for (int i = 0; i < nodeCount; i++)
+			{
+				nodes.intern(in.readUTF());
+			}
+
+			int size = in.readInt();
+			long[] offsets = new long[size];
+			int[] sources = new int[size];
+			int[] targets = new int[size];
+			for (int i = 0; i < size; i++)
+			{
+				offsets[i] = in.readLong();
+				sources[i] = in.readInt();
+				targets[i] = in.readInt();
+			}
+			return new SIFIndex(sifFile, nodes, offsets, sources, targets);
+		}
+		catch (EOFException e)
+		{
+			return null;
+		}
+	}
+
+	//--- Section: Queries --------------------------------------------------------------------------------------------|
+
+	public Set<String> getNodes()
+	{
+		Set<String> set = new HashSet<>();
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			set.add(nodes.getName(i));
+		}
+		return set;
+	}
+
+	public int getRelationCount()
+	{
+		return lineOffset.length;
+	}
+
+	/**
+	 * Gets the relation lines of the seeds in the given direction, in the order of the file.
+	 */
+	public List<String> getLines(Collection<String> seed, StreamDirection d) throws IOException
+	{
+		return readLines(selectLines(seed, d));
+	}
+
+	/**
+	 * Gets the other ends of the relations selected with getLines, excluding the seeds. Does not read the SIF file.
+	 */
+	public Set<String> getNeighborNodes(Collection<String> seed, StreamDirection d)
+	{
+		Set<String> neigh = new HashSet<>();
+		for (int line : selectLines(seed, d))
+		{
+			neigh.add(nodes.getName(lineSource[line]));
+			neigh.add(nodes.getName(lineTarget[line]));
+		}
+		neigh.removeAll(seed);
+		return neigh;
+	}
+
+	public boolean writeNeighborhood(Collection<String> seed, String outFile, StreamDirection d) throws IOException
+	{
+		List<String> select = getLines(seed, d);
+		if (select.isEmpty()) return false;
+
+		FileUtil.writeLinesToFile(select, outFile);
+		return true;
+	}
+
+	public void writeDownstream(Collection<String> seed, String outFile) throws IOException
+	{
+		writeLines(getLines(seed, StreamDirection.DOWNSTREAM), outFile);
+	}
+
+	/**
+	 * Writes the lines whose source and target have a relation in the subgraph.
+	 */
+	public void writeSubgraph(DirectedGraph subgraph, String outFile) throws IOException
+	{
+		List<Integer> sources = new ArrayList<>();
+		for (String node : subgraph.getSymbols())
+		{
+			int id = nodes.getId(node);
+			if (id >= 0) sources.add(id);
+		}
+
+		int[] select = new int[16];
+		int size = 0;
+		for (int s : sources)
+		{
+			for (int i = sourceStart[s]; i < sourceStart[s + 1]; i++)
+			{
+				int line = sourceLines[i];
+				if (subgraph.hasRelation(nodes.getName(s), nodes.getName(lineTarget[line])))
+				{
+					if (size == select.length) select = Arrays.copyOf(select, size * 2);
+					select[size++] = line;
+				}
+			}
+		}
+		select = Arrays.copyOf(select, size);
+		Arrays.sort(select);
+
+		writeLines(readLines(select), outFile);
+	}
+
+	/**
+	 * Writes the relations in the keep set, given as tab separated source, relation type and target.
+	 */
+	public void writeSubgraph(Set<String> keep, String outFile) throws IOException
+	{
+		Set<String> sources = new HashSet<>();
+		for (String key : keep)
+		{
+			int tab = key.indexOf('\t');
+			if (tab >= 0) sources.add(key.substring(0, tab));
+		}
+
+		List<String> select = new ArrayList<>();
+		for (String line : getLines(sources, StreamDirection.DOWNSTREAM))
+		{
+			String[] t = line.split("\t");
+			if (keep.contains(t[0] + "\t" + t[1] + "\t" + t[2])) select.add(line);
+		}
+		writeLines(select, outFile);
+	}
+
+	/**
+	 * Converts the relations to a map from sources to targets without reading the SIF file.
+	 */
+	public Map<String, Set<String>> convertToMap()
+	{
+		Map<String, Set<String>> map = new HashMap<>();
+		for (int i = 0; i < lineOffset.length; i++)
+		{
+			map.computeIfAbsent(nodes.getName(lineSource[i]), k -> new HashSet<>())
+				.add(nodes.getName(lineTarget[i]));
+		}
+		return map;
+	}
+
+	/**
+	 * Gets the lines of the seeds in the given direction, sorted and without duplicates.
+	 */
+	private int[] selectLines(Collection<String> seed, StreamDirection d)
+	{
+		boolean dw = d != StreamDirection.UPSTREAM;
+		boolean up = d != StreamDirection.DOWNSTREAM;
+
+		int[] select = new int[16];
+		int size = 0;
+		for (String node : new HashSet<>(seed))
+		{
+			int id = nodes.getId(node);
+			if (id < 0) continue;
+
+			int cnt = (dw ? sourceStart[id + 1] - sourceStart[id] : 0) + (up ? targetStart[id + 1] - targetStart[id] : 0);
+			if (size + cnt > select.length) select = Arrays.copyOf(select, Math.max(size + cnt, select.length * 2));
+
+			if (dw)
+			{
+				System.arraycopy(sourceLines, sourceStart[id], select, size, sourceStart[id + 1] - sourceStart[id]);
+				size += sourceStart[id + 1] - sourceStart[id];
+			}
+			if (up)
+			{
+				System.arraycopy(targetLines, targetStart[id], select, size, targetStart[id + 1] - targetStart[id]);
+				size += targetStart[id + 1] - targetStart[id];
+			}
+		}
+
+		Arrays.sort(select, 0, size);
+		int k = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (k == 0 || select[i] != select[k - 1]) select[k++] = select[i];
+		}
+		return Arrays.copyOf(select, k);
+	}
+
+	/**
+	 * Reads the given lines. Line numbers should be sorted, so that the nearby lines are read with the same block.
+	 */
+	private List<String> readLines(int[] lines) throws IOException
+	{
+		List<String> result = new ArrayList<>(lines.length);
+		if (lines.length == 0) return result;
+
+		try (FileChannel channel = FileChannel.open(Paths.get(sifFile), StandardOpenOption.READ))
+		{
+			ByteBuffer buf = ByteBuffer.allocate(READ_SIZE);
+			long bufStart = 0;
+			int bufLength = 0;
+
+			for (int line : lines)
+			{
+				long offset = lineOffset[line];
+				boolean inBuffer = offset >= bufStart && offset - bufStart < bufLength;
+				int from = inBuffer ? (int) (offset - bufStart) : 0;
+				int end = inBuffer ? indexOfLineEnd(buf.array(), from, bufLength) : -1;
+
+				// Refill from the line start, enlarging the buffer until it contains the whole line
+				while (end < 0)
+				{
+					buf.clear();
+					while (buf.hasRemaining() && channel.read(buf, offset + buf.position()) > 0);
+					bufStart = offset;
+					bufLength = buf.position();
+					from = 0;
+
+					end = indexOfLineEnd(buf.array(), 0, bufLength);
+					if (end < 0)
+					{
+						// Last line of the file without a line break
+						if (bufLength < buf.capacity()) end = bufLength;
+						else buf = ByteBuffer.allocate(buf.capacity() * 2);
+					}
+				}
+
+				result.add(new String(buf.array(), from, end - from, StandardCharsets.UTF_8));
+			}
+		}
+		return result;
+	}
+
+	private static int indexOfLineEnd(byte[] buf, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			if (buf[i] == '\n' || buf[i] == '\r') return i;
+		}
+		return -1;
+	}
+
+	private static void writeLines(List<String> lines, String outFile) throws IOException
+	{
+		BufferedWriter writer = Files.newBufferedWriter(Paths.get(outFile));
+		lines.forEach(l -> FileUtil.lnwrite(l, writer));
+		writer.close();
+	}
+}
@@ -0,0 +1,691 @@
+package org.panda.utility;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Set operations over the relations of SIF files that do not fit in memory, using an external sort of the 64-bit
+ * hashes of the relations. Relations with colliding hashes are taken as the same.
+ */
+public class SIFSetOperations
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final int MIN_BUFFER_SIZE = 1 << 10;
+
+	/**
+	 * Maximum number of run files that are merged at once.
+	 */
+	private static final int MAX_FAN_IN = 64;
+
+	/**
+	 * Position of a line is the file index in the high bits and the line number in these low bits.
+	 */
+	private static final int LINE_BITS = 40;
+
+	private static final int MAX_FILES = 16;
+
+	/**
+	 * Parts of a run smaller than this are not sorted in separate threads.
+	 */
+	private static final int MIN_SLICE = 1 << 16;
+
+	private long memoryBudget = 256L << 20;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private Path tempDir;
+
+	/**
+	 * Sets the maximum memory in bytes used for a sorting run or for the buffers of a merge.
+	 */
+	public void setMemoryBudget(long memoryBudget)
+	{
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Sets the number of parts of a run that are sorted in parallel.
+	 */
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Sets the directory of the temporary run files. Uses the default temporary directory if not set.
+	 */
+	public void setTempDir(String tempDir)
+	{
+		this.tempDir = Paths.get(tempDir);
+	}
+
+	//--- Section: Operations -----------------------------------------------------------------------------------------|
+
+	/**
+	 * Writes the lines of the second file whose relation is also in the first file.
+	 */
+	public void writeIntersection(String sifFile1, String sifFile2, String outFile) throws IOException
+	{
+		writeSelected(new String[]{sifFile1, sifFile2}, outFile, (mask, file) -> mask == 3 && file == 1, false);
+	}
+
+	/**
+	 * Writes the lines of the first file whose relation is not in the second file.
+	 */
+	public void writeDifference(String sifFile1, String sifFile2, String outFile) throws IOException
+	{
+		writeSelected(new String[]{sifFile1, sifFile2}, outFile, (mask, file) -> mask == 1, false);
+	}
+
+	/**
+	 * Writes the first line of each relation in the files, taking the files in the given order.
+	 */
+	public void writeUnion(String outFile, String... sifFiles) throws IOException
+	{
+		writeSelected(sifFiles, outFile, (mask, file) -> true, true);
+	}
+
+	/**
+	 * Counts the distinct relations in each Venn region of the files, in the order of CollectionUtil.getVennCounts.
+	 */
+	public long[] getVennCounts(String... sifFiles) throws IOException
+	{
+		long[] maskCounts = new long[1 << sifFiles.length];
+
+		Path dir = createTempDir();
+		try (Merger records = sortRecords(sifFiles, dir, memoryBudget))
+		{
+			Group group = new Group();
+			while (group.read(records))
+			{
+				maskCounts[group.mask]++;
+			}
+		}
+		finally
+		{
+			FileUtil.delete(dir.toFile());
+		}
+
+		String[] names = CollectionUtil.getSetNamesArray(sifFiles.length);
+		long[] counts = new long[names.length];
+		for (int i = 0; i < names.length; i++)
+		{
+			int mask = 0;
+			for (char c : names[i].toCharArray())
+			{
+				mask |= 1 << (c - 'A');
+			}
+			counts[i] = maskCounts[mask];
+		}
+		return counts;
+	}
+
+	/**
+	 * Prints the Venn counts of the relations in the files.
+	 */
+	public void printVennCounts(String... sifFiles) throws IOException
+	{
+		long[] cnt = getVennCounts(sifFiles);
+		String[] name = CollectionUtil.getSetNamesArray(sifFiles.length);
+
+		CollectionUtil.printNameMapping(sifFiles);
+
+		for (int i = 0; i < cnt.length; i++)
+		{
+			System.out.print(name[i] + "\t" + cnt[i]);
+
+			if (i < sifFiles.length)
+			{
+				long size = 0;
+				for (int j = 0; j < cnt.length; j++)
+				{
+					if (name[j].indexOf(name[i].charAt(0)) >= 0) size += cnt[j];
+				}
+
+				System.out.print("\t" + FormatUtil.roundToSignificantDigits((cnt[i] / (double) size) * 100, 3));
+			}
+
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Decides if a line is written, given the files that contain its relation as a bitmask, and the file of the line.
+	 */
+	private interface Selector
+	{
+		boolean select(int mask, int file);
+	}
+
+	private void writeSelected(String[] files, String outFile, Selector selector, boolean firstOnly)
+		throws IOException
+	{
+		Path dir = createTempDir();
+		try
+		{
+			// The merge of the records and the selected positions share the budget
+			Sorter selected = new Sorter(dir, memoryBudget / 2);
+			try (Merger records = sortRecords(files, dir, memoryBudget / 2))
+			{
+				Group group = new Group();
+				while (group.read(records))
+				{
+					int n = firstOnly ? 1 : group.size;
+					for (int i = 0; i < n; i++)
+					{
+						long pos = group.positions[i];
+						if (selector.select(group.mask, (int) (pos >>> LINE_BITS))) selected.add(pos, 0);
+					}
+				}
+			}
+
+			try (Merger positions = selected.finish(memoryBudget))
+			{
+				writeLines(files, positions, outFile);
+			}
+		}
+		finally
+		{
+			FileUtil.delete(dir.toFile());
+		}
+	}
+
+	/**
+	 * Sorts the relation lines of the files by their hashes, then by their positions.
+	 */
+	private Merger sortRecords(String[] files, Path dir, long mergeBudget) throws IOException
+	{
+		if (files.length > MAX_FILES) throw new IllegalArgumentException("At most " + MAX_FILES +
+			" files are supported. Given: " + files.length);
+
+		Sorter sorter = new Sorter(dir, memoryBudget);
+		for (int f = 0; f < files.length; f++)
+		{
+			try (BufferedReader reader = Files.newBufferedReader(Paths.get(files[f])))
+			{
+				long lineNo = 0;
+				for (String l = reader.readLine(); l != null; l = reader.readLine(), lineNo++)
+				{
+					String[] t = l.split("\t");
+					if (t.length > 2)
+					{
+						sorter.add(StringUtil.hash64(t[0], t[1], t[2]), ((long) f << LINE_BITS) | lineNo);
+					}
+				}
+			}
+		}
+		return sorter.finish(mergeBudget);
+	}
+
+	/**
+	 * Copies the lines at the given sorted positions from the files.
+	 */
+	private void writeLines(String[] files, Merger positions, String outFile) throws IOException
+	{
+		BufferedWriter writer = Files.newBufferedWriter(Paths.get(outFile));
+
+		boolean has = positions.next();
+		for (int f = 0; f < files.length && has; f++)
+		{
+			try (BufferedReader reader = Files.newBufferedReader(Paths.get(files[f])))
+			{
+				long lineNo = 0;
+				for (String l = reader.readLine(); l != null && has; l = reader.readLine(), lineNo++)
+				{
+					if (positions.a == (((long) f << LINE_BITS) | lineNo))
+					{
+						FileUtil.writeln(l, writer);
+						has = positions.next();
+					}
+				}
+			}
+		}
+
+		writer.close();
+	}
+
+	private Path createTempDir() throws IOException
+	{
+		return tempDir == null ? Files.createTempDirectory("sif") : Files.createTempDirectory(tempDir, "sif");
+	}
+
+	/**
+	 * Records of the same relation in the merged order.
+	 */
+	private static class Group
+	{
+		long[] positions = new long[16];
+		int size;
+		int mask;
+
+		private boolean pending;
+
+		boolean read(Merger records) throws IOException
+		{
+			if (!pending && !records.next()) return false;
+
+			long hash = records.a;
+			size = 0;
+			mask = 0;
+			do
+			{
+				if (size == positions.length) positions = Arrays.copyOf(positions, size * 2);
+				positions[size++] = records.b;
+				mask |= 1 << (int) (records.b >>> LINE_BITS);
+				pending = records.next();
+			}
+			while (pending && records.a == hash);
+
+			return true;
+		}
+	}
+
+	//--- Section: External sort --------------------------------------------------------------------------------------|
+
+	/**
+	 * Size of the buffer of each run file, taking the buffers of a merge pass and its output out of the budget.
+	 */
+	private static int bufferSize(long budget)
+	{
+		return (int) Math.max(MIN_BUFFER_SIZE, Math.min(BUFFER_SIZE, budget / (MAX_FAN_IN + 1)));
+	}
+
+	/**
+	 * Number of runs merged in one pass, so that their buffers and the output buffer fit the budget.
+	 */
+	private static int fanIn(long budget)
+	{
+		return (int) Math.max(2, Math.min(MAX_FAN_IN, budget / bufferSize(budget) - 1));
+	}
+
+	/**
+	 * Collects records of two longs, and saves them to sorted run files when the memory budget is full.
+	 */
+	private class Sorter
+	{
+		private final Path dir;
+		private final int bufferSize;
+		private final int capacity;
+		private long[] a;
+		private long[] b;
+		private int size;
+		private List<Path> runs;
+
+		Sorter(Path dir, long budget)
+		{
+			this.dir = dir;
+			bufferSize = bufferSize(budget);
+			capacity = (int) Math.max(1024, Math.min(Integer.MAX_VALUE - 8, (budget - bufferSize) / 16));
+			a = new long[Math.min(capacity, 1024)];
+			b = new long[a.length];
+			runs = new ArrayList<>();
+		}
+
+		void add(long x, long y) throws IOException
+		{
+			if (size == capacity) spill();
+			if (size == a.length)
+			{
+				int length = (int) Math.min(capacity, a.length * 2L);
+				a = Arrays.copyOf(a, length);
+				b = Arrays.copyOf(b, length);
+			}
+			a[size] = x;
+			b[size++] = y;
+		}
+
+		/**
+		 * Sorts the parts of the collected records in parallel, and saves their merge as one run.
+		 */
+		private void spill() throws IOException
+		{
+			int slices = Math.max(1, Math.min(threads, size / MIN_SLICE));
+			int[] bounds = new int[slices + 1];
+			for (int i = 0; i <= slices; i++)
+			{
+				bounds[i] = (int) ((long) size * i / slices);
+			}
+
+			IntStream.range(0, slices).parallel().forEach(i -> sort(a, b, bounds[i], bounds[i + 1]));
+
+			List<Records> parts = new ArrayList<>();
+			for (int i = 0; i < slices; i++)
+			{
+				parts.add(new Slice(a, b, bounds[i], bounds[i + 1]));
+			}
+			try (Merger merger = new Merger(parts))
+			{
+				runs.add(write(merger));
+			}
+			size = 0;
+		}
+
+		private Path write(Records records) throws IOException
+		{
+			Path run = Files.createTempFile(dir, "run", ".bin");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(run), bufferSize)))
+			{
+				while (records.next())
+				{
+					out.writeLong(records.a);
+					out.writeLong(records.b);
+				}
+			}
+			return run;
+		}
+
+		/**
+		 * Saves the remaining records and merges the runs in passes within the budget.
+		 */
+		Merger finish(long budget) throws IOException
+		{
+			if (size > 0) spill();
+			a = null;
+			b = null;
+
+			int fanIn = fanIn(budget);
+			int bufferSize = bufferSize(budget);
+
+			while (runs.size() > fanIn)
+			{
+				List<Path> merged = new ArrayList<>();
+				for (int i = 0; i < runs.size(); i += fanIn)
+				{
+					List<Path> group = runs.subList(i, Math.min(runs.size(), i + fanIn));
+					try (Merger merger = open(group, bufferSize))
+					{
+						merged.add(write(merger));
+					}
+					for (Path run : group)
+					{
+						Files.delete(run);
+					}
+				}
+				runs = merged;
+			}
+			return open(runs, bufferSize);
+		}
+	}
+
+	/**
+	 * Opens the run files for merging.
+	 */
+	private static Merger open(List<Path> runs, int bufferSize) throws IOException
+	{
+		List<Records> in = new ArrayList<>();
+		try
+		{
+			for (Path run : runs)
+			{
+				in.add(new RunFile(new DataInputStream(new BufferedInputStream(Files.newInputStream(run),
+					bufferSize))));
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			closeAll(in, e);
+			throw e;
+		}
+		return new Merger(in);
+	}
+
+	private static void closeAll(List<Records> in, Throwable cause)
+	{
+		for (Records records : in)
+		{
+			try
+			{
+				records.close();
+			}
+			catch (IOException e)
+			{
+				cause.addSuppressed(e);
+			}
+		}
+	}
+
+	/**
+	 * Sorted records that are read one at a time.
+	 */
+	private static abstract class Records implements Closeable
+	{
+		/**
+		 * Current record.
+		 */
+		long a;
+		long b;
+
+		/**
+		 * Moves to the next record, or returns false if there are no more.
+		 */
+		abstract boolean next() throws IOException;
+
+		@Override
+		public void close() throws IOException
+		{
+		}
+	}
+
+	private static class RunFile extends Records
+	{
+		private final DataInputStream in;
+
+		RunFile(DataInputStream in)
+		{
+			this.in = in;
+		}
+
+		@Override
+		boolean next() throws IOException
+		{
+			try
+			{
+				a = in.readLong();
+				b = in.readLong();
+				return true;
+			}
+			catch (EOFException e)
+			{
+				return false;
+			}
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	private static class Slice extends Records
+	{
+		private final long[] sa;
+		private final long[] sb;
+		private int i;
+		private final int to;
+
+		Slice(long[] sa, long[] sb, int from, int to)
+		{
+			this.sa = sa;
+			this.sb = sb;
+			this.i = from;
+			this.to = to;
+		}
+
+		@Override
+		boolean next()
+		{
+			if (i == to) return false;
+			a = sa[i];
+			b = sb[i++];
+			return true;
+		}
+	}
+
+	/**
+	 * Merges sorted records, using a heap of the inputs ordered by their current records.
+	 */
+	private static class Merger extends Records
+	{
+		private final Records[] in;
+		private final int[] heap;
+		private int heapSize;
+
+		Merger(List<Records> in) throws IOException
+		{
+			this.in = in.toArray(new Records[in.size()]);
+			heap = new int[this.in.length];
+
+			try
+			{
+				for (int i = 0; i < this.in.length; i++)
+				{
+					if (this.in[i].next()) heap[heapSize++] = i;
+				}
+			}
+			catch (IOException | RuntimeException e)
+			{
+				closeAll(in, e);
+				throw e;
+			}
+			for (int i = heapSize / 2 - 1; i >= 0; i--)
+			{
+				siftDown(i);
+			}
+		}
+
+		@Override
+		boolean next() throws IOException
+		{
+			if (heapSize == 0) return false;
+
+			Records r = in[heap[0]];
+			a = r.a;
+			b = r.b;
+
+			if (!r.next()) heap[0] = heap[--heapSize];
+			if (heapSize > 0) siftDown(0);
+			return true;
+		}
+
+		private void siftDown(int pos)
+		{
+			int r = heap[pos];
+			while (true)
+			{
+				int c = 2 * pos + 1;
+				if (c >= heapSize) break;
+				if (c + 1 < heapSize && less(heap[c + 1], heap[c])) c++;
+				if (!less(heap[c], r)) break;
+				heap[pos] = heap[c];
+				pos = c;
+			}
+			heap[pos] = r;
+		}
+
+		private boolean less(int r1, int r2)
+		{
+			return compare(in[r1].a, in[r1].b, in[r2].a, in[r2].b) < 0;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			IOException error = null;
+			for (Records records : in)
+			{
+				try
+				{
+					records.close();
+				}
+				catch (IOException e)
+				{
+					if (error == null) error = e;
+					else error.addSuppressed(e);
+				}
+			}
+			if (error != null) throw error;
+		}
+	}
+	private static int compare(long a1, long b1, long a2, long b2)
+	{
+		return a1 != a2 ? Long.compare(a1, a2) : Long.compare(b1, b2);
+	}
+
+	/**
+	 * Sorts the records in the range by their first, then second values, with a three-way quicksort.
+	 */
+	private static void sort(long[] a, long[] b, int from, int to)
+	{
+		while (to - from > 16)
+		{
+			int mid = (from + to) >>> 1;
+			int p = median(a, b, from, mid, to - 1);
+			long pa = a[p];
+			long pb = b[p];
+
+			int lt = from;
+			int i = from;
+			int gt = to;
+			while (i < gt)
+			{
+				int c = compare(a[i], b[i], pa, pb);
+				if (c < 0) swap(a, b, lt++, i++);
+				else if (c > 0) swap(a, b, i, --gt);
+				else i++;
+			}
+
+			// Recurse into the smaller side to bound the stack depth
+			if (lt - from < to - gt)
+			{
+				sort(a, b, from, lt);
+				from = gt;
+			}
+			else
+			{
+				sort(a, b, gt, to);
+				to = lt;
+			}
+		}
+
+		for (int i = from + 1; i < to; i++)
+		{
+			long x = a[i];
+			long y = b[i];
+			int j = i - 1;
+			while (j >= from && compare(a[j], b[j], x, y) > 0)
+			{
+				a[j + 1] = a[j];
+				b[j + 1] = b[j];
+				j--;
+			}
+			a[j + 1] = x;
+			b[j + 1] = y;
+		}
+	}
+
+	private static int median(long[] a, long[] b, int i, int j, int k)
+	{
+		if (compare(a[i], b[i], a[j], b[j]) < 0)
+		{
+			if (compare(a[j], b[j], a[k], b[k]) < 0) return j;
+			return compare(a[i], b[i], a[k], b[k]) < 0 ? k : i;
+		}
+		if (compare(a[i], b[i], a[k], b[k]) < 0) return i;
+		return compare(a[j], b[j], a[k], b[k]) < 0 ? k : j;
+	}
+
+	private static void swap(long[] a, long[] b, int i, int j)
+	{
+		long t = a[i];
+		a[i] = a[j];
+		a[j] = t;
+		t = b[i];
+		b[i] = b[j];
+		b[j] = t;
+	}
+}
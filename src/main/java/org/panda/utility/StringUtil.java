@@ -47,6 +47,31 @@ public class StringUtil
 	}
 
 
+	/**
+	 * Gets a 64-bit FNV-1a hash of the strings, mixed with the MurmurHash3 finalizer.
+	 */
+	public static long hash64(String... parts)
+	{
+		long h = 0xcbf29ce484222325L;
+		for (String s : parts)
+		{
+			for (int j = 0; j < s.length(); j++)
+			{
+				h ^= s.charAt(j);
+				h *= 0x100000001b3L;
+			}
+			h ^= '\t';
+			h *= 0x100000001b3L;
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
 	public static void main(String[] args)
 	{
 		String s = "<tr><td valign=\"top\"><img src=\"/icons/compressed.gif\" alt=\"[   ]\"></td><td><a href=\"gdac.broadinstitute.org_SKCM-TM.MutSigNozzleReport2CV.Level_4.2015082100.0.0.tar.gz\">gdac.broadinstitute.org_SKCM-";
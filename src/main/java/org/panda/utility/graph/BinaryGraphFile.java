@@ -0,0 +1,575 @@
+package org.panda.utility.graph;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Memory-mapped binary file format for graphs, which loads much faster than SIF. Strings are decoded only when they
+ * are accessed. Edge weights are not stored.
+ */
+public class BinaryGraphFile
+{
+	private static final int MAGIC = 0x50475246;
+	private static final int VERSION = 1;
+
+	private static final int DIRECTED = 0;
+	private static final int UNDIRECTED = 1;
+	private static final int SITE_SPECIFIC = 2;
+
+	private final ByteBuffer buf;
+	private final MappedDictionary names;
+	private final MappedDictionary pool;
+	private final String listName;
+	private final Section[] sections;
+
+	private BinaryGraphFile(ByteBuffer buf) throws IOException
+	{
+		this.buf = buf;
+
+		if (buf.getInt() != MAGIC) throw new IOException("Not a binary graph file.");
+		int version = buf.getInt();
+		if (version != VERSION) throw new IOException("Unsupported binary graph file version: " + version);
+
+		listName = readString(buf);
+		names = readDictionary(buf);
+		pool = readDictionary(buf);
+
+		int nodeCount = names.size();
+		sections = new Section[buf.getInt()];
+		for (int i = 0; i < sections.length; i++)
+		{
+			Section s = new Section();
+			s.name = readString(buf);
+			s.edgeType = readString(buf);
+			s.kind = buf.getInt();
+			s.allowSelfEdges = buf.getInt() != 0;
+			s.edgeCount = buf.getInt();
+			s.dwOffsetPos = skipInts(buf, nodeCount + 1);
+			s.dwAdjPos = skipInts(buf, s.edgeCount);
+
+			if (s.kind != UNDIRECTED)
+			{
+				s.upOffsetPos = skipInts(buf, nodeCount + 1);
+				s.upAdjPos = skipInts(buf, s.edgeCount);
+			}
+
+			s.mediatorOffsetPos = readTable(buf, s.edgeCount);
+			if (s.mediatorOffsetPos >= 0) s.mediatorIdsPos = skipInts(buf, buf.getInt());
+
+			s.siteOffsetPos = readTable(buf, s.edgeCount);
+			if (s.siteOffsetPos >= 0) s.siteIdsPos = skipInts(buf, buf.getInt());
+
+			sections[i] = s;
+		}
+	}
+
+	/**
+	 * Maps the given file to memory.
+	 */
+	public static BinaryGraphFile open(String filename) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+		{
+			if (channel.size() > Integer.MAX_VALUE) throw new IOException("File is too large to map: " + filename);
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new BinaryGraphFile(mapped);
+		}
+	}
+
+	/**
+	 * Loads the graph in the file, which is a GraphList if the file was written from one.
+	 */
+	public static Graph load(String filename) throws IOException
+	{
+		return open(filename).toGraph();
+	}
+
+	public int getGraphCount()
+	{
+		return sections.length;
+	}
+
+	public String getGraphName(int graph)
+	{
+		return sections[graph].name;
+	}
+
+	public String getEdgeType(int graph)
+	{
+		return sections[graph].edgeType;
+	}
+
+	/**
+	 * Gets the position of the graph with the given edge type, or -1 if there is no such graph.
+	 */
+	public int indexOf(String edgeType)
+	{
+		for (int i = 0; i < sections.length; i++)
+		{
+			if (Objects.equals(sections[i].edgeType, edgeType)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets an index of the nodes in the file. All graphs of the file use the same node ids.
+	 */
+	public NodeIndex getNodeIndex()
+	{
+		return new MappedNodeIndex(names);
+	}
+
+	/**
+	 * Gets the graph as a frozen snapshot. This does not decode any node names.
+	 */
+	public FrozenGraph getFrozenGraph(int graph)
+	{
+		Section s = sections[graph];
+		return new FrozenGraph(s.name, s.edgeType, getNodeIndex(), getAdjacency(s));
+	}
+
+	public Graph toGraph()
+	{
+		if (listName == null && sections.length == 1) return toGraph(0);
+
+		GraphList list = new GraphList(listName);
+		for (int i = 0; i < sections.length; i++)
+		{
+			list.addGraph(toGraph(i));
+		}
+		return list;
+	}
+
+	/**
+	 * Gets the graph at the given position. Directed graphs are CompactDirectedGraph, and the other maps read each
+	 * node's row from the file at its first access.
+	 */
+	public Graph toGraph(int graph)
+	{
+		Section s = sections[graph];
+		CSR csr = getAdjacency(s);
+		Graph g;
+
+		if (s.kind == DIRECTED)
+		{
+			g = new CompactDirectedGraph(s.name, s.edgeType, getNodeIndex(), csr);
+		}
+		else if (s.kind == SITE_SPECIFIC)
+		{
+			SiteSpecificGraph sg = new SiteSpecificGraph(s.name, s.edgeType);
+			sg.dwMap = new MappedRowMap<>(names, v -> getNeighbors(csr.dwOffset, csr.dwAdj, v));
+			sg.upMap = new MappedRowMap<>(names, v -> getNeighbors(csr.upOffset, csr.upAdj, v));
+			if (s.siteOffsetPos >= 0)
+			{
+				sg.sites = new MappedRowMap<>(names, v -> getPooledRow(csr, s.siteOffsetPos, s.siteIdsPos, v));
+			}
+			g = sg;
+		}
+		else
+		{
+			UndirectedGraph ug = new UndirectedGraph(s.name, s.edgeType);
+			ug.ppMap = new MappedRowMap<>(names, v -> getNeighbors(csr.dwOffset, csr.dwAdj, v));
+			g = ug;
+		}
+
+		// Mediators of undirected graphs are recorded per direction, so they are read per direction too
+		if (s.mediatorOffsetPos >= 0)
+		{
+			g.mediators = new MappedRowMap<>(names, v -> getPooledRow(csr, s.mediatorOffsetPos, s.mediatorIdsPos, v));
+		}
+
+		g.allowSelfEdges = s.allowSelfEdges;
+		return g;
+	}
+
+	private Set<String> getNeighbors(int[] offset, int[] adj, int v)
+	{
+		if (offset[v] == offset[v + 1]) return null;
+
+		Set<String> set = new HashSet<>();
+		for (int i = offset[v]; i < offset[v + 1]; i++)
+		{
+			set.add(names.get(adj[i]));
+		}
+		return set;
+	}
+
+	/**
+	 * Reads the strings of the outgoing edges of the node, keyed by the edge targets.
+	 */
+	private Map<String, Set<String>> getPooledRow(CSR csr, int offsetPos, int idsPos, int v)
+	{
+		Map<String, Set<String>> map = null;
+		for (int i = csr.dwOffset[v]; i < csr.dwOffset[v + 1]; i++)
+		{
+			Set<String> set = getPooled(offsetPos, idsPos, i);
+			if (!set.isEmpty())
+			{
+				if (map == null) map = new HashMap<>();
+				map.put(names.get(csr.dwAdj[i]), set);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Reads the mediators of the relation directly from the file.
+	 */
+	public Set<String> getMediators(int graph, String source, String target)
+	{
+		Section s = sections[graph];
+		return s.mediatorOffsetPos < 0 ? Collections.emptySet() :
+			getPooled(s.mediatorOffsetPos, s.mediatorIdsPos, findEdge(s, source, target));
+	}
+
+	/**
+	 * Reads the sites of the relation directly from the file.
+	 */
+	public Set<String> getSites(int graph, String source, String target)
+	{
+		Section s = sections[graph];
+		return s.siteOffsetPos < 0 ? Collections.emptySet() :
+			getPooled(s.siteOffsetPos, s.siteIdsPos, findEdge(s, source, target));
+	}
+
+	private int findEdge(Section s, String source, String target)
+	{
+		int v = names.find(source);
+		int t = names.find(target);
+		if (v < 0 || t < 0) return -1;
+
+		int lo = buf.getInt(s.dwOffsetPos + v * 4);
+		int hi = buf.getInt(s.dwOffsetPos + (v + 1) * 4) - 1;
+		while (lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			int x = buf.getInt(s.dwAdjPos + mid * 4);
+			if (x < t) lo = mid + 1;
+			else if (x > t) hi = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	private Set<String> getPooled(int offsetPos, int idsPos, int edge)
+	{
+		if (edge < 0) return Collections.emptySet();
+
+		int from = buf.getInt(offsetPos + edge * 4);
+		int to = buf.getInt(offsetPos + (edge + 1) * 4);
+		if (from == to) return Collections.emptySet();
+
+		Set<String> set = new HashSet<>();
+		for (int i = from; i < to; i++)
+		{
+			set.add(pool.get(buf.getInt(idsPos + i * 4)));
+		}
+		return set;
+	}
+
+	private CSR getAdjacency(Section s)
+	{
+		synchronized (s)
+		{
+			if (s.csr == null)
+			{
+				int n = names.size();
+				int[] dwOffset = readInts(s.dwOffsetPos, n + 1);
+				int[] dwAdj = readInts(s.dwAdjPos, s.edgeCount);
+
+				s.csr = s.kind == UNDIRECTED ? new CSR(n, dwOffset, dwAdj, dwOffset, dwAdj) :
+					new CSR(n, dwOffset, dwAdj, readInts(s.upOffsetPos, n + 1), readInts(s.upAdjPos, s.edgeCount));
+			}
+			return s.csr;
+		}
+	}
+
+	private int[] readInts(int pos, int length)
+	{
+		ByteBuffer b = buf.duplicate();
+		b.position(pos);
+		int[] arr = new int[length];
+		b.asIntBuffer().get(arr);
+		return arr;
+	}
+
+	private static int skipInts(ByteBuffer b, int length)
+	{
+		int pos = b.position();
+		b.position(pos + length * 4);
+		return pos;
+	}
+
+	private static int readTable(ByteBuffer b, int edgeCount)
+	{
+		return b.getInt() == 0 ? -1 : skipInts(b, edgeCount + 1);
+	}
+
+	private static String readString(ByteBuffer b)
+	{
+		int len = b.getInt();
+		if (len < 0) return null;
+
+		byte[] bytes = new byte[len];
+		b.get(bytes);
+		skipPadding(b, len);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static MappedDictionary readDictionary(ByteBuffer b)
+	{
+		int size = b.getInt();
+		int offsetsPos = skipInts(b, size + 1);
+		int blobLength = b.getInt();
+		int blobPos = b.position();
+		b.position(blobPos + blobLength);
+		skipPadding(b, blobLength);
+		return new MappedDictionary(b, offsetsPos, size, blobPos);
+	}
+
+	private static void skipPadding(ByteBuffer b, int len)
+	{
+		b.position(b.position() + pad(len));
+	}
+
+	private static int pad(int len)
+	{
+		return (4 - len % 4) % 4;
+	}
+
+	private static class Section
+	{
+		String name;
+		String edgeType;
+		int kind;
+		boolean allowSelfEdges;
+		int edgeCount;
+		int dwOffsetPos;
+		int dwAdjPos;
+		int upOffsetPos;
+		int upAdjPos;
+		int mediatorOffsetPos = -1;
+		int mediatorIdsPos;
+		int siteOffsetPos = -1;
+		int siteIdsPos;
+		CSR csr;
+	}
+
+	//--- Section: Writing -------------------------------------------------------------------------------------------|
+
+	/**
+	 * Writes the graph in binary format. A GraphList is written as a list of its member graphs.
+	 */
+	public static void write(Graph graph, String filename) throws IOException
+	{
+		List<Graph> graphs = graph instanceof GraphList ? ((GraphList) graph).getGraphs() :
+			Collections.singletonList(graph);
+
+		// Collect node names and sort them by their bytes, so that the reader can binary search the mapped dictionary
+		Set<String> nodeSet = new HashSet<>();
+		for (Graph g : graphs)
+		{
+			if (g instanceof GraphList) throw new IllegalArgumentException("Nested graph lists are not supported.");
+			nodeSet.addAll(g.getSymbols());
+		}
+
+		List<byte[]> nodeBytes = new ArrayList<>(nodeSet.size());
+		for (String node : nodeSet)
+		{
+			nodeBytes.add(node.getBytes(StandardCharsets.UTF_8));
+		}
+		nodeBytes.sort(BinaryGraphFile::compareUnsigned);
+
+		NodeIndex index = new NodeIndex(nodeBytes.size());
+		for (byte[] b : nodeBytes)
+		{
+			index.intern(new String(b, StandardCharsets.UTF_8));
+		}
+
+		NodeIndex poolIndex = new NodeIndex();
+		List<byte[]> sectionBytes = new ArrayList<>();
+		for (Graph g : graphs)
+		{
+			sectionBytes.add(writeSection(g, index, poolIndex));
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+			Files.newOutputStream(Paths.get(filename)))))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, graph instanceof GraphList ? graph.getName() : null);
+			writeDictionary(out, nodeBytes);
+
+			List<byte[]> poolBytes = new ArrayList<>(poolIndex.size());
+			for (int i = 0; i < poolIndex.size(); i++)
+			{
+				poolBytes.add(poolIndex.getName(i).getBytes(StandardCharsets.UTF_8));
+			}
+			writeDictionary(out, poolBytes);
+
+			out.writeInt(graphs.size());
+			for (byte[] section : sectionBytes)
+			{
+				out.write(section);
+			}
+		}
+	}
+
+	private static byte[] writeSection(Graph graph, NodeIndex index, NodeIndex poolIndex) throws IOException
+	{
+		int n = index.size();
+		boolean directed = graph.isDirected();
+		EdgeList edges = new EdgeList();
+
+		if (directed)
+		{
+			DirectedGraph dg = (DirectedGraph) graph;
+			for (String source : dg.getOneSideSymbols(true))
+			{
+				int s = index.getId(source);
+				for (String target : dg.getDownstream(source))
+				{
+					edges.add(s, index.getId(target));
+				}
+			}
+		}
+		else
+		{
+			for (String source : graph.getSymbols())
+			{
+				int s = index.getId(source);
+				for (String target : graph.getNeighbors(source))
+				{
+					edges.add(s, index.getId(target));
+				}
+			}
+		}
+		CSR csr = edges.toCSR(n, directed);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		writeString(out, graph.getName());
+		writeString(out, graph.getEdgeType());
+		out.writeInt(graph instanceof SiteSpecificGraph ? SITE_SPECIFIC : directed ? DIRECTED : UNDIRECTED);
+		out.writeInt(graph.allowSelfEdges ? 1 : 0);
+		out.writeInt(csr.dwAdj.length);
+		writeInts(out, csr.dwOffset);
+		writeInts(out, csr.dwAdj);
+
+		if (directed)
+		{
+			writeInts(out, csr.upOffset);
+			writeInts(out, csr.upAdj);
+		}
+
+		boolean hasMediators = graph.mediators != null && !graph.mediators.isEmpty();
+		writeTable(out, hasMediators ? csr : null, index, poolIndex, graph::getMediators);
+
+		boolean hasSites = graph instanceof SiteSpecificGraph && !((SiteSpecificGraph) graph).sites.isEmpty();
+		writeTable(out, hasSites ? csr : null, index, poolIndex, ((source, target) ->
+			((SiteSpecificGraph) graph).getSites(source, target)));
+
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private interface EdgeStrings
+	{
+		Set<String> get(String source, String target);
+	}
+
+	/**
+	 * Writes the strings of each edge position as ids in the string pool, or only a zero flag if csr is null.
+	 */
+	private static void writeTable(DataOutputStream out, CSR csr, NodeIndex index, NodeIndex poolIndex,
+		EdgeStrings strings) throws IOException
+	{
+		if (csr == null)
+		{
+			out.writeInt(0);
+			return;
+		}
+		out.writeInt(1);
+
+		int[] offset = new int[csr.dwAdj.length + 1];
+		int[] ids = new int[16];
+		int size = 0;
+
+		for (int v = 0; v < csr.nodeCount; v++)
+		{
+			for (int i = csr.dwOffset[v]; i < csr.dwOffset[v + 1]; i++)
+			{
+				for (String s : strings.get(index.getName(v), index.getName(csr.dwAdj[i])))
+				{
+					if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+					ids[size++] = poolIndex.intern(s);
+				}
+				offset[i + 1] = size;
+			}
+		}
+
+		writeInts(out, offset);
+		out.writeInt(size);
+		writeInts(out, Arrays.copyOf(ids, size));
+	}
+
+	private static void writeInts(DataOutputStream out, int[] arr) throws IOException
+	{
+		for (int x : arr)
+		{
+			out.writeInt(x);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException
+	{
+		if (s == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+		out.write(new byte[pad(b.length)]);
+	}
+
+	private static void writeDictionary(DataOutputStream out, List<byte[]> strings) throws IOException
+	{
+		out.writeInt(strings.size());
+		int pos = 0;
+		for (byte[] b : strings)
+		{
+			out.writeInt(pos);
+			pos += b.length;
+		}
+		out.writeInt(pos);
+
+		out.writeInt(pos);
+		for (byte[] b : strings)
+		{
+			out.write(b);
+		}
+		out.write(new byte[pad(pos)]);
+	}
+
+	private static int compareUnsigned(byte[] a, byte[] b)
+	{
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++)
+		{
+			int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (c != 0) return c;
+		}
+		return a.length - b.length;
+	}
+}
@@ -0,0 +1,152 @@
+package org.panda.utility.graph;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Compressed sparse row adjacency over dense node ids. Downstream of node v is dwAdj[dwOffset[v] .. dwOffset[v+1]),
+ * sorted and without duplicates. Never modified after construction.
+ */
+final class CSR implements Serializable
+{
+	final int nodeCount;
+	final int[] dwOffset;
+	final int[] dwAdj;
+	final int[] upOffset;
+	final int[] upAdj;
+
+	CSR(int nodeCount, int[] dwOffset, int[] dwAdj, int[] upOffset, int[] upAdj)
+	{
+		this.nodeCount = nodeCount;
+		this.dwOffset = dwOffset;
+		this.dwAdj = dwAdj;
+		this.upOffset = upOffset;
+		this.upAdj = upAdj;
+	}
+
+	static CSR empty(int nodeCount)
+	{
+		int[] offset = new int[nodeCount + 1];
+		return new CSR(nodeCount, offset, new int[0], offset, new int[0]);
+	}
+
+	/**
+	 * Builds the directed adjacency of the given edge list. Duplicate edges are collapsed.
+	 */
+	static CSR build(int nodeCount, int[] src, int[] tgt, int edgeCount)
+	{
+		int[] dwOffset = new int[nodeCount + 1];
+		int[] dwAdj = bucket(nodeCount, src, tgt, edgeCount, dwOffset);
+		dwAdj = sortAndDedupe(nodeCount, dwOffset, dwAdj);
+
+		int[] upOffset = new int[nodeCount + 1];
+		int[] upAdj = transpose(nodeCount, dwOffset, dwAdj, upOffset);
+
+		return new CSR(nodeCount, dwOffset, dwAdj, upOffset, upAdj);
+	}
+
+	/**
+	 * Builds an undirected adjacency, where upstream and downstream arrays are the same.
+	 */
+	static CSR buildUndirected(int nodeCount, int[] src, int[] tgt, int edgeCount)
+	{
+		int[] both1 = Arrays.copyOf(src, edgeCount * 2);
+		int[] both2 = Arrays.copyOf(tgt, edgeCount * 2);
+		System.arraycopy(tgt, 0, both1, edgeCount, edgeCount);
+		System.arraycopy(src, 0, both2, edgeCount, edgeCount);
+
+		int[] offset = new int[nodeCount + 1];
+		int[] adj = bucket(nodeCount, both1, both2, edgeCount * 2, offset);
+		adj = sortAndDedupe(nodeCount, offset, adj);
+		return new CSR(nodeCount, offset, adj, offset, adj);
+	}
+
+	boolean isUndirected()
+	{
+		return dwAdj == upAdj;
+	}
+
+	int getEdgeCount()
+	{
+		return dwAdj.length;
+	}
+
+	int getOutDegree(int v)
+	{
+		return v < nodeCount ? dwOffset[v + 1] - dwOffset[v] : 0;
+	}
+
+	int getInDegree(int v)
+	{
+		return v < nodeCount ? upOffset[v + 1] - upOffset[v] : 0;
+	}
+
+	boolean hasEdge(int source, int target)
+	{
+		return source >= 0 && target >= 0 && source < nodeCount &&
+			Arrays.binarySearch(dwAdj, dwOffset[source], dwOffset[source + 1], target) >= 0;
+	}
+
+	private static int[] bucket(int nodeCount, int[] src, int[] tgt, int edgeCount, int[] offset)
+	{
+		for (int i = 0; i < edgeCount; i++)
+		{
+			offset[src[i] + 1]++;
+		}
+		for (int v = 0; v < nodeCount; v++)
+		{
+			offset[v + 1] += offset[v];
+		}
+
+		int[] adj = new int[edgeCount];
+		int[] fill = Arrays.copyOf(offset, nodeCount);
+		for (int i = 0; i < edgeCount; i++)
+		{
+			adj[fill[src[i]]++] = tgt[i];
+		}
+		return adj;
+	}
+
+	private static int[] sortAndDedupe(int nodeCount, int[] offset, int[] adj)
+	{
+		int w = 0;
+		int start = 0;
+		for (int v = 0; v < nodeCount; v++)
+		{
+			int end = offset[v + 1];
+			Arrays.sort(adj, start, end);
+
+			offset[v] = w;
+			for (int i = start; i < end; i++)
+			{
+				if (i == start || adj[i] != adj[i - 1]) adj[w++] = adj[i];
+			}
+			start = end;
+		}
+		offset[nodeCount] = w;
+		return w == adj.length ? adj : Arrays.copyOf(adj, w);
+	}
+
+	private static int[] transpose(int nodeCount, int[] offset, int[] adj, int[] revOffset)
+	{
+		for (int t : adj)
+		{
+			revOffset[t + 1]++;
+		}
+		for (int v = 0; v < nodeCount; v++)
+		{
+			revOffset[v + 1] += revOffset[v];
+		}
+
+		int[] rev = new int[adj.length];
+		int[] fill = Arrays.copyOf(revOffset, nodeCount);
+		for (int s = 0; s < nodeCount; s++)
+		{
+			for (int i = offset[s]; i < offset[s + 1]; i++)
+			{
+				rev[fill[adj[i]]++] = s;
+			}
+		}
+		return rev;
+	}
+}
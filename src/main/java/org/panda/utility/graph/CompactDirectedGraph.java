@@ -0,0 +1,495 @@
+package org.panda.utility.graph;
+
+import org.panda.utility.LongHashSet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * A DirectedGraph that keeps its edges in compressed sparse row arrays over interned node ids, instead of maps of
+ * string sets. New relations are buffered until the next query. Returned neighbor sets are read-only.
+ */
+public class CompactDirectedGraph extends DirectedGraph
+{
+	protected NodeIndex index;
+
+	private volatile CSR csr;
+
+	private int[] pendingSrc;
+	private int[] pendingTgt;
+	private int pendingCount;
+	private LongHashSet pendingKeys;
+
+	public CompactDirectedGraph()
+	{
+		this(null, null);
+	}
+
+	public CompactDirectedGraph(String name, String edgeType)
+	{
+		super(name, edgeType);
+		dwMap = null;
+		upMap = null;
+		index = new NodeIndex();
+		csr = CSR.empty(0);
+		pendingSrc = new int[16];
+		pendingTgt = new int[16];
+		pendingKeys = new LongHashSet();
+	}
+
+	/**
+	 * Creates a compact copy of the given graph.
+	 */
+	public CompactDirectedGraph(DirectedGraph graph)
+	{
+		this(graph.getName(), graph.getEdgeType());
+		merge(graph);
+	}
+
+	/**
+	 * Wraps an already built adjacency. The arrays are shared, the index is not.
+	 */
+	CompactDirectedGraph(String name, String edgeType, NodeIndex index, CSR csr)
+	{
+		this(name, edgeType);
+		this.index = index;
+		this.csr = csr;
+	}
+
+	/**
+	 * Gets the current adjacency, flushing the buffered relations if there is any.
+	 */
+	CSR getAdjacency()
+	{
+		if (pendingCount > 0) flush();
+		return csr;
+	}
+
+	NodeIndex getIndex()
+	{
+		return index;
+	}
+
+	private synchronized void flush()
+	{
+		if (pendingCount == 0) return;
+
+		CSR old = csr;
+		int m = old.getEdgeCount() + pendingCount;
+		int[] src = new int[m];
+		int[] tgt = new int[m];
+
+		int k = 0;
+		for (int s = 0; s < old.nodeCount; s++)
+		{
+			for (int i = old.dwOffset[s]; i < old.dwOffset[s + 1]; i++)
+			{
+				src[k] = s;
+				tgt[k++] = old.dwAdj[i];
+			}
+		}
+		System.arraycopy(pendingSrc, 0, src, k, pendingCount);
+		System.arraycopy(pendingTgt, 0, tgt, k, pendingCount);
+
+		csr = CSR.build(index.size(), src, tgt, m);
+
+		pendingCount = 0;
+		pendingKeys.clear();
+	}
+
+	private void rebuild(EdgeFilter filter)
+	{
+		CSR old = getAdjacency();
+		int m = old.getEdgeCount();
+		int[] src = new int[m];
+		int[] tgt = new int[m];
+
+		int k = 0;
+		for (int s = 0; s < old.nodeCount; s++)
+		{
+			for (int i = old.dwOffset[s]; i < old.dwOffset[s + 1]; i++)
+			{
+				if (filter.keep(s, old.dwAdj[i]))
+				{
+					src[k] = s;
+					tgt[k++] = old.dwAdj[i];
+				}
+			}
+		}
+
+		if (k < m)
+		{
+			csr = CSR.build(index.size(), src, tgt, k);
+			modified();
+		}
+	}
+
+	private interface EdgeFilter
+	{
+		boolean keep(int source, int target);
+	}
+
+	private static long key(int source, int target)
+	{
+		return ((long) source << 32) | (target & 0xFFFFFFFFL);
+	}
+
+	private boolean[] markIDs(Collection<String> symbols)
+	{
+		boolean[] mark = new boolean[index.size()];
+		for (String symbol : symbols)
+		{
+			int id = index.getId(symbol);
+			if (id >= 0) mark[id] = true;
+		}
+		return mark;
+	}
+
+	private Set<String> collectNodes(boolean sources, boolean targets)
+	{
+		CSR adj = getAdjacency();
+		Set<String> syms = new HashSet<>();
+		for (int v = 0; v < adj.nodeCount; v++)
+		{
+			if ((sources && adj.getOutDegree(v) > 0) || (targets && adj.getInDegree(v) > 0))
+			{
+				syms.add(index.getName(v));
+			}
+		}
+		return syms;
+	}
+
+	private Set<String> collectNeighbors(Set<String> seed, Set<String> visited, boolean downstream, Set<String> result)
+	{
+		CSR adj = getAdjacency();
+		int[] offset = downstream ? adj.dwOffset : adj.upOffset;
+		int[] nbrs = downstream ? adj.dwAdj : adj.upAdj;
+
+		for (String s : seed)
+		{
+			int v = index.getId(s);
+			if (v < 0 || v >= adj.nodeCount) continue;
+
+			for (int i = offset[v]; i < offset[v + 1]; i++)
+			{
+				String n = index.getName(nbrs[i]);
+				if (visited == null || !visited.contains(n)) result.add(n);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void write(Writer writer)
+	{
+		CSR adj = getAdjacency();
+		try
+		{
+			for (int s = 0; s < adj.nodeCount; s++)
+			{
+				String g1 = index.getName(s);
+
+				for (int i = adj.dwOffset[s]; i < adj.dwOffset[s + 1]; i++)
+				{
+					String g2 = index.getName(adj.dwAdj[i]);
+
+					writer.write(g1 + "\t" + getEdgeType() + "\t" + g2);
+
+					if (mediators.containsKey(g1) && mediators.get(g1).containsKey(g2))
+					{
+						writer.write("\t" + convertMediatorsToString(mediators.get(g1).get(g2)));
+					}
+
+					writer.write("\n");
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		mediators.clear();
+		index = new NodeIndex();
+		csr = CSR.empty(0);
+		pendingCount = 0;
+		pendingKeys.clear();
+		modified();
+	}
+
+	@Override
+	public void putRelation(String source, String target)
+	{
+		if (!allowSelfEdges && source.equals(target)) return;
+
+		int s = index.intern(source);
+		int t = index.intern(target);
+
+		if (csr.hasEdge(s, t) || !pendingKeys.add(key(s, t))) return;
+
+		if (pendingCount == pendingSrc.length)
+		{
+			pendingSrc = Arrays.copyOf(pendingSrc, pendingCount * 2);
+			pendingTgt = Arrays.copyOf(pendingTgt, pendingCount * 2);
+		}
+		pendingSrc[pendingCount] = s;
+		pendingTgt[pendingCount++] = t;
+		modified();
+	}
+
+	@Override
+	public void removeRelation(String source, String target)
+	{
+		int s = index.getId(source);
+		int t = index.getId(target);
+
+		if (s >= 0 && t >= 0 && getAdjacency().hasEdge(s, t))
+		{
+			rebuild((u, v) -> u != s || v != t);
+		}
+
+		removeMediators(source, target);
+	}
+
+	@Override
+	public boolean hasRelation(String source, String target)
+	{
+		int s = index.getId(source);
+		int t = index.getId(target);
+		if (s < 0 || t < 0) return false;
+		return csr.hasEdge(s, t) || (pendingCount > 0 && pendingKeys.contains(key(s, t)));
+	}
+
+	@Override
+	public boolean hasNode(String name)
+	{
+		CSR adj = getAdjacency();
+		int v = index.getId(name);
+		return v >= 0 && (adj.getOutDegree(v) > 0 || adj.getInDegree(v) > 0);
+	}
+
+	@Override
+	public Set<String> goBFS(String seed, boolean downstream)
+	{
+		return collectNeighbors(Collections.singleton(seed), null, downstream, new HashSet<>());
+	}
+
+	@Override
+	public Set<String> goBFS(Set<String> seed, Set<String> visited, boolean downstream)
+	{
+		return collectNeighbors(seed, visited, downstream, new HashSet<>());
+	}
+
+	@Override
+	public Set<String> goBFS(Set<String> seed, Set<String> visited)
+	{
+		Set<String> set = collectNeighbors(seed, visited, true, new HashSet<>());
+		return collectNeighbors(seed, visited, false, set);
+	}
+
+	@Override
+	public Set<String> getUpstream(String gene)
+	{
+		CSR adj = getAdjacency();
+		int v = index.getId(gene);
+		if (v < 0 || v >= adj.nodeCount) return Collections.emptySet();
+		return new IdSetView(index, adj.upAdj, adj.upOffset[v], adj.upOffset[v + 1]);
+	}
+
+	@Override
+	public Set<String> getDownstream(String gene)
+	{
+		CSR adj = getAdjacency();
+		int v = index.getId(gene);
+		if (v < 0 || v >= adj.nodeCount) return Collections.emptySet();
+		return new IdSetView(index, adj.dwAdj, adj.dwOffset[v], adj.dwOffset[v + 1]);
+	}
+
+	@Override
+	public Set<String> getNeighbors(String gene)
+	{
+		Set<String> n = new HashSet<>(getUpstream(gene));
+		n.addAll(getDownstream(gene));
+		return n;
+	}
+
+	@Override
+	public Set<String> getOneSideSymbols(boolean source)
+	{
+		return collectNodes(source, !source);
+	}
+
+	@Override
+	public Set<String> getSymbols()
+	{
+		return collectNodes(true, true);
+	}
+
+	@Override
+	public Map<Integer, Integer> getDegreeDistibution(boolean indegree)
+	{
+		Map<Integer, Integer> dist = new HashMap<>();
+		collectDegrees(dist, indegree);
+		return dist;
+	}
+
+	@Override
+	public Map<Integer, Integer> getDegreeDistibution()
+	{
+		Map<Integer, Integer> dist = new HashMap<>();
+		collectDegrees(dist, true);
+		collectDegrees(dist, false);
+		return dist;
+	}
+
+	private void collectDegrees(Map<Integer, Integer> dist, boolean indegree)
+	{
+		CSR adj = getAdjacency();
+		for (int v = 0; v < adj.nodeCount; v++)
+		{
+			int degree = indegree ? adj.getInDegree(v) : adj.getOutDegree(v);
+			if (degree > 0) dist.merge(degree, 1, Integer::sum);
+		}
+	}
+
+	@Override
+	public int getEdgeCount()
+	{
+		return getAdjacency().getEdgeCount();
+	}
+
+	@Override
+	public void printStats()
+	{
+		System.out.println(getName() + " [" + getEdgeType() + "]");
+
+		System.out.println(getSymbols().size() + " genes (source: " + getOneSideSymbols(true).size() + ", " +
+			"target: " + getOneSideSymbols(false).size() + ") and " + getEdgeCount() + " edges");
+		System.out.println("Avg in-degree: " + getAverageInDegree() + ", Avg out-degree: " + getAverageOutDegree());
+	}
+
+	@Override
+	public double getAverageInDegree()
+	{
+		return getAverageDegree(true);
+	}
+
+	@Override
+	public double getAverageOutDegree()
+	{
+		return getAverageDegree(false);
+	}
+
+	/**
+	 * Counts a zero for each node, as the map-based graph does.
+	 */
+	private double getAverageDegree(boolean indegree)
+	{
+		CSR adj = getAdjacency();
+		double sum = 0;
+		int cnt = 0;
+		for (int v = 0; v < adj.nodeCount; v++)
+		{
+			if (adj.getOutDegree(v) == 0 && adj.getInDegree(v) == 0) continue;
+
+			int degree = indegree ? adj.getInDegree(v) : adj.getOutDegree(v);
+			if (degree > 0)
+			{
+				sum += degree;
+				cnt++;
+			}
+			cnt++;
+		}
+		return cnt == 0 ? Double.NaN : sum / cnt;
+	}
+
+	@Override
+	public void merge(DirectedGraph graph)
+	{
+		if (graph instanceof CompactDirectedGraph)
+		{
+			CompactDirectedGraph other = (CompactDirectedGraph) graph;
+			CSR adj = other.getAdjacency();
+			for (int s = 0; s < adj.nodeCount; s++)
+			{
+				for (int i = adj.dwOffset[s]; i < adj.dwOffset[s + 1]; i++)
+				{
+					addEdge(other.index.getName(s), other.index.getName(adj.dwAdj[i]));
+				}
+			}
+		}
+		else
+		{
+			for (String source : graph.getOneSideSymbols(true))
+			{
+				for (String target : graph.getDownstream(source))
+				{
+					addEdge(source, target);
+				}
+			}
+		}
+
+		mergeMediators(graph);
+	}
+
+	/**
+	 * Adds the edge without the self-edge check, as merging map-based graphs does.
+	 */
+	private void addEdge(String source, String target)
+	{
+		boolean allow = allowSelfEdges;
+		allowSelfEdges = true;
+		putRelation(source, target);
+		allowSelfEdges = allow;
+	}
+
+	@Override
+	public void crop(Collection<String> symbols)
+	{
+		boolean[] keep = markIDs(symbols);
+		rebuild((s, t) -> keep[s] && keep[t]);
+	}
+
+	@Override
+	public void cropToNeighborhood(Collection<String> symbols)
+	{
+		boolean[] keep = markIDs(symbols);
+		rebuild((s, t) -> keep[s] || keep[t]);
+	}
+
+	@Override
+	protected Set<String> getRelationStrings()
+	{
+		CSR adj = getAdjacency();
+		Set<String> set = new HashSet<>();
+		for (int s = 0; s < adj.nodeCount; s++)
+		{
+			for (int i = adj.dwOffset[s]; i < adj.dwOffset[s + 1]; i++)
+			{
+				set.add(index.getName(s) + " " + index.getName(adj.dwAdj[i]));
+			}
+		}
+		return set;
+	}
+
+	@Override
+	public FrozenGraph freeze()
+	{
+		CSR adj = getAdjacency();
+		return new FrozenGraph(getName(), getEdgeType(), index.copy(), adj);
+	}
+
+	@Override
+	public Graph copy()
+	{
+		CompactDirectedGraph copy = new CompactDirectedGraph(getName(), getEdgeType(), index.copy(), getAdjacency());
+		copy.allowSelfEdges = allowSelfEdges;
+		copy.mergeMediators(this);
+		return copy;
+	}
+}
@@ -1,9 +1,12 @@
 package org.panda.utility.graph;
 
 import org.panda.utility.ValToColor;
-import org.panda.utility.statistics.Correlation;
+import org.panda.utility.statistics.PairwiseCorrelation;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -57,15 +60,16 @@ public class CorrelationSIFGenerator extends SIFGenerator
 			new double[]{-corrMaxOut,     0,           corrMaxOut},
 			new Color[]{ maxNegCorrColor, Color.WHITE, maxPosCorrColor});
 
-		geneMap.keySet().forEach(g1 -> geneMap.keySet().stream().filter(g2 -> g1.compareTo(g2) < 0).forEach(g2 ->
+		// Sorted, so that the source of each edge is the lexicographically smaller gene
+		List<String> genes = new ArrayList<>(geneMap.keySet());
+		Collections.sort(genes);
+		double[][] rows = genes.stream().map(geneMap::get).toArray(double[][]::new);
+
+		new PairwiseCorrelation(rows).run(minCorrelation, (i, j, corr) ->
 		{
-			double corr = Correlation.pearsonVal(geneMap.get(g1), geneMap.get(g2));
-			if (Math.abs(corr) >= minCorrelation)
-			{
-				addEdge(g1, g2, EDGE_TYPE);
-				addEdgeColor(g1, g2, EDGE_TYPE, vtc.getColor(corr));
-			}
-		}));
+			addEdge(genes.get(i), genes.get(j), EDGE_TYPE);
+			addEdgeColor(genes.get(i), genes.get(j), EDGE_TYPE, vtc.getColor(corr));
+		});
 	}
 
 	public void setMinCorrelation(double minCorrelation)
@@ -0,0 +1,148 @@
+package org.panda.utility.graph;
+
+import org.panda.utility.LongHashSet;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates random graphs that keep the in and out degree of every node, using double-edge swaps that replace a-b and
+ * c-d with a-d and c-b.
+ */
+public class DegreePreservingRandomizer
+{
+	/**
+	 * Default number of swap attempts per edge.
+	 */
+	public static final int DEFAULT_SWAPS_PER_EDGE = 10;
+
+	private final FrozenGraph graph;
+	private final boolean directed;
+	private final int[] src;
+	private final int[] tgt;
+	private final int edgeCount;
+	private long swapCount;
+
+	public DegreePreservingRandomizer(FrozenGraph graph)
+	{
+		this.graph = graph;
+		this.directed = graph.isDirected();
+
+		EdgeList edges = new EdgeList(graph.getEdgeCount());
+		CSR csr = graph.getAdjacency();
+		for (int v = 0; v < csr.nodeCount; v++)
+		{
+			for (int i = csr.dwOffset[v]; i < csr.dwOffset[v + 1]; i++)
+			{
+				int t = csr.dwAdj[i];
+				if (directed || v <= t) edges.add(v, t);
+			}
+		}
+		src = edges.src;
+		tgt = edges.tgt;
+		edgeCount = edges.size;
+		swapCount = (long) DEFAULT_SWAPS_PER_EDGE * edgeCount;
+	}
+
+	/**
+	 * Sets the number of swap attempts for generating one random graph. Rejected attempts are counted too.
+	 */
+	public void setSwapCount(long swapCount)
+	{
+		this.swapCount = swapCount;
+	}
+
+	public long getSwapCount()
+	{
+		return swapCount;
+	}
+
+	/**
+	 * Generates a random graph using the given seed. Same seed produces the same graph.
+	 */
+	public FrozenGraph randomize(long seed)
+	{
+		int[] s = new int[edgeCount];
+		int[] t = new int[edgeCount];
+		System.arraycopy(src, 0, s, 0, edgeCount);
+		System.arraycopy(tgt, 0, t, 0, edgeCount);
+
+		if (edgeCount > 1) swap(s, t, new SplittableRandom(seed));
+
+		CSR csr = directed ? CSR.build(graph.getNodeCount(), s, t, edgeCount) :
+			CSR.buildUndirected(graph.getNodeCount(), s, t, edgeCount);
+
+		return new FrozenGraph(graph.getName(), graph.getEdgeType(), graph.getIndex(), csr);
+	}
+
+	/**
+	 * Generates the given number of random graphs in parallel. The result does not depend on the thread scheduling.
+	 */
+	public List<FrozenGraph> randomize(int copies, long seed)
+	{
+		return IntStream.range(0, copies).parallel().mapToObj(i -> randomize(deriveSeed(seed, i)))
+			.collect(Collectors.toList());
+	}
+
+	static long deriveSeed(long seed, int i)
+	{
+		return new SplittableRandom(seed + i * 0x9E3779B97F4A7C15L).nextLong();
+	}
+
+	private void swap(int[] s, int[] t, SplittableRandom rand)
+	{
+		LongHashSet existing = new LongHashSet(edgeCount);
+		for (int i = 0; i < edgeCount; i++)
+		{
+			existing.add(key(s[i], t[i]));
+		}
+
+		for (long k = 0; k < swapCount; k++)
+		{
+			int e1 = rand.nextInt(edgeCount);
+			int e2 = rand.nextInt(edgeCount);
+			if (e1 == e2) continue;
+
+			int a = s[e1];
+			int b = t[e1];
+			int c = s[e2];
+			int d = t[e2];
+
+			// Undirected edges have no orientation, so either pairing of the endpoints can be used
+			if (!directed && rand.nextBoolean())
+			{
+				int tmp = c;
+				c = d;
+				d = tmp;
+			}
+
+			if (a == d || c == b || a == c || b == d) continue;
+
+			long k1 = key(a, d);
+			long k2 = key(c, b);
+			if (k1 == k2 || existing.contains(k1) || existing.contains(k2)) continue;
+
+			existing.remove(key(a, b));
+			existing.remove(key(s[e2], t[e2]));
+			existing.add(k1);
+			existing.add(k2);
+
+			t[e1] = d;
+			s[e2] = c;
+			t[e2] = b;
+		}
+	}
+
+	private long key(int a, int b)
+	{
+		if (!directed && a > b)
+		{
+			int tmp = a;
+			a = b;
+			b = tmp;
+		}
+		return ((long) a << 32) | (b & 0xFFFFFFFFL);
+	}
+}
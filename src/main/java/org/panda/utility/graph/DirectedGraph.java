@@ -1,6 +1,5 @@
 package org.panda.utility.graph;
 
-import org.panda.utility.CollectionUtil;
 import org.panda.utility.FileUtil;
 import org.panda.utility.graph.query.QueryEdge;
 import org.panda.utility.graph.query.QueryGraphObject;
@@ -13,6 +12,7 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * This is a simple graph, built using external maps. All nodes are identified with a unique String.
@@ -25,6 +25,9 @@ public class DirectedGraph extends Graph
 	protected Map<String, Set<String>> dwMap;
 	protected Map<String, Set<String>> upMap;
 
+	private transient ReachabilityIndex reachabilityIndex;
+	private transient int reachabilityModCount;
+
 	public DirectedGraph()
 	{
 		dwMap = new HashMap<>();
@@ -68,6 +71,7 @@ public class DirectedGraph extends Graph
 		super.clear();
 		upMap.clear();
 		dwMap.clear();
+		modified();
 	}
 
 	public void putRelation(String source, String target)
@@ -78,10 +82,13 @@ public class DirectedGraph extends Graph
 		if (!dwMap.containsKey(source)) dwMap.put(source, new HashSet<>());
 		upMap.get(target).add(source);
 		dwMap.get(source).add(target);
+		modified();
 	}
 
 	public void removeRelation(String source, String target)
 	{
+		modified();
+
 		if (upMap.containsKey(target))
 		{
 			upMap.get(target).remove(source);
@@ -327,82 +334,37 @@ public class DirectedGraph extends Graph
 		return result;
 	}
 
+	/**
+	 * Gets the nodes on the walks from the source to the targets with at most limit + 1 edges.
+	 */
 	public Set<String> getPathElements(String from, Set<String> to, int limit)
 	{
-		Set<String> result = new HashSet<>();
-		getPathElements(from, to, limit, 0, result);
-		return result;
+		return getReachabilityIndex().getPathElements(from, to, limit);
 	}
 
-	private void getPathElements(String from, Set<String> to, int limit, int i, Set<String> result)
-	{
-		Set<String> set = Collections.singleton(from);
-		Set<String> neigh = goBFS(set, set, true);
-		for (String n : neigh)
-		{
-			if (to.contains(n)) result.add(n);
-			else if (i < limit)
-			{
-				int prevSize = result.size();
-				getPathElements(n, to, limit, i+1, result);
-				if (result.size() > prevSize) result.add(n);
-			}
-		}
-	}
-	
 	public List<CommPoint> getCommonDownstream(Set<String> seed, int limit)
 	{
-		Map<String, Set<String>> reachMap = new HashMap<String, Set<String>>();
-		Map<String, Set<String>> breadthMap = new HashMap<String, Set<String>>();
-		Map<String, Set<String>> visitedMap = new HashMap<String, Set<String>>();
-
-		Set<CommPoint> points = new HashSet<>();
-		
-		for (String s : seed)
+		List<CommPoint> list = new ArrayList<>();
+		for (ReachabilityIndex.CommonPoint p : getReachabilityIndex().getCommonDownstream(seed, limit))
 		{
-			reachMap.put(s, new HashSet<>(Arrays.asList(s)));
-			breadthMap.put(s, new HashSet<>(Arrays.asList(s)));
-			visitedMap.put(s, new HashSet<>(Arrays.asList(s)));
+			list.add(new CommPoint(p.getNode(), p.getUpstream(), p.getDistance()));
 		}
-
-		for (int i = 1; i < limit; i++)
-		{
-			for (String s : seed)
-			{
-				Set<String> neigh = goBFS(breadthMap.get(s), visitedMap.get(s), true);
-				for (String n : neigh)
-				{
-					if (!reachMap.containsKey(n))
-						reachMap.put(n, new HashSet<>(Arrays.asList(s)));
-					else reachMap.get(n).add(s);
-				}
-				breadthMap.put(s, neigh);
-				visitedMap.get(s).addAll(neigh);
-			}
-
-			for (String r : reachMap.keySet())
-			{
-				if (reachMap.get(r).size() > 1)
-				{
-					CommPoint p = new CommPoint(r, reachMap.get(r), i);
-					if (!containsBetter(points, p)) points.add(p);
-				}
-			}
-		}
-
-		List<CommPoint> list = new ArrayList<>(points);
 		Collections.sort(list);
 		return list;
 	}
-	
-	private boolean containsBetter(Set<CommPoint> set, CommPoint p)
+
+	/**
+	 * Gets the reachability index of the current state of the graph. The index is kept until the graph is modified.
+	 */
+	public synchronized ReachabilityIndex getReachabilityIndex()
 	{
-		if (set.contains(p)) return true;
-		for (CommPoint cp : set)
+		int modCount = getModificationCount();
+		if (reachabilityIndex == null || reachabilityModCount != modCount)
 		{
-			if (cp.dist < p.dist && cp.upstr.containsAll(p.upstr)) return true;
+			reachabilityIndex = new ReachabilityIndex(freeze());
+			reachabilityModCount = modCount;
 		}
-		return false;
+		return reachabilityIndex;
 	}
 
 	public DirectedGraph getInducedSubgraphWithoutDisconnectedNodes(Set<String> nodes)
@@ -614,8 +576,26 @@ public class DirectedGraph extends Graph
 
 	public void merge(DirectedGraph graph)
 	{
-		merge(this.upMap, graph.upMap);
-		merge(this.dwMap, graph.dwMap);
+		if (graph.dwMap == null)
+		{
+			// The other graph does not keep its edges in maps
+			for (String source : graph.getOneSideSymbols(true))
+			{
+				for (String target : graph.getDownstream(source))
+				{
+					if (!upMap.containsKey(target)) upMap.put(target, new HashSet<>());
+					if (!dwMap.containsKey(source)) dwMap.put(source, new HashSet<>());
+					upMap.get(target).add(source);
+					dwMap.get(source).add(target);
+				}
+			}
+		}
+		else
+		{
+			merge(this.upMap, graph.upMap);
+			merge(this.dwMap, graph.dwMap);
+		}
+		modified();
 
 		super.merge(graph);
 	}
@@ -624,12 +604,14 @@ public class DirectedGraph extends Graph
 	{
 		crop(upMap, symbols);
 		crop(dwMap, symbols);
+		modified();
 	}
 
 	public void cropToNeighborhood(Collection<String> symbols)
 	{
 		cropToNeighborhood(upMap, symbols);
 		cropToNeighborhood(dwMap, symbols);
+		modified();
 	}
 
 	protected Set<String> getRelationStrings()
@@ -674,47 +656,7 @@ public class DirectedGraph extends Graph
 	public Map<String, Double>[] getEnrichmentScores(Set<String> query, Set<String> background, NeighborType type,
 		int distance, int minMember)
 	{
-		DirectedGraph graph = this;
-
-		if (background != null)
-		{
-			graph = (DirectedGraph) copy();
-			graph.crop(background);
-		}
-
-		background = graph.getSymbols();
-		int n = background.size();
-
-		query = new HashSet<>(query);
-		query.retainAll(background);
-
-		int qSize = query.size();
-
-		Map<String, Double> pvals = new HashMap<>();
-		Map<String, Double> limit = new HashMap<>();
-
-		for (String gene : background)
-		{
-			Set<String> neighbors = type == NeighborType.UPSTREAM ? graph.getUpstream(gene, distance) :
-				type == NeighborType.DOWNSTREAM ? graph.getDownstream(gene, distance) :
-					type == NeighborType.BOTHSTREAM ? graph.getBothstream(gene, distance) :
-						graph.getNeighbors(gene, distance);
-
-			if (neighbors.size() < minMember) continue;
-
-			neighbors = new HashSet<>(neighbors);
-			neighbors.add(gene);
-			int nSize = neighbors.size();
-
-			neighbors.retainAll(query);
-			int o = neighbors.size();
-
-			pvals.put(gene, FishersExactTest.calcEnrichmentPval(n, qSize, nSize, o));
-			limit.put(gene, FishersExactTest.calcEnrichmentPval(n, qSize, nSize,
-				Math.min(qSize, nSize)));
-		}
-
-		return new Map[]{pvals, limit};
+		return getEnrichmentScores(freeze(), query, background, type, distance, minMember);
 	}
 
 	public enum NeighborType
@@ -725,24 +667,10 @@ public class DirectedGraph extends Graph
 		UNDIRECTED
 	}
 
-	public Map<String, Map<String, Integer>> getShortestDistances(int limit)
+	@Override
+	protected NeighborType getDistanceType()
 	{
-		Map<String, Map<String, Integer>> dist = new HashMap<>();
-
-		for (String source : getOneSideSymbols(true))
-		{
-			for (int i = 1; i <= limit; i++)
-			{
-				Set<String> dw = getDownstream(Collections.singleton(source), i);
-
-				for (String target : dw)
-				{
-					if (!dist.containsKey(source)) dist.put(source, new HashMap<>());
-					if (!dist.get(source).containsKey(target)) dist.get(source).put(target, i);
-				}
-			}
-		}
-		return dist;
+		return NeighborType.DOWNSTREAM;
 	}
 
 	/**
@@ -778,33 +706,69 @@ public class DirectedGraph extends Graph
 		return g;
 	}
 
+	/**
+	 * Provides a new graph where the edges are shuffled, keeping the in and out degrees of each node.
+	 */
+	public DirectedGraph getDegreePreservingRandomizedCopy(long seed)
+	{
+		return toDirectedGraph(new DegreePreservingRandomizer(freeze()).randomize(seed));
+	}
+
+	/**
+	 * Generates the given number of degree preserving random copies in parallel.
+	 */
+	public List<DirectedGraph> getDegreePreservingRandomizedCopies(int copies, long seed)
+	{
+		return new DegreePreservingRandomizer(freeze()).randomize(copies, seed).stream().map(this::toDirectedGraph)
+			.collect(Collectors.toList());
+	}
+
+	private DirectedGraph toDirectedGraph(FrozenGraph graph)
+	{
+		return new CompactDirectedGraph(getName(), getEdgeType(), graph.getIndex().copy(), graph.getAdjacency());
+	}
+
 	public boolean hasRelation(String source, String target)
 	{
 		return dwMap.containsKey(source) && dwMap.get(source).contains(target);
 	}
 
-	public UndirectedGraphWithEdgeWeights getDownstreamSimilarityGraph()
+	@Override
+	public FrozenGraph freeze()
 	{
-		UndirectedGraphWithEdgeWeights graph = new UndirectedGraphWithEdgeWeights();
+		NodeIndex index = new NodeIndex(upMap.size() + dwMap.size());
+		EdgeList edges = new EdgeList(getEdgeCount());
 
-		for (String s1 : getOneSideSymbols(true))
+		for (String source : dwMap.keySet())
 		{
-			Set<String> d1 = getDownstream(s1);
+			int s = index.intern(source);
 
-			for (String s2 : getOneSideSymbols(true))
+			for (String target : dwMap.get(source))
 			{
-				if (s1.compareTo(s2) < 0)
-				{
-					Set<String> d2 = getDownstream(s2);
-
-					double weight = CollectionUtil.getJaccardSimilarity(d1, d2);
-
-					if (weight > 0) graph.putRelation(s1, s2, weight);
-				}
+				edges.add(s, index.intern(target));
 			}
 		}
 
-		return graph;
+		return new FrozenGraph(getName(), getEdgeType(), index, edges.toCSR(index.size(), true));
+	}
+
+	/**
+	 * Gets a graph where source nodes that share a target are connected with the Jaccard similarity of their targets.
+	 */
+	public UndirectedGraphWithEdgeWeights getDownstreamSimilarityGraph()
+	{
+		return getDownstreamSimilarityGraph(0, 0);
+	}
+
+	/**
+	 * Keeps only the pairs with at least the given similarity, and the top k partners of each node if k is positive.
+	 */
+	public UndirectedGraphWithEdgeWeights getDownstreamSimilarityGraph(double minJaccard, int topK)
+	{
+		DownstreamSimilarity sim = new DownstreamSimilarity(freeze());
+		sim.setMinJaccard(minJaccard);
+		sim.setTopK(topK);
+		return sim.toGraph(sim.run());
 	}
 
 	public static void main(String[] args) throws FileNotFoundException
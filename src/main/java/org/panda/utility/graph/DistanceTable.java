@@ -0,0 +1,191 @@
+package org.panda.utility.graph;
+
+import org.panda.utility.graph.DirectedGraph.NeighborType;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Shortest distances from every node of a frozen graph, up to a limit. Distances are kept in bytes, hence the limit
+ * cannot exceed MAX_DISTANCE.
+ */
+public class DistanceTable implements Serializable
+{
+	public static final int MAX_DISTANCE = 255;
+
+	private static final int[] NO_TARGET = new int[0];
+	private static final byte[] NO_DISTANCE = new byte[0];
+
+	private final FrozenGraph graph;
+	private final int limit;
+	private final int[][] targets;
+	private final byte[][] distances;
+
+	public DistanceTable(FrozenGraph graph, int limit, NeighborType type)
+	{
+		if (limit > MAX_DISTANCE) throw new IllegalArgumentException(
+			"Distance limit cannot be larger than " + MAX_DISTANCE + ". Given: " + limit);
+		if (type == NeighborType.BOTHSTREAM && graph.isDirected()) throw new IllegalArgumentException(
+			"Bothstream search does not have a distance per node. Use UPSTREAM, DOWNSTREAM or UNDIRECTED.");
+
+		this.graph = graph;
+		this.limit = limit;
+		int n = graph.getNodeCount();
+		targets = new int[n][];
+		distances = new byte[n][];
+
+		ThreadLocal<GraphTraverser> traversers = ThreadLocal.withInitial(() -> new GraphTraverser(graph));
+		IntStream.range(0, n).parallel().forEach(source -> fillRow(traversers.get(), source, type));
+	}
+
+	private void fillRow(GraphTraverser traverser, int source, NeighborType type)
+	{
+		int size = traverser.getNeighbors(source, limit, type);
+
+		if (size == 0)
+		{
+			targets[source] = NO_TARGET;
+			distances[source] = NO_DISTANCE;
+			return;
+		}
+
+		// Pack id and distance together so that one primitive sort orders both by id
+		int[] result = traverser.getResult();
+		long[] packed = new long[size];
+		int start = 0;
+		for (int layer = 0; layer < traverser.getLayerCount(); layer++)
+		{
+			int end = traverser.getLayerEnd(layer);
+			for (int i = start; i < end; i++)
+			{
+				packed[i] = ((long) result[i] << 8) | (layer + 1);
+			}
+			start = end;
+		}
+		Arrays.sort(packed);
+
+		int[] tgt = new int[size];
+		byte[] dist = new byte[size];
+		for (int i = 0; i < size; i++)
+		{
+			tgt[i] = (int) (packed[i] >>> 8);
+			dist[i] = (byte) packed[i];
+		}
+		targets[source] = tgt;
+		distances[source] = dist;
+	}
+
+	public FrozenGraph getGraph()
+	{
+		return graph;
+	}
+
+	public int getLimit()
+	{
+		return limit;
+	}
+
+	/**
+	 * Gets the distance from source to target, or -1 if target is not reachable within the limit.
+	 */
+	public int getDistance(int source, int target)
+	{
+		int i = Arrays.binarySearch(targets[source], target);
+		return i < 0 ? -1 : distances[source][i] & 0xFF;
+	}
+
+	/**
+	 * Gets the distance from source to target, or -1 if target is not reachable or a node is not in the graph.
+	 */
+	public int getDistance(String source, String target)
+	{
+		int s = graph.getId(source);
+		int t = graph.getId(target);
+		return s < 0 || t < 0 ? -1 : getDistance(s, t);
+	}
+
+	/**
+	 * Number of nodes reachable from the source within the limit.
+	 */
+	public int getReachedCount(int source)
+	{
+		return targets[source].length;
+	}
+
+	/**
+	 * Gets the i-th reached node of the source. Reached nodes are in increasing id order.
+	 */
+	public int getReached(int source, int i)
+	{
+		return targets[source][i];
+	}
+
+	/**
+	 * Gets the distance to the i-th reached node of the source.
+	 */
+	public int getReachedDistance(int source, int i)
+	{
+		return distances[source][i] & 0xFF;
+	}
+
+	/**
+	 * Gets the shortest distances in the format of toMap without a table, for limits above MAX_DISTANCE.
+	 */
+	public static Map<String, Map<String, Integer>> getDistanceMap(FrozenGraph graph, int limit, NeighborType type)
+	{
+		int n = graph.getNodeCount();
+		List<Map<String, Integer>> rows = new ArrayList<>(Collections.nCopies(n, null));
+
+		ThreadLocal<GraphTraverser> traversers = ThreadLocal.withInitial(() -> new GraphTraverser(graph));
+		IntStream.range(0, n).parallel().forEach(source ->
+		{
+			GraphTraverser traverser = traversers.get();
+			int size = traverser.getNeighbors(source, limit, type);
+			if (size == 0) return;
+
+			int[] result = traverser.getResult();
+			Map<String, Integer> row = new HashMap<>((int) (size / 0.75) + 1);
+			int start = 0;
+			for (int layer = 0; layer < traverser.getLayerCount(); layer++)
+			{
+				int end = traverser.getLayerEnd(layer);
+				for (int i = start; i < end; i++)
+				{
+					row.put(graph.getName(result[i]), layer + 1);
+				}
+				start = end;
+			}
+			rows.set(source, row);
+		});
+
+		Map<String, Map<String, Integer>> map = new HashMap<>();
+		for (int s = 0; s < n; s++)
+		{
+			if (rows.get(s) != null) map.put(graph.getName(s), rows.get(s));
+		}
+		return map;
+	}
+
+	/**
+	 * Converts the table to nested maps, in the format of Graph.getShortestDistances.
+	 */
+	public Map<String, Map<String, Integer>> toMap()
+	{
+		Map<String, Map<String, Integer>> map = new HashMap<>();
+
+		for (int s = 0; s < targets.length; s++)
+		{
+			int size = targets[s].length;
+			if (size == 0) continue;
+
+			Map<String, Integer> row = new HashMap<>((int) (size / 0.75) + 1);
+			for (int i = 0; i < size; i++)
+			{
+				row.put(graph.getName(targets[s][i]), distances[s][i] & 0xFF);
+			}
+			map.put(graph.getName(s), row);
+		}
+		return map;
+	}
+}
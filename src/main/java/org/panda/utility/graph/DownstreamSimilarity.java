@@ -0,0 +1,224 @@
+package org.panda.utility.graph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the Jaccard similarity of the downstream sets of source pairs in a directed graph. Only the pairs that share
+ * a target are scored, found through the upstream of the targets.
+ */
+public class DownstreamSimilarity
+{
+	private final FrozenGraph graph;
+	private final CSR csr;
+
+	private double minJaccard;
+	private int topK;
+
+	public DownstreamSimilarity(FrozenGraph graph)
+	{
+		if (!graph.isDirected()) throw new IllegalArgumentException("Downstream similarity needs a directed graph.");
+		this.graph = graph;
+		this.csr = graph.getAdjacency();
+	}
+
+	/**
+	 * Pairs with a similarity lower than this are not reported. Pairs that share no target are never reported.
+	 */
+	public void setMinJaccard(double minJaccard)
+	{
+		this.minJaccard = minJaccard;
+	}
+
+	/**
+	 * Keeps a pair only if it is in the top k of one of its sources. Zero means no limit.
+	 */
+	public void setTopK(int topK)
+	{
+		this.topK = topK;
+	}
+
+	public Pairs run()
+	{
+		int n = csr.nodeCount;
+		ThreadLocal<int[]> counters = ThreadLocal.withInitial(() -> new int[n]);
+		ThreadLocal<int[]> touchedLists = ThreadLocal.withInitial(() -> new int[n]);
+
+		Pairs[] rows = new Pairs[n];
+		IntStream.range(0, n).parallel().forEach(s ->
+		{
+			if (csr.getOutDegree(s) > 0) rows[s] = scoreRow(s, counters.get(), touchedLists.get());
+		});
+
+		// Top-k selection makes rows asymmetric, so the same pair can come from both of its members
+		Pairs all = new Pairs(0);
+		for (int s = 0; s < n; s++)
+		{
+			Pairs row = rows[s];
+			if (row == null) continue;
+
+			for (int i = 0; i < row.size; i++)
+			{
+				int other = row.second[i];
+				if (topK > 0 && other < s && rows[other] != null && rows[other].contains(s)) continue;
+				all.add(Math.min(s, other), Math.max(s, other), row.weight[i]);
+			}
+		}
+		return all;
+	}
+
+	private Pairs scoreRow(int s, int[] counter, int[] touched)
+	{
+		int touchedSize = 0;
+
+		for (int i = csr.dwOffset[s]; i < csr.dwOffset[s + 1]; i++)
+		{
+			int t = csr.dwAdj[i];
+			for (int j = csr.upOffset[t]; j < csr.upOffset[t + 1]; j++)
+			{
+				int other = csr.upAdj[j];
+
+				// Without a top-k limit each pair is scored only by its smaller member
+				if (other == s || (topK <= 0 && other < s)) continue;
+
+				if (counter[other]++ == 0) touched[touchedSize++] = other;
+			}
+		}
+
+		int degree = csr.getOutDegree(s);
+		Pairs row = new Pairs(touchedSize);
+		for (int i = 0; i < touchedSize; i++)
+		{
+			int other = touched[i];
+			int intersection = counter[other];
+			counter[other] = 0;
+
+			double jaccard = intersection / (double) (degree + csr.getOutDegree(other) - intersection);
+			if (jaccard >= minJaccard) row.add(s, other, jaccard);
+		}
+
+		if (topK > 0 && row.size > topK) row = row.top(topK);
+		row.sortBySecond();
+		return row;
+	}
+
+	/**
+	 * Writes the pairs into a weighted undirected graph.
+	 */
+	public UndirectedGraphWithEdgeWeights toGraph(Pairs pairs)
+	{
+		UndirectedGraphWithEdgeWeights g = new UndirectedGraphWithEdgeWeights();
+		for (int i = 0; i < pairs.size; i++)
+		{
+			g.putRelation(graph.getName(pairs.first[i]), graph.getName(pairs.second[i]), pairs.weight[i]);
+		}
+		return g;
+	}
+
+	public FrozenGraph getGraph()
+	{
+		return graph;
+	}
+
+	/**
+	 * Compact list of weighted node pairs, as node ids of the frozen graph.
+	 */
+	public static class Pairs
+	{
+		int[] first;
+		int[] second;
+		double[] weight;
+		int size;
+
+		Pairs(int capacity)
+		{
+			capacity = Math.max(1, capacity);
+			first = new int[capacity];
+			second = new int[capacity];
+			weight = new double[capacity];
+		}
+
+		void add(int a, int b, double w)
+		{
+			if (size == first.length)
+			{
+				first = Arrays.copyOf(first, size * 2);
+				second = Arrays.copyOf(second, size * 2);
+				weight = Arrays.copyOf(weight, size * 2);
+			}
+			first[size] = a;
+			second[size] = b;
+			weight[size++] = w;
+		}
+
+		/**
+		 * Gets the k pairs with the highest weight. Ties are broken by the smaller second id.
+		 */
+		Pairs top(int k)
+		{
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++)
+			{
+				order[i] = i;
+			}
+			Arrays.sort(order, (i, j) -> weight[i] != weight[j] ? Double.compare(weight[j], weight[i]) :
+				Integer.compare(second[i], second[j]));
+
+			Pairs top = new Pairs(k);
+			for (int i = 0; i < k; i++)
+			{
+				top.add(first[order[i]], second[order[i]], weight[order[i]]);
+			}
+			return top;
+		}
+
+		void sortBySecond()
+		{
+			long[] keys = new long[size];
+			for (int i = 0; i < size; i++)
+			{
+				keys[i] = ((long) second[i] << 32) | i;
+			}
+			Arrays.sort(keys);
+
+			int[] f = new int[size];
+			int[] s = new int[size];
+			double[] w = new double[size];
+			for (int i = 0; i < size; i++)
+			{
+				int j = (int) keys[i];
+				f[i] = first[j];
+				s[i] = second[j];
+				w[i] = weight[j];
+			}
+			first = f;
+			second = s;
+			weight = w;
+		}
+
+		boolean contains(int secondId)
+		{
+			return Arrays.binarySearch(second, 0, size, secondId) >= 0;
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		public int getFirst(int i)
+		{
+			return first[i];
+		}
+
+		public int getSecond(int i)
+		{
+			return second[i];
+		}
+
+		public double getWeight(int i)
+		{
+			return weight[i];
+		}
+	}
+}
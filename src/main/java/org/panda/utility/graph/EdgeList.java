@@ -0,0 +1,40 @@
+package org.panda.utility.graph;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of edges between dense node ids.
+ */
+class EdgeList
+{
+	int[] src;
+	int[] tgt;
+	int size;
+
+	EdgeList()
+	{
+		this(16);
+	}
+
+	EdgeList(int capacity)
+	{
+		src = new int[Math.max(1, capacity)];
+		tgt = new int[Math.max(1, capacity)];
+	}
+
+	void add(int source, int target)
+	{
+		if (size == src.length)
+		{
+			src = Arrays.copyOf(src, size * 2);
+			tgt = Arrays.copyOf(tgt, size * 2);
+		}
+		src[size] = source;
+		tgt[size++] = target;
+	}
+
+	CSR toCSR(int nodeCount, boolean directed)
+	{
+		return directed ? CSR.build(nodeCount, src, tgt, size) : CSR.buildUndirected(nodeCount, src, tgt, size);
+	}
+}
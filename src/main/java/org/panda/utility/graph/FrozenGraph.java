@@ -0,0 +1,245 @@
+package org.panda.utility.graph;
+
+import org.panda.utility.graph.DirectedGraph.NeighborType;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Read-only snapshot of a graph, obtained by Graph.freeze(). Nodes have dense integer ids, and traversal methods write
+ * into caller-supplied arrays.
+ */
+public class FrozenGraph implements Serializable
+{
+	private final String name;
+	private final String edgeType;
+	private final NodeIndex index;
+	private final CSR csr;
+
+	FrozenGraph(String name, String edgeType, NodeIndex index, CSR csr)
+	{
+		this.name = name;
+		this.edgeType = edgeType;
+		this.index = index;
+		this.csr = csr;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public String getEdgeType()
+	{
+		return edgeType;
+	}
+
+	public boolean isDirected()
+	{
+		return !csr.isUndirected();
+	}
+
+	/**
+	 * Number of ids. Some nodes may not have any edges, for instance after taking an induced subgraph.
+	 */
+	public int getNodeCount()
+	{
+		return csr.nodeCount;
+	}
+
+	public int getEdgeCount()
+	{
+		if (isDirected()) return csr.getEdgeCount();
+
+		int cnt = 0;
+		for (int v = 0; v < csr.nodeCount; v++)
+		{
+			for (int i = csr.dwOffset[v]; i < csr.dwOffset[v + 1]; i++)
+			{
+				if (v <= csr.dwAdj[i]) cnt++;
+			}
+		}
+		return cnt;
+	}
+
+	/**
+	 * Gets the id of the node, or -1 if it is not in the graph.
+	 */
+	public int getId(String node)
+	{
+		int id = index.getId(node);
+		return id < csr.nodeCount ? id : -1;
+	}
+
+	public String getName(int id)
+	{
+		return index.getName(id);
+	}
+
+	/**
+	 * Gets the nodes that have at least one edge.
+	 */
+	public Set<String> getSymbols()
+	{
+		Set<String> syms = new HashSet<>();
+		for (int v = 0; v < csr.nodeCount; v++)
+		{
+			if (hasEdge(v)) syms.add(index.getName(v));
+		}
+		return syms;
+	}
+
+	public boolean hasEdge(int node)
+	{
+		return csr.getOutDegree(node) > 0 || csr.getInDegree(node) > 0;
+	}
+
+	public boolean hasRelation(int source, int target)
+	{
+		return csr.hasEdge(source, target);
+	}
+
+	public int getOutDegree(int node)
+	{
+		return csr.getOutDegree(node);
+	}
+
+	public int getInDegree(int node)
+	{
+		return csr.getInDegree(node);
+	}
+
+	/**
+	 * Gets the largest in or out degree. getNeighbors on directed graphs may need twice this size.
+	 */
+	public int getMaxDegree()
+	{
+		int max = 0;
+		for (int v = 0; v < csr.nodeCount; v++)
+		{
+			max = Math.max(max, Math.max(csr.getOutDegree(v), csr.getInDegree(v)));
+		}
+		return max;
+	}
+
+	/**
+	 * Writes the targets of the node to the buffer in increasing id order, and returns their count.
+	 */
+	public int getDownstream(int node, int[] buffer)
+	{
+		int from = csr.dwOffset[node];
+		int cnt = csr.dwOffset[node + 1] - from;
+		System.arraycopy(csr.dwAdj, from, buffer, 0, cnt);
+		return cnt;
+	}
+
+	/**
+	 * Writes the sources of the node to the buffer in increasing id order, and returns their count.
+	 */
+	public int getUpstream(int node, int[] buffer)
+	{
+		int from = csr.upOffset[node];
+		int cnt = csr.upOffset[node + 1] - from;
+		System.arraycopy(csr.upAdj, from, buffer, 0, cnt);
+		return cnt;
+	}
+
+	/**
+	 * Writes the upstream and downstream of the node to the buffer in increasing id order, and returns their count.
+	 */
+	public int getNeighbors(int node, int[] buffer)
+	{
+		if (!isDirected()) return getDownstream(node, buffer);
+
+		int i = csr.dwOffset[node], iEnd = csr.dwOffset[node + 1];
+		int j = csr.upOffset[node], jEnd = csr.upOffset[node + 1];
+		int k = 0;
+
+		while (i < iEnd || j < jEnd)
+		{
+			if (j == jEnd || (i < iEnd && csr.dwAdj[i] < csr.upAdj[j])) buffer[k++] = csr.dwAdj[i++];
+			else if (i == iEnd || csr.upAdj[j] < csr.dwAdj[i]) buffer[k++] = csr.upAdj[j++];
+			else
+			{
+				buffer[k++] = csr.dwAdj[i++];
+				j++;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * Expands one layer of a breadth-first search, marking and writing the unvisited neighbors of the frontier to the
+	 * output. Returns the number of nodes written.
+	 */
+	public int goBFS(int[] frontier, int size, NodeMarker visited, int[] out, NeighborType type)
+	{
+		return goBFS(frontier, size, visited, out, 0, type);
+	}
+
+	/**
+	 * Writes the output starting from the given position.
+	 */
+	public int goBFS(int[] frontier, int size, NodeMarker visited, int[] out, int outStart, NeighborType type)
+	{
+		int k = outStart;
+		boolean dw = type != NeighborType.UPSTREAM;
+		boolean up = type != NeighborType.DOWNSTREAM && isDirected();
+
+		for (int f = 0; f < size; f++)
+		{
+			int v = frontier[f];
+			if (dw) k = collect(csr.dwOffset, csr.dwAdj, v, visited, out, k);
+			if (up) k = collect(csr.upOffset, csr.upAdj, v, visited, out, k);
+		}
+		return k - outStart;
+	}
+
+	private int collect(int[] offset, int[] adj, int v, NodeMarker visited, int[] out, int k)
+	{
+		for (int i = offset[v]; i < offset[v + 1]; i++)
+		{
+			if (visited.mark(adj[i])) out[k++] = adj[i];
+		}
+		return k;
+	}
+
+	/**
+	 * Gets the snapshot of the subgraph induced by the given nodes. Node ids stay the same.
+	 */
+	public FrozenGraph getInducedSubgraph(Collection<String> nodes)
+	{
+		boolean[] keep = new boolean[csr.nodeCount];
+		for (String node : nodes)
+		{
+			int id = getId(node);
+			if (id >= 0) keep[id] = true;
+		}
+
+		EdgeList edges = new EdgeList(csr.getEdgeCount());
+		for (int v = 0; v < csr.nodeCount; v++)
+		{
+			if (!keep[v]) continue;
+
+			for (int i = csr.dwOffset[v]; i < csr.dwOffset[v + 1]; i++)
+			{
+				int t = csr.dwAdj[i];
+				if (keep[t] && (isDirected() || v <= t)) edges.add(v, t);
+			}
+		}
+
+		return new FrozenGraph(name, edgeType, index, edges.toCSR(csr.nodeCount, isDirected()));
+	}
+
+	CSR getAdjacency()
+	{
+		return csr;
+	}
+
+	NodeIndex getIndex()
+	{
+		return index;
+	}
+}
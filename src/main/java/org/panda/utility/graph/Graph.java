@@ -2,6 +2,7 @@ package org.panda.utility.graph;
 
 import org.panda.utility.CollectionUtil;
 import org.panda.utility.FileUtil;
+import org.panda.utility.graph.DirectedGraph.NeighborType;
 import org.panda.utility.graph.query.QueryEdge;
 import org.panda.utility.graph.query.QueryGraphObject;
 import org.panda.utility.statistics.FDR;
@@ -14,6 +15,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * This is a simple graph, built using external maps. All nodes are identified with a unique String.
@@ -30,6 +32,11 @@ public abstract class Graph implements Serializable
 
 	protected boolean allowSelfEdges = false;
 
+	/**
+	 * Incremented at each change of the edges, for telling if a structure derived from the graph is outdated.
+	 */
+	private transient int modCount;
+
 	public Graph()
 	{
 		this (null, null);
@@ -42,17 +49,12 @@ public abstract class Graph implements Serializable
 		mediators = new HashMap<>();
 	}
 
+	/**
+	 * Loads the relations of the given types from the SIF file, in parallel.
+	 */
 	public boolean load(String filename, Set<String> types)
 	{
-		try
-		{
-			return load(new FileInputStream(filename), types);
-		}
-		catch (FileNotFoundException e)
-		{
-			e.printStackTrace();
-			return false;
-		}
+		return new SIFParser(types).load(filename, this);
 	}
 
 	public boolean load(InputStream is, Set<String> types)
@@ -93,6 +95,15 @@ public abstract class Graph implements Serializable
 	}
 	catch (IOException e){throw new RuntimeException(e);}}
 
+	/**
+	 * Writes the graph in the binary format of BinaryGraphFile, which loads much faster than SIF.
+	 */
+	public void writeBinary(String filename) { try
+	{
+		BinaryGraphFile.write(this, filename);
+	}
+	catch (IOException e){throw new RuntimeException(e);}}
+
 	public void write(String filename, Set<QueryGraphObject> subset) { try
 	{
 		BufferedWriter writer = Files.newBufferedWriter(Paths.get(filename));
@@ -150,6 +161,19 @@ public abstract class Graph implements Serializable
 		this.mediators.clear();
 	}
 
+	/**
+	 * Gets a counter that changes whenever relations are added or removed.
+	 */
+	public int getModificationCount()
+	{
+		return modCount;
+	}
+
+	protected void modified()
+	{
+		modCount++;
+	}
+
 	public void putRelation(String source, String target, Set<String> mediators)
 	{
 		putRelation(source, target);
@@ -333,6 +357,11 @@ public abstract class Graph implements Serializable
 	}
 
 	public void merge(Graph graph)
+	{
+		mergeMediators(graph);
+	}
+
+	protected void mergeMediators(Graph graph)
 	{
 		for (String gene : graph.mediators.keySet())
 		{
@@ -463,38 +492,89 @@ public abstract class Graph implements Serializable
 	public Map<String, Double>[] getEnrichmentScores(Set<String> query, Set<String> background, int distance,
 		int minMember)
 	{
-		Graph graph = this;
+		return getEnrichmentScores(freeze(), query, background, NeighborType.UNDIRECTED, distance, minMember);
+	}
 
+	/**
+	 * Calculates the enrichment of the query in the neighborhood of each node over the frozen graph, searching 64 nodes
+	 * at a time with MultiSourceBFS.
+	 */
+	protected static Map<String, Double>[] getEnrichmentScores(FrozenGraph graph, Set<String> query,
+		Set<String> background, NeighborType type, int distance, int minMember)
+	{
 		if (background != null)
 		{
-			graph = copy();
-			graph.crop(background);
+			graph = graph.getInducedSubgraph(background);
 		}
 
-		background = graph.getSymbols();
-		int n = background.size();
+		int nodeCount = graph.getNodeCount();
+
+		int n = 0;
+		int[] sources = new int[nodeCount];
+		for (int v = 0; v < nodeCount; v++)
+		{
+			if (graph.hasEdge(v)) sources[n++] = v;
+		}
 
-		query = new HashSet<>(query);
-		query.retainAll(background);
+		boolean[] inQuery = new boolean[nodeCount];
+		int qSize = 0;
+		for (String gene : query)
+		{
+			int id = graph.getId(gene);
+			if (id >= 0 && graph.hasEdge(id) && !inQuery[id])
+			{
+				inQuery[id] = true;
+				qSize++;
+			}
+		}
 
-		int qSize = query.size();
+		// Neighborhood sizes and query counts, at the positions of the sources
+		int[] size = new int[n];
+		int[] overlap = new int[n];
+		boolean[] selfReached = new boolean[n];
+
+		FrozenGraph g = graph;
+		int sourceCount = n;
+		ThreadLocal<MultiSourceBFS> engines = ThreadLocal.withInitial(() -> new MultiSourceBFS(g));
+		IntStream.range(0, (n + MultiSourceBFS.LANES - 1) / MultiSourceBFS.LANES).parallel().forEach(batch ->
+		{
+			int from = batch * MultiSourceBFS.LANES;
+			int count = Math.min(MultiSourceBFS.LANES, sourceCount - from);
+
+			MultiSourceBFS bfs = engines.get();
+			bfs.run(sources, from, count, distance, type);
+
+			int[] reached = new int[count];
+			int[] hits = new int[count];
+			bfs.count(inQuery, reached, hits);
+
+			for (int lane = 0; lane < count; lane++)
+			{
+				size[from + lane] = reached[lane];
+				overlap[from + lane] = hits[lane];
+				selfReached[from + lane] = bfs.isReached(lane, sources[from + lane]);
+			}
+		});
 
 		Map<String, Double> pvals = new HashMap<>();
 		Map<String, Double> limit = new HashMap<>();
 
-		for (String gene : background)
+		for (int i = 0; i < n; i++)
 		{
-			Set<String> neighbors = graph.getNeighbors(gene, distance);
-
-			if (neighbors.size() < minMember) continue;
+			if (size[i] < minMember) continue;
 
-			neighbors = new HashSet<>(neighbors);
-			neighbors.add(gene);
-			int nSize = neighbors.size();
+			int v = sources[i];
 
-			neighbors.retainAll(query);
-			int o = neighbors.size();
+			// The node itself is counted in its neighborhood
+			int nSize = size[i];
+			int o = overlap[i];
+			if (!selfReached[i])
+			{
+				nSize++;
+				if (inQuery[v]) o++;
+			}
 
+			String gene = graph.getName(v);
 			pvals.put(gene, FishersExactTest.calcEnrichmentPval(n, qSize, nSize, o));
 			limit.put(gene, FishersExactTest.calcEnrichmentPval(n, qSize, nSize,
 				Math.min(qSize, nSize)));
@@ -536,24 +616,30 @@ public abstract class Graph implements Serializable
 		return g;
 	}
 
+	/**
+	 * Gets the shortest distances between all nodes, up to the given limit. Limits above DistanceTable.MAX_DISTANCE
+	 * are searched without the table.
+	 */
 	public Map<String, Map<String, Integer>> getShortestDistances(int limit)
 	{
-		Map<String, Map<String, Integer>> dist = new HashMap<>();
+		if (limit > DistanceTable.MAX_DISTANCE) return DistanceTable.getDistanceMap(freeze(), limit, getDistanceType());
+		return getShortestDistanceTable(limit).toMap();
+	}
 
-		for (String source : getSymbols())
-		{
-			for (int i = 1; i <= limit; i++)
-			{
-				Set<String> dw = getNeighbors(Collections.singleton(source), i);
+	/**
+	 * Gets the shortest distances between all nodes, up to a limit of at most DistanceTable.MAX_DISTANCE.
+	 */
+	public DistanceTable getShortestDistanceTable(int limit)
+	{
+		return new DistanceTable(freeze(), limit, getDistanceType());
+	}
 
-				for (String target : dw)
-				{
-					if (!dist.containsKey(source)) dist.put(source, new HashMap<>());
-					if (!dist.get(source).containsKey(target)) dist.get(source).put(target, i);
-				}
-			}
-		}
-		return dist;
+	/**
+	 * Direction of the shortest distance searches. This graph ignores edge directions.
+	 */
+	protected NeighborType getDistanceType()
+	{
+		return NeighborType.UNDIRECTED;
 	}
 
 	/**
@@ -561,6 +647,27 @@ public abstract class Graph implements Serializable
 	 */
 	public abstract Graph getRandomizedCopy(Set<String> withGenes);
 
+	/**
+	 * Gets a read-only snapshot of the graph where nodes have integer ids. Treats the graph as undirected.
+	 */
+	public FrozenGraph freeze()
+	{
+		NodeIndex index = new NodeIndex();
+		EdgeList edges = new EdgeList();
+
+		for (String node : getSymbols())
+		{
+			int s = index.intern(node);
+
+			for (String neighbor : getNeighbors(node))
+			{
+				edges.add(s, index.intern(neighbor));
+			}
+		}
+
+		return new FrozenGraph(name, edgeType, index, edges.toCSR(index.size(), false));
+	}
+
 	public static void main(String[] args) throws FileNotFoundException
 	{
 		String type = "downregulates-expression";
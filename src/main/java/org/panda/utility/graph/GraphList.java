@@ -16,6 +16,18 @@ public class GraphList extends Graph
 
 	protected Map<String, Graph> type2graph;
 
+	/**
+	 * Union of the members, built when first needed and rebuilt after the members change.
+	 */
+	private transient Multigraph multigraph;
+	private transient int multigraphModCount;
+
+	/**
+	 * Members and their modification counts as of the last count.
+	 */
+	private transient List<Graph> countedGraphs;
+	private transient int[] countedModCounts;
+
 	public GraphList(String name)
 	{
 		super(name, null);
@@ -28,6 +40,7 @@ public class GraphList extends Graph
 	{
 		this.graphs.add(graph);
 		type2graph.put(graph.getEdgeType(), graph);
+		modified();
 	}
 
 	public List<Graph> getGraphs()
@@ -40,6 +53,52 @@ public class GraphList extends Graph
 		return type2graph.get(edgeType);
 	}
 
+	/**
+	 * Includes the changes of the member graphs, and the replacement, removal or reordering of members.
+	 */
+	@Override
+	public synchronized int getModificationCount()
+	{
+		if (!isCounted())
+		{
+			countedGraphs = new ArrayList<>(graphs);
+			countedModCounts = new int[graphs.size()];
+			for (int i = 0; i < graphs.size(); i++)
+			{
+				countedModCounts[i] = graphs.get(i).getModificationCount();
+			}
+			modified();
+		}
+		return super.getModificationCount();
+	}
+
+	private boolean isCounted()
+	{
+		if (countedGraphs == null || countedGraphs.size() != graphs.size()) return false;
+		for (int i = 0; i < graphs.size(); i++)
+		{
+			Graph graph = graphs.get(i);
+			if (countedGraphs.get(i) != graph || countedModCounts[i] != graph.getModificationCount()) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the union of the member graphs as a multigraph, or null if there are too many members.
+	 */
+	public synchronized Multigraph getMultigraph()
+	{
+		if (graphs.size() > Multigraph.MAX_TYPES) return null;
+
+		int modCount = getModificationCount();
+		if (multigraph == null || multigraphModCount != modCount)
+		{
+			multigraph = new Multigraph(graphs);
+			multigraphModCount = modCount;
+		}
+		return multigraph;
+	}
+
 	public void write(Writer writer)
 	{
 		for (Graph graph : graphs)
@@ -74,6 +133,9 @@ public class GraphList extends Graph
 
 	public Set<String> goBFS(String seed, boolean downstream)
 	{
+		Multigraph mg = getMultigraph();
+		if (mg != null) return mg.goBFS(Collections.singleton(seed), null, downstream, mg.getAllTypesMask());
+
 		Set<String> result = new HashSet<>();
 		for (Graph graph : graphs)
 		{
@@ -84,6 +146,9 @@ public class GraphList extends Graph
 
 	public Set<String> goBFS(Set<String> seed, Set<String> visited, boolean downstream)
 	{
+		Multigraph mg = getMultigraph();
+		if (mg != null) return mg.goBFS(seed, visited, downstream, mg.getAllTypesMask());
+
 		Set<String> result = new HashSet<>();
 		for (Graph graph : graphs)
 		{
@@ -94,6 +159,9 @@ public class GraphList extends Graph
 
 	public Set<String> goBFS(Set<String> seed, Set<String> visited)
 	{
+		Multigraph mg = getMultigraph();
+		if (mg != null) return mg.goBFS(seed, visited, mg.getAllTypesMask());
+
 		Set<String> result = new HashSet<>();
 		for (Graph graph : graphs)
 		{
@@ -104,6 +172,9 @@ public class GraphList extends Graph
 
 	public Set<String> getUpstream(String gene)
 	{
+		Multigraph mg = getMultigraph();
+		if (mg != null) return mg.getUpstream(gene, mg.getAllTypesMask());
+
 		Set<String> result = new HashSet<>();
 		for (Graph graph : graphs)
 		{
@@ -117,6 +188,9 @@ public class GraphList extends Graph
 
 	public Set<String> getDownstream(String gene)
 	{
+		Multigraph mg = getMultigraph();
+		if (mg != null) return mg.getDownstream(gene, mg.getAllTypesMask());
+
 		Set<String> result = new HashSet<>();
 		for (Graph graph : graphs)
 		{
@@ -130,6 +204,9 @@ public class GraphList extends Graph
 
 	public Set<String> getNeighbors(String gene)
 	{
+		Multigraph mg = getMultigraph();
+		if (mg != null) return mg.getNeighbors(gene, mg.getAllTypesMask());
+
 		Set<String> result = new HashSet<>();
 		for (Graph graph : graphs)
 		{
@@ -140,6 +217,9 @@ public class GraphList extends Graph
 
 	public Set<String> getSymbols()
 	{
+		Multigraph mg = getMultigraph();
+		if (mg != null) return mg.getSymbols();
+
 		Set<String> syms = new HashSet<>();
 
 		for (Graph graph : graphs)
@@ -158,6 +238,9 @@ public class GraphList extends Graph
 	@Override
 	public int getEdgeCount()
 	{
+		Multigraph mg = getMultigraph();
+		if (mg != null) return mg.getEdgeCount();
+
 		int cnt = 0;
 		for (Graph graph : graphs)
 		{
@@ -190,6 +273,9 @@ public class GraphList extends Graph
 
 	public Set<String> getOneSideSymbols(boolean source)
 	{
+		Multigraph mg = getMultigraph();
+		if (mg != null) return mg.getOneSideSymbols(source, mg.getAllTypesMask());
+
 		Set<String> syms = new HashSet<>();
 		for (Graph graph : graphs)
 		{
@@ -232,6 +318,48 @@ public class GraphList extends Graph
 		throw new UnsupportedOperationException("Cannot generate randomized copy of a graph list.");
 	}
 
+	/**
+	 * Gets a snapshot that is the union of the member graphs.
+	 */
+	@Override
+	public FrozenGraph freeze()
+	{
+		NodeIndex index = new NodeIndex();
+		EdgeList edges = new EdgeList();
+
+		for (Graph graph : graphs)
+		{
+			if (graph.isDirected())
+			{
+				DirectedGraph dg = (DirectedGraph) graph;
+
+				for (String source : dg.getOneSideSymbols(true))
+				{
+					int s = index.intern(source);
+
+					for (String target : dg.getDownstream(source))
+					{
+						edges.add(s, index.intern(target));
+					}
+				}
+			}
+			else
+			{
+				for (String node : graph.getSymbols())
+				{
+					int s = index.intern(node);
+
+					for (String neighbor : graph.getNeighbors(node))
+					{
+						edges.add(s, index.intern(neighbor));
+					}
+				}
+			}
+		}
+
+		return new FrozenGraph(getName(), null, index, edges.toCSR(index.size(), isDirected()));
+	}
+
 	public Set<String> toString(Set<String> from, Set<String> to)
 	{
 		Set<String> result = new HashSet<String>();
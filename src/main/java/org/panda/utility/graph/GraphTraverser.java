@@ -0,0 +1,145 @@
+package org.panda.utility.graph;
+
+import org.panda.utility.graph.DirectedGraph.NeighborType;
+
+import java.util.Arrays;
+
+/**
+ * Runs bounded breadth-first searches on a frozen graph, reusing its buffers. Not thread-safe.
+ */
+public class GraphTraverser
+{
+	private final FrozenGraph graph;
+
+	private final NodeMarker reached;
+	private final NodeMarker scratch;
+
+	private final int[] result;
+	private int resultSize;
+
+	private final int[] frontier;
+	private final int[] seed;
+
+	/**
+	 * End positions of each BFS layer in the result array, for single direction searches.
+	 */
+	private int[] layerEnd;
+	private int layerCount;
+
+	public GraphTraverser(FrozenGraph graph)
+	{
+		this.graph = graph;
+		int n = graph.getNodeCount();
+		reached = new NodeMarker(n);
+		scratch = new NodeMarker(n);
+		// Separate upstream and downstream searches can find up to twice the node count before merging
+		result = new int[graph.isDirected() ? 2 * n : n];
+		frontier = new int[n];
+		seed = new int[1];
+		layerEnd = new int[8];
+	}
+
+	public FrozenGraph getGraph()
+	{
+		return graph;
+	}
+
+	public int getNeighbors(int seed, int depth, NeighborType type)
+	{
+		this.seed[0] = seed;
+		return getNeighbors(this.seed, 1, depth, type);
+	}
+
+	/**
+	 * Finds the nodes within the given distance of the seeds, and returns their count. Seeds are not in the result
+	 * unless they are reached from a seed.
+	 */
+	public int getNeighbors(int[] seeds, int seedCount, int depth, NeighborType type)
+	{
+		reached.clear();
+		resultSize = 0;
+		layerCount = 0;
+
+		if (depth < 1) return 0;
+
+		if (type == NeighborType.BOTHSTREAM && graph.isDirected())
+		{
+			search(seeds, seedCount, depth, NeighborType.UPSTREAM, reached);
+
+			// Nodes found upstream have to be traversed again downstream, hence a separate visited marker
+			scratch.clear();
+			int start = resultSize;
+			search(seeds, seedCount, depth, NeighborType.DOWNSTREAM, scratch);
+
+			// Remove the downstream findings that were already found upstream
+			int k = start;
+			for (int i = start; i < resultSize; i++)
+			{
+				if (reached.mark(result[i])) result[k++] = result[i];
+			}
+			resultSize = k;
+		}
+		else
+		{
+			search(seeds, seedCount, depth, type, reached);
+		}
+
+		return resultSize;
+	}
+
+	private void search(int[] seeds, int seedCount, int depth, NeighborType type, NodeMarker visited)
+	{
+		int layerStart = resultSize;
+		resultSize += graph.goBFS(seeds, seedCount, visited, result, layerStart, type);
+		recordLayer();
+
+		for (int d = 1; d < depth && resultSize > layerStart; d++)
+		{
+			int layerSize = resultSize - layerStart;
+			System.arraycopy(result, layerStart, frontier, 0, layerSize);
+			layerStart = resultSize;
+			resultSize += graph.goBFS(frontier, layerSize, visited, result, layerStart, type);
+			recordLayer();
+		}
+	}
+
+	private void recordLayer()
+	{
+		if (layerCount == layerEnd.length) layerEnd = Arrays.copyOf(layerEnd, layerCount * 2);
+		layerEnd[layerCount++] = resultSize;
+	}
+
+	public int[] getResult()
+	{
+		return result;
+	}
+
+	public int getResultSize()
+	{
+		return resultSize;
+	}
+
+	/**
+	 * Gets the number of BFS layers in the last search. Not available after a BOTHSTREAM search.
+	 */
+	public int getLayerCount()
+	{
+		return layerCount;
+	}
+
+	/**
+	 * Gets the end position of the layer in the result array. Nodes of layer i are at distance i + 1 to the seeds.
+	 */
+	public int getLayerEnd(int layer)
+	{
+		return layerEnd[layer];
+	}
+
+	/**
+	 * Tells if the node is in the result of the last search.
+	 */
+	public boolean isReached(int node)
+	{
+		return reached.isMarked(node);
+	}
+}
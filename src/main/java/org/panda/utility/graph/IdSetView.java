@@ -0,0 +1,61 @@
+package org.panda.utility.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only set of node names backed by a sorted range of an id array.
+ */
+class IdSetView extends AbstractSet<String>
+{
+	private final NodeIndex index;
+	private final int[] ids;
+	private final int from;
+	private final int to;
+
+	IdSetView(NodeIndex index, int[] ids, int from, int to)
+	{
+		this.index = index;
+		this.ids = ids;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	public boolean contains(Object o)
+	{
+		if (!(o instanceof String)) return false;
+		int id = index.getId((String) o);
+		return id >= 0 && Arrays.binarySearch(ids, from, to, id) >= 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return to - from;
+	}
+
+	@Override
+	public Iterator<String> iterator()
+	{
+		return new Iterator<String>()
+		{
+			int i = from;
+
+			@Override
+			public boolean hasNext()
+			{
+				return i < to;
+			}
+
+			@Override
+			public String next()
+			{
+				if (i >= to) throw new NoSuchElementException();
+				return index.getName(ids[i++]);
+			}
+		};
+	}
+}
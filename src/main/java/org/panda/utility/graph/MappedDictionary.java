@@ -0,0 +1,86 @@
+package org.panda.utility.graph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A list of strings stored in a mapped file as an offset array followed by their UTF-8 bytes, decoded on first access.
+ */
+final class MappedDictionary
+{
+	private final ByteBuffer buf;
+	private final int offsetsPos;
+	private final int blobPos;
+	private final int size;
+	private final String[] decoded;
+
+	MappedDictionary(ByteBuffer buf, int offsetsPos, int size, int blobPos)
+	{
+		this.buf = buf;
+		this.offsetsPos = offsetsPos;
+		this.size = size;
+		this.blobPos = blobPos;
+		this.decoded = new String[size];
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	String get(int i)
+	{
+		String s = decoded[i];
+		if (s == null)
+		{
+			int from = start(i);
+			byte[] b = new byte[start(i + 1) - from];
+			for (int j = 0; j < b.length; j++)
+			{
+				b[j] = buf.get(blobPos + from + j);
+			}
+			s = new String(b, StandardCharsets.UTF_8);
+			decoded[i] = s;
+		}
+		return s;
+	}
+
+	/**
+	 * Gets the position of the string in a dictionary written in UTF-8 byte order, or -1 if it is not there.
+	 */
+	int find(String s)
+	{
+		byte[] key = s.getBytes(StandardCharsets.UTF_8);
+		int lo = 0;
+		int hi = size - 1;
+
+		while (lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			int c = compare(mid, key);
+			if (c < 0) lo = mid + 1;
+			else if (c > 0) hi = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	private int compare(int i, byte[] key)
+	{
+		int from = blobPos + start(i);
+		int len = start(i + 1) - start(i);
+		int n = Math.min(len, key.length);
+
+		for (int j = 0; j < n; j++)
+		{
+			int c = (buf.get(from + j) & 0xFF) - (key[j] & 0xFF);
+			if (c != 0) return c;
+		}
+		return len - key.length;
+	}
+
+	private int start(int i)
+	{
+		return buf.getInt(offsetsPos + i * 4);
+	}
+}
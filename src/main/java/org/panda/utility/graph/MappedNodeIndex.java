@@ -0,0 +1,66 @@
+package org.panda.utility.graph;
+
+/**
+ * Node index over the name dictionary of a binary graph file. New names get ids after the file's nodes.
+ */
+class MappedNodeIndex extends NodeIndex
+{
+	private final transient MappedDictionary names;
+	private NodeIndex extra;
+
+	MappedNodeIndex(MappedDictionary names)
+	{
+		super(1);
+		this.names = names;
+	}
+
+	@Override
+	public int getId(String name)
+	{
+		int id = names.find(name);
+		if (id >= 0) return id;
+		if (extra == null) return -1;
+		id = extra.getId(name);
+		return id < 0 ? -1 : names.size() + id;
+	}
+
+	@Override
+	public int intern(String name)
+	{
+		int id = names.find(name);
+		if (id >= 0) return id;
+		if (extra == null) extra = new NodeIndex();
+		return names.size() + extra.intern(name);
+	}
+
+	@Override
+	public String getName(int id)
+	{
+		return id < names.size() ? names.get(id) : extra.getName(id - names.size());
+	}
+
+	@Override
+	public int size()
+	{
+		return names.size() + (extra == null ? 0 : extra.size());
+	}
+
+	/**
+	 * The copy shares the mapped dictionary, which does not change, and copies only the names added after loading.
+	 */
+	@Override
+	public NodeIndex copy()
+	{
+		MappedNodeIndex copy = new MappedNodeIndex(names);
+		if (extra != null) copy.extra = extra.copy();
+		return copy;
+	}
+
+	/**
+	 * The mapped buffer cannot be serialized, so a plain index with the same ids is written instead.
+	 */
+	private Object writeReplace()
+	{
+		return super.copy();
+	}
+}
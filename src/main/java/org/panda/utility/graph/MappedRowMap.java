@@ -0,0 +1,119 @@
+package org.panda.utility.graph;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A map keyed with the node names of a binary graph file, whose values are read from the file at the first access of
+ * each key. Read values and changes are kept in a HashMap.
+ */
+class MappedRowMap<V> extends AbstractMap<String, V> implements Serializable
+{
+	private final transient MappedDictionary names;
+	private final transient Row<V> row;
+	private final transient boolean[] read;
+	private transient int unread;
+	private final Map<String, V> map = new HashMap<>();
+
+	interface Row<V>
+	{
+		/**
+		 * Reads the value of the node from the file, or gives null if the node has no value.
+		 */
+		V read(int node);
+	}
+
+	MappedRowMap(MappedDictionary names, Row<V> row)
+	{
+		this.names = names;
+		this.row = row;
+		read = new boolean[names.size()];
+		unread = read.length;
+	}
+
+	private void read(Object key)
+	{
+		if (unread > 0 && key instanceof String)
+		{
+			int v = names.find((String) key);
+			if (v >= 0) read(v);
+		}
+	}
+
+	private void read(int v)
+	{
+		if (read[v]) return;
+		read[v] = true;
+		unread--;
+
+		V value = row.read(v);
+		if (value != null) map.put(names.get(v), value);
+	}
+
+	private void readAll()
+	{
+		for (int v = 0; unread > 0 && v < read.length; v++)
+		{
+			read(v);
+		}
+	}
+
+	@Override
+	public synchronized V get(Object key)
+	{
+		read(key);
+		return map.get(key);
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object key)
+	{
+		read(key);
+		return map.containsKey(key);
+	}
+
+	@Override
+	public synchronized V put(String key, V value)
+	{
+		read(key);
+		return map.put(key, value);
+	}
+
+	@Override
+	public synchronized V remove(Object key)
+	{
+		read(key);
+		return map.remove(key);
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		Arrays.fill(read, true);
+		unread = 0;
+		map.clear();
+	}
+
+	@Override
+	public synchronized int size()
+	{
+		readAll();
+		return map.size();
+	}
+
+	@Override
+	public synchronized Set<Entry<String, V>> entrySet()
+	{
+		readAll();
+		return map.entrySet();
+	}
+
+	/**
+	 * The mapped file cannot be serialized, so a HashMap with all the entries is written instead.
+	 */
+	private synchronized Object writeReplace()
+	{
+		readAll();
+		return new HashMap<>(map);
+	}
+}
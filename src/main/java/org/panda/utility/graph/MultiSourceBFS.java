@@ -0,0 +1,191 @@
+package org.panda.utility.graph;
+
+import org.panda.utility.graph.DirectedGraph.NeighborType;
+
+/**
+ * Runs bounded breadth-first searches from up to 64 sources at once on a frozen graph. Each node keeps a long whose
+ * bits tell which sources reached it. Not thread-safe.
+ */
+public class MultiSourceBFS
+{
+	public static final int LANES = Long.SIZE;
+
+	private final FrozenGraph graph;
+	private final CSR csr;
+
+	private final long[] seen;
+	private long[] seenOther;
+
+	private final long[] frontier;
+	private final long[] next;
+	private final int[] frontierList;
+	private final int[] nextList;
+
+	/**
+	 * Nodes that have a non-zero seen value. Twice the node count for the two passes of bothstream searches.
+	 */
+	private final int[] touched;
+	private int touchedSize;
+
+	private int laneCount;
+
+	public MultiSourceBFS(FrozenGraph graph)
+	{
+		this.graph = graph;
+		this.csr = graph.getAdjacency();
+		int n = graph.getNodeCount();
+		seen = new long[n];
+		frontier = new long[n];
+		next = new long[n];
+		frontierList = new int[n];
+		nextList = new int[n];
+		touched = new int[graph.isDirected() ? 2 * n : n];
+	}
+
+	public FrozenGraph getGraph()
+	{
+		return graph;
+	}
+
+	/**
+	 * Searches from at most 64 sources in the given range of the array. Each source gets the lane of its position in
+	 * the range.
+	 */
+	public void run(int[] sources, int from, int count, int depth, NeighborType type)
+	{
+		if (count > LANES) throw new IllegalArgumentException("Cannot search from more than " + LANES +
+			" sources at once. Given: " + count);
+
+		for (int i = 0; i < touchedSize; i++)
+		{
+			seen[touched[i]] = 0;
+		}
+		touchedSize = 0;
+		laneCount = count;
+
+		if (depth < 1 || count == 0) return;
+
+		if (type == NeighborType.BOTHSTREAM && graph.isDirected())
+		{
+			search(sources, from, count, depth, NeighborType.UPSTREAM, seen);
+
+			if (seenOther == null) seenOther = new long[seen.length];
+			int upSize = touchedSize;
+			search(sources, from, count, depth, NeighborType.DOWNSTREAM, seenOther);
+
+			// The downstream search appended its nodes to the touched list, merge them and reset the other array
+			int k = upSize;
+			for (int i = upSize; i < touchedSize; i++)
+			{
+				int v = touched[i];
+				if (seen[v] == 0) touched[k++] = v;
+				seen[v] |= seenOther[v];
+				seenOther[v] = 0;
+			}
+			touchedSize = k;
+		}
+		else
+		{
+			search(sources, from, count, depth, type, seen);
+		}
+	}
+
+	private void search(int[] sources, int from, int count, int depth, NeighborType type, long[] visited)
+	{
+		boolean dw = type != NeighborType.UPSTREAM;
+		boolean up = type != NeighborType.DOWNSTREAM && graph.isDirected();
+
+		int frontierSize = 0;
+		for (int lane = 0; lane < count; lane++)
+		{
+			int s = sources[from + lane];
+			if (frontier[s] == 0) frontierList[frontierSize++] = s;
+			frontier[s] |= 1L << lane;
+		}
+
+		for (int d = 0; d < depth && frontierSize > 0; d++)
+		{
+			int nextSize = 0;
+			for (int f = 0; f < frontierSize; f++)
+			{
+				int v = frontierList[f];
+				long bits = frontier[v];
+				frontier[v] = 0;
+
+				if (dw) nextSize = push(csr.dwOffset, csr.dwAdj, v, bits, nextSize);
+				if (up) nextSize = push(csr.upOffset, csr.upAdj, v, bits, nextSize);
+			}
+
+			frontierSize = 0;
+			for (int i = 0; i < nextSize; i++)
+			{
+				int w = nextList[i];
+				long newBits = next[w] & ~visited[w];
+				next[w] = 0;
+
+				if (newBits != 0)
+				{
+					if (visited[w] == 0) touched[touchedSize++] = w;
+					visited[w] |= newBits;
+					frontier[w] = newBits;
+					frontierList[frontierSize++] = w;
+				}
+			}
+		}
+
+		for (int f = 0; f < frontierSize; f++)
+		{
+			frontier[frontierList[f]] = 0;
+		}
+	}
+
+	private int push(int[] offset, int[] adj, int v, long bits, int nextSize)
+	{
+		for (int i = offset[v]; i < offset[v + 1]; i++)
+		{
+			int w = adj[i];
+			if (next[w] == 0) nextList[nextSize++] = w;
+			next[w] |= bits;
+		}
+		return nextSize;
+	}
+
+	/**
+	 * Gets the bits of the sources that reached the node in the last run.
+	 */
+	public long getReachingLanes(int node)
+	{
+		return seen[node];
+	}
+
+	public boolean isReached(int lane, int node)
+	{
+		return (seen[node] & (1L << lane)) != 0;
+	}
+
+	/**
+	 * Adds the number of reached nodes, and of reached marked nodes, of each lane of the last run to the arrays.
+	 */
+	public void count(boolean[] marked, int[] reached, int[] markedReached)
+	{
+		for (int i = 0; i < touchedSize; i++)
+		{
+			int v = touched[i];
+			long bits = seen[v];
+			boolean m = marked[v];
+
+			while (bits != 0)
+			{
+				int lane = Long.numberOfTrailingZeros(bits);
+				reached[lane]++;
+				if (m) markedReached[lane]++;
+				bits &= bits - 1;
+			}
+		}
+	}
+
+	public int getLaneCount()
+	{
+		return laneCount;
+	}
+}
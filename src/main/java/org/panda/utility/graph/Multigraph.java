@@ -0,0 +1,341 @@
+package org.panda.utility.graph;
+
+import java.util.*;
+
+/**
+ * Snapshot of the union of at most 64 member graphs of a GraphList, in a single adjacency where each entry has a
+ * bitmask of the member graphs that have that edge. Queries select edge types with a mask from getTypeMask.
+ */
+public class Multigraph
+{
+	public static final int MAX_TYPES = Long.SIZE;
+
+	private final NodeIndex index;
+
+	/**
+	 * Edge type of each bit.
+	 */
+	private final String[] types;
+
+	private final long directedMask;
+
+	private final int[] dwOffset;
+	private final int[] dwAdj;
+	private final long[] dwMask;
+	private final int[] upOffset;
+	private final int[] upAdj;
+	private final long[] upMask;
+
+	private final int edgeCount;
+
+	public Multigraph(List<Graph> graphs)
+	{
+		if (graphs.size() > MAX_TYPES) throw new IllegalArgumentException("A multigraph cannot have more than " +
+			MAX_TYPES + " member graphs. Given: " + graphs.size());
+
+		index = new NodeIndex();
+		types = new String[graphs.size()];
+		EdgeList dw = new EdgeList();
+		EdgeList up = new EdgeList();
+		long[] dwBits = new long[16];
+		long[] upBits = new long[16];
+		long directed = 0;
+		int edges = 0;
+
+		for (int b = 0; b < graphs.size(); b++)
+		{
+			Graph graph = graphs.get(b);
+			types[b] = graph.getEdgeType();
+			long bit = 1L << b;
+
+			if (graph instanceof DirectedGraph)
+			{
+				directed |= bit;
+				DirectedGraph dg = (DirectedGraph) graph;
+
+				for (String source : dg.getOneSideSymbols(true))
+				{
+					int s = index.intern(source);
+					for (String target : dg.getDownstream(source))
+					{
+						int t = index.intern(target);
+						dwBits = add(dw, dwBits, s, t, bit);
+						upBits = add(up, upBits, t, s, bit);
+						edges++;
+					}
+				}
+			}
+			else
+			{
+				int entries = 0;
+				for (String source : graph.getSymbols())
+				{
+					int s = index.intern(source);
+					for (String target : graph.getNeighbors(source))
+					{
+						dwBits = add(dw, dwBits, s, index.intern(target), bit);
+						entries++;
+					}
+				}
+				// As in UndirectedGraph.getEdgeCount
+				edges += entries / 2;
+			}
+		}
+
+		directedMask = directed;
+		edgeCount = edges;
+
+		int n = index.size();
+		dwOffset = new int[n + 1];
+		upOffset = new int[n + 1];
+
+		long[][] dwMaskHolder = new long[1][];
+		long[][] upMaskHolder = new long[1][];
+		dwAdj = buildRows(n, dw, dwBits, dwOffset, dwMaskHolder);
+		upAdj = buildRows(n, up, upBits, upOffset, upMaskHolder);
+		dwMask = dwMaskHolder[0];
+		upMask = upMaskHolder[0];
+	}
+
+	private static long[] add(EdgeList edges, long[] bits, int s, int t, long bit)
+	{
+		if (edges.size == bits.length) bits = Arrays.copyOf(bits, bits.length * 2);
+		bits[edges.size] = bit;
+		edges.add(s, t);
+		return bits;
+	}
+
+	/**
+	 * Sorts the entries into rows and merges the masks of repeated entries. Masks are returned in the holder.
+	 */
+	private static int[] buildRows(int n, EdgeList edges, long[] bits, int[] offset, long[][] maskHolder)
+	{
+		int m = edges.size;
+		for (int i = 0; i < m; i++)
+		{
+			offset[edges.src[i] + 1]++;
+		}
+		for (int v = 0; v < n; v++)
+		{
+			offset[v + 1] += offset[v];
+		}
+
+		// Bucket the entry positions, then order each bucket by target
+		int[] order = new int[m];
+		int[] fill = Arrays.copyOf(offset, n);
+		for (int i = 0; i < m; i++)
+		{
+			order[fill[edges.src[i]]++] = i;
+		}
+
+		int[] adj = new int[m];
+		long[] mask = new long[m];
+		int w = 0;
+		long[] keys = new long[16];
+
+		for (int v = 0; v < n; v++)
+		{
+			int from = offset[v];
+			int to = offset[v + 1];
+			int len = to - from;
+
+			if (keys.length < len) keys = new long[Math.max(len, keys.length * 2)];
+			for (int i = 0; i < len; i++)
+			{
+				int e = order[from + i];
+				keys[i] = ((long) edges.tgt[e] << 32) | e;
+			}
+			Arrays.sort(keys, 0, len);
+
+			offset[v] = w;
+			for (int i = 0; i < len; i++)
+			{
+				int t = (int) (keys[i] >>> 32);
+				long b = bits[(int) keys[i]];
+
+				if (w > offset[v] && adj[w - 1] == t) mask[w - 1] |= b;
+				else
+				{
+					adj[w] = t;
+					mask[w++] = b;
+				}
+			}
+		}
+		offset[n] = w;
+
+		maskHolder[0] = Arrays.copyOf(mask, w);
+		return Arrays.copyOf(adj, w);
+	}
+
+	/**
+	 * Gets the mask of the given edge types. Types that are not in the multigraph are ignored.
+	 */
+	public long getTypeMask(Collection<String> edgeTypes)
+	{
+		long mask = 0;
+		for (int b = 0; b < types.length; b++)
+		{
+			if (edgeTypes.contains(types[b])) mask |= 1L << b;
+		}
+		return mask;
+	}
+
+	public long getTypeMask(String... edgeTypes)
+	{
+		return getTypeMask(Arrays.asList(edgeTypes));
+	}
+
+	/**
+	 * Gets the mask that selects all edge types.
+	 */
+	public long getAllTypesMask()
+	{
+		return types.length == MAX_TYPES ? -1L : (1L << types.length) - 1;
+	}
+
+	public long getDirectedMask()
+	{
+		return directedMask;
+	}
+
+	/**
+	 * Gets the edge types of the relations from the source to the target. Undirected relations are included.
+	 */
+	public Set<String> getEdgeTypes(String source, String target)
+	{
+		Set<String> set = new HashSet<>();
+		int s = index.getId(source);
+		int t = index.getId(target);
+		if (s < 0 || t < 0) return set;
+
+		int i = Arrays.binarySearch(dwAdj, dwOffset[s], dwOffset[s + 1], t);
+		if (i >= 0)
+		{
+			for (long bits = dwMask[i]; bits != 0; bits &= bits - 1)
+			{
+				set.add(types[Long.numberOfTrailingZeros(bits)]);
+			}
+		}
+		return set;
+	}
+
+	public Set<String> getDownstream(String gene, long mask)
+	{
+		Set<String> result = new HashSet<>();
+		int v = index.getId(gene);
+		if (v >= 0) collect(dwOffset, dwAdj, dwMask, v, mask & directedMask, null, result);
+		return result;
+	}
+
+	public Set<String> getUpstream(String gene, long mask)
+	{
+		Set<String> result = new HashSet<>();
+		int v = index.getId(gene);
+		if (v >= 0) collect(upOffset, upAdj, upMask, v, mask & directedMask, null, result);
+		return result;
+	}
+
+	/**
+	 * Gets the nodes connected to the gene with an edge of the selected types, ignoring directions.
+	 */
+	public Set<String> getNeighbors(String gene, long mask)
+	{
+		Set<String> result = new HashSet<>();
+		int v = index.getId(gene);
+		if (v >= 0)
+		{
+			collect(dwOffset, dwAdj, dwMask, v, mask, null, result);
+			collect(upOffset, upAdj, upMask, v, mask, null, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the unvisited neighbors of the seed through directed edges of the selected types.
+	 */
+	public Set<String> goBFS(Collection<String> seed, Set<String> visited, boolean downstream, long mask)
+	{
+		Set<String> result = new HashSet<>();
+		for (String gene : seed)
+		{
+			int v = index.getId(gene);
+			if (v < 0) continue;
+
+			if (downstream) collect(dwOffset, dwAdj, dwMask, v, mask & directedMask, visited, result);
+			else collect(upOffset, upAdj, upMask, v, mask & directedMask, visited, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the unvisited neighbors of the seed through edges of the selected types in any direction.
+	 */
+	public Set<String> goBFS(Collection<String> seed, Set<String> visited, long mask)
+	{
+		Set<String> result = new HashSet<>();
+		for (String gene : seed)
+		{
+			int v = index.getId(gene);
+			if (v < 0) continue;
+
+			collect(dwOffset, dwAdj, dwMask, v, mask, visited, result);
+			collect(upOffset, upAdj, upMask, v, mask, visited, result);
+		}
+		return result;
+	}
+
+	private void collect(int[] offset, int[] adj, long[] masks, int v, long mask, Set<String> visited,
+		Set<String> result)
+	{
+		for (int i = offset[v]; i < offset[v + 1]; i++)
+		{
+			if ((masks[i] & mask) != 0)
+			{
+				String name = index.getName(adj[i]);
+				if (visited == null || !visited.contains(name)) result.add(name);
+			}
+		}
+	}
+
+	public Set<String> getSymbols()
+	{
+		Set<String> syms = new HashSet<>();
+		for (int v = 0; v < index.size(); v++)
+		{
+			syms.add(index.getName(v));
+		}
+		return syms;
+	}
+
+	/**
+	 * Gets the nodes that are source (or target) of a directed edge of the selected types.
+	 */
+	public Set<String> getOneSideSymbols(boolean source, long mask)
+	{
+		int[] offset = source ? dwOffset : upOffset;
+		long[] masks = source ? dwMask : upMask;
+		mask &= directedMask;
+
+		Set<String> syms = new HashSet<>();
+		for (int v = 0; v < index.size(); v++)
+		{
+			for (int i = offset[v]; i < offset[v + 1]; i++)
+			{
+				if ((masks[i] & mask) != 0)
+				{
+					syms.add(index.getName(v));
+					break;
+				}
+			}
+		}
+		return syms;
+	}
+
+	/**
+	 * Gets the sum of the edge counts of the member graphs.
+	 */
+	public int getEdgeCount()
+	{
+		return edgeCount;
+	}
+}
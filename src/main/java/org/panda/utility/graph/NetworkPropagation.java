@@ -0,0 +1,323 @@
+package org.panda.utility.graph;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Diffuses scores of seed nodes over a frozen graph with random walk with restart or heat diffusion. Several vectors
+ * are diffused together as the columns of a dense block.
+ */
+public class NetworkPropagation
+{
+	/**
+	 * Number of rows handled by a task in a parallel iteration.
+	 */
+	private static final int CHUNK = 1024;
+
+	private final FrozenGraph graph;
+	private final CSR csr;
+
+	/**
+	 * One over the out-degree of each node, or 0 for nodes without downstream.
+	 */
+	private final double[] invDegree;
+
+	private double tolerance = 1E-8;
+	private int maxIterations = 1000;
+	private boolean parallel = true;
+	private int iterations;
+
+	public NetworkPropagation(FrozenGraph graph)
+	{
+		this.graph = graph;
+		this.csr = graph.getAdjacency();
+
+		invDegree = new double[csr.nodeCount];
+		for (int v = 0; v < csr.nodeCount; v++)
+		{
+			int d = csr.getOutDegree(v);
+			if (d > 0) invDegree[v] = 1D / d;
+		}
+	}
+
+	public FrozenGraph getGraph()
+	{
+		return graph;
+	}
+
+	/**
+	 * Iterations stop when the total change in each column is below this value.
+	 */
+	public void setTolerance(double tolerance)
+	{
+		this.tolerance = tolerance;
+	}
+
+	public void setMaxIterations(int maxIterations)
+	{
+		this.maxIterations = maxIterations;
+	}
+
+	public void setParallel(boolean parallel)
+	{
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Number of iterations of the last diffusion.
+	 */
+	public int getIterations()
+	{
+		return iterations;
+	}
+
+	//--- Section: Random walk with restart ---------------------------------------------------------------------------|
+
+	/**
+	 * Finds the stationary distribution of the random walk with restart for each restart distribution.
+	 */
+	public double[][] randomWalkWithRestart(double[][] restart, double restartProb)
+	{
+		int b = restart.length;
+		double[] r = toBlock(restart);
+		double[] x = r.clone();
+		double[] y = new double[r.length];
+		double[] dangling = new double[b];
+		double[] change = new double[b];
+
+		for (iterations = 0; iterations < maxIterations; )
+		{
+			Arrays.fill(dangling, 0);
+			for (int v = 0; v < csr.nodeCount; v++)
+			{
+				if (invDegree[v] == 0) for (int j = 0; j < b; j++)
+				{
+					dangling[j] += x[v * b + j];
+				}
+			}
+
+			multiply(x, y, b);
+
+			for (int i = 0; i < y.length; i++)
+			{
+				int j = i % b;
+				y[i] = (1 - restartProb) * (y[i] + dangling[j] * r[i]) + restartProb * r[i];
+			}
+
+			iterations++;
+			if (converged(x, y, b, change)) return fromBlock(y, b);
+
+			double[] tmp = x;
+			x = y;
+			y = tmp;
+		}
+		return fromBlock(x, b);
+	}
+
+	/**
+	 * Runs random walk with restart for each seed set, restarting uniformly at its seeds. Zero scores are left out.
+	 */
+	public List<Map<String, Double>> randomWalkWithRestart(List<Set<String>> seeds, double restartProb)
+	{
+		return toMaps(randomWalkWithRestart(toVectors(seeds), restartProb));
+	}
+
+	//--- Section: Heat diffusion -------------------------------------------------------------------------------------|
+
+	/**
+	 * Diffuses the heat vectors for the given time, computing exp(-t(I - W)) h as a Taylor series.
+	 */
+	public double[][] heatDiffusion(double[][] heat, double time)
+	{
+		int b = heat.length;
+		double[] term = toBlock(heat);
+		double[] next = new double[term.length];
+		double[] result = new double[term.length];
+		double[] norm = new double[b];
+
+		// A node without downstream keeps its value, as if it had a self-loop
+		double[] kept = new double[csr.nodeCount];
+		for (int v = 0; v < csr.nodeCount; v++)
+		{
+			if (invDegree[v] == 0) kept[v] = 1;
+		}
+
+		double scale = Math.exp(-time);
+		add(result, term, scale);
+
+		for (iterations = 0; iterations < maxIterations; )
+		{
+			multiply(term, next, b);
+
+			Arrays.fill(norm, 0);
+			for (int i = 0; i < next.length; i++)
+			{
+				next[i] = (next[i] + kept[i / b] * term[i]) * time / (iterations + 1);
+				norm[i % b] += Math.abs(next[i]);
+			}
+			add(result, next, scale);
+			iterations++;
+
+			double[] tmp = term;
+			term = next;
+			next = tmp;
+
+			if (iterations >= time && max(norm) * scale < tolerance) break;
+		}
+		return fromBlock(result, b);
+	}
+
+	/**
+	 * Runs heat diffusion for each seed set, starting with a unit heat at each seed. Zero heats are left out.
+	 */
+	public List<Map<String, Double>> heatDiffusion(List<Set<String>> seeds, double time)
+	{
+		double[][] heat = new double[seeds.size()][csr.nodeCount];
+		for (int j = 0; j < heat.length; j++)
+		{
+			for (String seed : seeds.get(j))
+			{
+				int id = graph.getId(seed);
+				if (id >= 0) heat[j][id] = 1;
+			}
+		}
+		return toMaps(heatDiffusion(heat, time));
+	}
+
+	//--- Section: Block operations -----------------------------------------------------------------------------------|
+
+	/**
+	 * Computes y = W x in parallel, where W moves the value of each node to its downstream equally.
+	 */
+	private void multiply(double[] x, double[] y, int b)
+	{
+		int chunks = (csr.nodeCount + CHUNK - 1) / CHUNK;
+		if (parallel && chunks > 1)
+		{
+			IntStream.range(0, chunks).parallel().forEach(c -> multiply(x, y, b, c * CHUNK,
+				Math.min(csr.nodeCount, (c + 1) * CHUNK)));
+		}
+		else multiply(x, y, b, 0, csr.nodeCount);
+	}
+
+	private void multiply(double[] x, double[] y, int b, int from, int to)
+	{
+		for (int v = from; v < to; v++)
+		{
+			int row = v * b;
+			for (int j = 0; j < b; j++)
+			{
+				y[row + j] = 0;
+			}
+
+			for (int i = csr.upOffset[v]; i < csr.upOffset[v + 1]; i++)
+			{
+				int u = csr.upAdj[i];
+				double w = invDegree[u];
+				int src = u * b;
+				for (int j = 0; j < b; j++)
+				{
+					y[row + j] += x[src + j] * w;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if the total change of each column is below the tolerance.
+	 */
+	private boolean converged(double[] x, double[] y, int b, double[] change)
+	{
+		Arrays.fill(change, 0);
+		for (int i = 0; i < x.length; i++)
+		{
+			change[i % b] += Math.abs(y[i] - x[i]);
+		}
+		return max(change) < tolerance;
+	}
+
+	private static void add(double[] sum, double[] x, double scale)
+	{
+		for (int i = 0; i < sum.length; i++)
+		{
+			sum[i] += x[i] * scale;
+		}
+	}
+
+	private static double max(double[] x)
+	{
+		double m = 0;
+		for (double v : x)
+		{
+			if (v > m) m = v;
+		}
+		return m;
+	}
+
+	private double[] toBlock(double[][] vectors)
+	{
+		int b = vectors.length;
+		double[] block = new double[csr.nodeCount * b];
+		for (int j = 0; j < b; j++)
+		{
+			if (vectors[j].length != csr.nodeCount) throw new IllegalArgumentException(
+				"Vector length should be " + csr.nodeCount + ". Found " + vectors[j].length);
+
+			for (int v = 0; v < csr.nodeCount; v++)
+			{
+				block[v * b + j] = vectors[j][v];
+			}
+		}
+		return block;
+	}
+
+	private double[][] fromBlock(double[] block, int b)
+	{
+		double[][] vectors = new double[b][csr.nodeCount];
+		for (int v = 0; v < csr.nodeCount; v++)
+		{
+			for (int j = 0; j < b; j++)
+			{
+				vectors[j][v] = block[v * b + j];
+			}
+		}
+		return vectors;
+	}
+
+	/**
+	 * Gets uniform distributions over the seeds in the graph.
+	 */
+	private double[][] toVectors(List<Set<String>> seeds)
+	{
+		double[][] vectors = new double[seeds.size()][csr.nodeCount];
+		for (int j = 0; j < vectors.length; j++)
+		{
+			List<Integer> ids = new ArrayList<>();
+			for (String seed : seeds.get(j))
+			{
+				int id = graph.getId(seed);
+				if (id >= 0) ids.add(id);
+			}
+			for (int id : ids)
+			{
+				vectors[j][id] = 1D / ids.size();
+			}
+		}
+		return vectors;
+	}
+
+	private List<Map<String, Double>> toMaps(double[][] vectors)
+	{
+		List<Map<String, Double>> maps = new ArrayList<>(vectors.length);
+		for (double[] vector : vectors)
+		{
+			Map<String, Double> map = new HashMap<>();
+			for (int v = 0; v < vector.length; v++)
+			{
+				if (vector[v] != 0) map.put(graph.getName(v), vector[v]);
+			}
+			maps.add(map);
+		}
+		return maps;
+	}
+}
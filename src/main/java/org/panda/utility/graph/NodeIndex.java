@@ -0,0 +1,77 @@
+package org.panda.utility.graph;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns node names to dense integer ids, starting from 0. Ids are never reassigned.
+ */
+public class NodeIndex implements Serializable
+{
+	private Map<String, Integer> idMap;
+	private String[] names;
+	private int size;
+
+	public NodeIndex()
+	{
+		this(16);
+	}
+
+	public NodeIndex(int capacity)
+	{
+		idMap = new HashMap<>(Math.max(16, (int) (capacity / 0.75) + 1));
+		names = new String[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Gets the id of the given name, or -1 if it is not interned.
+	 */
+	public int getId(String name)
+	{
+		Integer id = idMap.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the id of the given name, assigning the next id if it is new.
+	 */
+	public int intern(String name)
+	{
+		Integer id = idMap.get(name);
+		if (id != null) return id;
+
+		if (size == names.length) names = Arrays.copyOf(names, size * 2);
+		names[size] = name;
+		idMap.put(name, size);
+		return size++;
+	}
+
+	public String getName(int id)
+	{
+		return names[id];
+	}
+
+	public boolean contains(String name)
+	{
+		return getId(name) >= 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public NodeIndex copy()
+	{
+		// Uses size() and getName() so that subclasses are copied as plain indexes with the same ids
+		int n = size();
+		NodeIndex copy = new NodeIndex(n);
+		for (int i = 0; i < n; i++)
+		{
+			copy.intern(getName(i));
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,45 @@
+package org.panda.utility.graph;
+
+/**
+ * A bitset over node ids that remembers the words it touched, so that clearing is cheap.
+ */
+public class NodeMarker
+{
+	private final long[] words;
+	private final int[] touched;
+	private int touchedCount;
+
+	public NodeMarker(int nodeCount)
+	{
+		words = new long[(nodeCount + 63) >>> 6];
+		touched = new int[words.length];
+	}
+
+	/**
+	 * Marks the node and tells if it was unmarked before.
+	 */
+	public boolean mark(int node)
+	{
+		int w = node >>> 6;
+		long bit = 1L << node;
+		long word = words[w];
+		if ((word & bit) != 0) return false;
+		if (word == 0) touched[touchedCount++] = w;
+		words[w] = word | bit;
+		return true;
+	}
+
+	public boolean isMarked(int node)
+	{
+		return (words[node >>> 6] & (1L << node)) != 0;
+	}
+
+	public void clear()
+	{
+		for (int i = 0; i < touchedCount; i++)
+		{
+			words[touched[i]] = 0;
+		}
+		touchedCount = 0;
+	}
+}
@@ -0,0 +1,174 @@
+package org.panda.utility.graph;
+
+import org.panda.utility.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Runs a statistic on many degree preserving random versions of a graph, keeping at most one random graph per thread
+ * in memory. Results do not depend on the number of threads.
+ */
+public class RandomGraphEnsemble
+{
+	private final FrozenGraph graph;
+	private final DegreePreservingRandomizer randomizer;
+	private int threads;
+
+	public RandomGraphEnsemble(Graph graph)
+	{
+		this(graph.freeze());
+	}
+
+	public RandomGraphEnsemble(FrozenGraph graph)
+	{
+		this.graph = graph;
+		randomizer = new DegreePreservingRandomizer(graph);
+		threads = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Sets the number of swap attempts for generating one random graph.
+	 */
+	public void setSwapCount(long swapCount)
+	{
+		randomizer.setSwapCount(swapCount);
+	}
+
+	public void setThreads(int threads)
+	{
+		this.threads = threads;
+	}
+
+	/**
+	 * Computes the statistic on the given number of random graphs, and passes each to the consumer with the index of
+	 * its graph. The consumer is called by one thread at a time, but not in index order.
+	 */
+	public <T> void run(int size, long seed, Function<FrozenGraph, T> statistic, ResultConsumer<T> consumer)
+	{
+		AtomicInteger next = new AtomicInteger();
+		Object lock = new Object();
+
+		int n = Math.max(1, Math.min(threads, size));
+		ExecutorService executor = Executors.newFixedThreadPool(n);
+		List<Future<?>> futures = new ArrayList<>(n);
+
+		for (int w = 0; w < n; w++)
+		{
+			futures.add(executor.submit(() ->
+			{
+				for (int i = next.getAndIncrement(); i < size; i = next.getAndIncrement())
+				{
+					T value = statistic.apply(randomizer.randomize(DegreePreservingRandomizer.deriveSeed(seed, i)));
+					synchronized (lock)
+					{
+						consumer.accept(i, value);
+					}
+				}
+			}));
+		}
+		executor.shutdown();
+
+		try
+		{
+			for (Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			executor.shutdownNow();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Gets the statistic of each random graph, in index order.
+	 */
+	public <T> List<T> run(int size, long seed, Function<FrozenGraph, T> statistic)
+	{
+		List<T> list = new ArrayList<>(Collections.nCopies(size, null));
+		run(size, seed, statistic, list::set);
+		return list;
+	}
+
+	/**
+	 * Receives the statistic of a random graph with the index of the random graph.
+	 */
+	public interface ResultConsumer<T>
+	{
+		void accept(int index, T value);
+	}
+
+	/**
+	 * Gets a numeric statistic of each random graph, in index order.
+	 */
+	public double[] runDouble(int size, long seed, ToDoubleFunction<FrozenGraph> statistic)
+	{
+		double[] values = new double[size];
+		run(size, seed, statistic::applyAsDouble, (i, value) -> values[i] = value);
+		return values;
+	}
+
+	/**
+	 * Gets a statistic that counts the edges of a random graph that also exist in the other graph.
+	 */
+	public ToDoubleFunction<FrozenGraph> getEdgeOverlapStatistic(Graph other)
+	{
+		FrozenGraph o = other.freeze();
+		LongHashSet edges = new LongHashSet(o.getEdgeCount());
+		int[] buffer = new int[o.getMaxDegree()];
+
+		for (int v = 0; v < o.getNodeCount(); v++)
+		{
+			int s = graph.getId(o.getName(v));
+			if (s < 0) continue;
+
+			int cnt = o.getDownstream(v, buffer);
+			for (int i = 0; i < cnt; i++)
+			{
+				int t = graph.getId(o.getName(buffer[i]));
+				if (t >= 0) edges.add(((long) s << 32) | t);
+			}
+		}
+
+		return random ->
+		{
+			CSR csr = random.getAdjacency();
+			int overlap = 0;
+			for (int v = 0; v < csr.nodeCount; v++)
+			{
+				for (int i = csr.dwOffset[v]; i < csr.dwOffset[v + 1]; i++)
+				{
+					int t = csr.dwAdj[i];
+					// Undirected adjacency has each edge twice
+					if ((random.isDirected() || v <= t) && (edges.contains(((long) v << 32) | t) ||
+						(!random.isDirected() && edges.contains(((long) t << 32) | v)))) overlap++;
+				}
+			}
+			return overlap;
+		};
+	}
+
+	/**
+	 * Gets the fraction of random values that are at least the observed value, with a +1 correction.
+	 */
+	public static double getPValue(double observed, double[] random)
+	{
+		int cnt = (int) Arrays.stream(random).filter(v -> v >= observed).count();
+		return (cnt + 1D) / (random.length + 1D);
+	}
+}
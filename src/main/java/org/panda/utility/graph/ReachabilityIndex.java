@@ -0,0 +1,384 @@
+package org.panda.utility.graph;
+
+import java.util.*;
+
+/**
+ * Answers bounded-depth reachability queries on the frozen snapshot of a directed graph. Get it with
+ * DirectedGraph.getReachabilityIndex().
+ */
+public class ReachabilityIndex
+{
+	private final FrozenGraph graph;
+	private final CSR csr;
+
+	private final ThreadLocal<State> state;
+
+	public ReachabilityIndex(FrozenGraph graph)
+	{
+		if (!graph.isDirected()) throw new IllegalArgumentException("Reachability index needs a directed graph.");
+		this.graph = graph;
+		this.csr = graph.getAdjacency();
+		this.state = ThreadLocal.withInitial(() -> new State(csr.nodeCount));
+	}
+
+	public FrozenGraph getGraph()
+	{
+		return graph;
+	}
+
+	//--- Section: Path elements --------------------------------------------------------------------------------------|
+
+	/**
+	 * Gets the nodes on the walks from the source to a target with at most limit + 1 edges, avoiding other targets.
+	 */
+	public Set<String> getPathElements(String from, Set<String> to, int limit)
+	{
+		Set<String> result = new HashSet<>();
+		int f = graph.getId(from);
+		if (f < 0) return result;
+
+		int[] targets = toIds(to);
+		if (targets.length == 0) return result;
+
+		State st = state.get();
+		int maxLength = limit + 1;
+
+		st.searchBackward(targets, limit);
+		st.searchForward(f, maxLength);
+
+		for (int i = 0; i < st.forwardSize; i++)
+		{
+			int v = st.forwardList[i];
+			int dF = st.fDist[v];
+
+			if (st.isTarget(v) || (st.bStamp[v] == st.bGeneration && dF + st.bDist[v] <= maxLength))
+			{
+				result.add(graph.getName(v));
+			}
+		}
+		return result;
+	}
+
+	//--- Section: Common downstream ----------------------------------------------------------------------------------|
+
+	/**
+	 * Finds the nodes in the downstream of at least two seeds within limit - 1 steps, advancing all seeds together with
+	 * one bit per seed. Gives the same result as DirectedGraph.getCommonDownstream.
+	 */
+	public List<CommonPoint> getCommonDownstream(Set<String> seed, int limit)
+	{
+		List<CommonPoint> result = new ArrayList<>();
+		int[] seeds = toIds(seed);
+		int k = seeds.length;
+		if (limit <= 1 || k < 2) return result;
+
+		int n = csr.nodeCount;
+		int w = (k + 63) / 64;
+		long[] reach = new long[n * w];
+		long[] front = new long[n * w];
+		long[] next = new long[n * w];
+
+		int[] frontList = new int[n];
+		int[] nextList = new int[n];
+		int[] touched = new int[n];
+		int frontSize = 0;
+		int touchedSize = 0;
+
+		for (int j = 0; j < k; j++)
+		{
+			int s = seeds[j];
+			reach[s * w + (j >> 6)] |= 1L << j;
+			front[s * w + (j >> 6)] |= 1L << j;
+			frontList[frontSize++] = s;
+			touched[touchedSize++] = s;
+		}
+
+		int[] points = new int[16];
+		int[] pointDist = new int[16];
+		int pointCount = 0;
+		boolean[] isPoint = new boolean[n];
+
+		for (int i = 1; i < limit; i++)
+		{
+			// Advance each seed to the nodes it did not visit yet
+			int nextSize = 0;
+			for (int f = 0; f < frontSize; f++)
+			{
+				int u = frontList[f];
+				for (int e = csr.dwOffset[u]; e < csr.dwOffset[u + 1]; e++)
+				{
+					int v = csr.dwAdj[e];
+					boolean empty = isEmpty(next, v, w);
+					boolean added = false;
+
+					for (int x = 0; x < w; x++)
+					{
+						long bits = front[u * w + x] & ~reach[v * w + x];
+						if (bits != 0)
+						{
+							next[v * w + x] |= bits;
+							added = true;
+						}
+					}
+					if (empty && added) nextList[nextSize++] = v;
+				}
+			}
+
+			for (int f = 0; f < frontSize; f++)
+			{
+				Arrays.fill(front, frontList[f] * w, frontList[f] * w + w, 0);
+			}
+
+			for (int f = 0; f < nextSize; f++)
+			{
+				int v = nextList[f];
+				if (isEmpty(reach, v, w)) touched[touchedSize++] = v;
+
+				for (int x = 0; x < w; x++)
+				{
+					reach[v * w + x] |= next[v * w + x];
+					front[v * w + x] = next[v * w + x];
+					next[v * w + x] = 0;
+				}
+			}
+
+			int[] tmp = frontList;
+			frontList = nextList;
+			nextList = tmp;
+			frontSize = nextSize;
+
+			// Points of the same distance do not hide each other, so they are added after the loop
+			int before = pointCount;
+			for (int t = 0; t < touchedSize; t++)
+			{
+				int r = touched[t];
+				if (isPoint[r] || count(reach, r, w) < 2) continue;
+
+				boolean covered = false;
+				for (int p = 0; p < before && !covered; p++)
+				{
+					covered = containsAll(reach, points[p], r, w);
+				}
+				if (covered) continue;
+
+				if (pointCount == points.length)
+				{
+					points = Arrays.copyOf(points, pointCount * 2);
+					pointDist = Arrays.copyOf(pointDist, pointCount * 2);
+				}
+				points[pointCount] = r;
+				pointDist[pointCount++] = i;
+			}
+			for (int p = before; p < pointCount; p++)
+			{
+				isPoint[points[p]] = true;
+			}
+		}
+
+		for (int p = 0; p < pointCount; p++)
+		{
+			int r = points[p];
+			Set<String> upstream = new HashSet<>();
+			for (int j = 0; j < k; j++)
+			{
+				if ((reach[r * w + (j >> 6)] & (1L << j)) != 0) upstream.add(graph.getName(seeds[j]));
+			}
+			result.add(new CommonPoint(graph.getName(r), upstream, pointDist[p]));
+		}
+		return result;
+	}
+
+	private static boolean isEmpty(long[] bits, int v, int w)
+	{
+		for (int x = 0; x < w; x++)
+		{
+			if (bits[v * w + x] != 0) return false;
+		}
+		return true;
+	}
+
+	private static int count(long[] bits, int v, int w)
+	{
+		int cnt = 0;
+		for (int x = 0; x < w; x++)
+		{
+			cnt += Long.bitCount(bits[v * w + x]);
+		}
+		return cnt;
+	}
+
+	/**
+	 * Checks if the bits of node a contain the bits of node b.
+	 */
+	private static boolean containsAll(long[] bits, int a, int b, int w)
+	{
+		for (int x = 0; x < w; x++)
+		{
+			if ((bits[b * w + x] & ~bits[a * w + x]) != 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * A node in the common downstream of some seeds.
+	 */
+	public static class CommonPoint
+	{
+		private final String node;
+		private final Set<String> upstream;
+		private final int distance;
+
+		CommonPoint(String node, Set<String> upstream, int distance)
+		{
+			this.node = node;
+			this.upstream = upstream;
+			this.distance = distance;
+		}
+
+		public String getNode()
+		{
+			return node;
+		}
+
+		/**
+		 * Seeds that reach the node.
+		 */
+		public Set<String> getUpstream()
+		{
+			return upstream;
+		}
+
+		/**
+		 * Search step where the node was first reached by two seeds.
+		 */
+		public int getDistance()
+		{
+			return distance;
+		}
+	}
+
+	//--- Section: Search ---------------------------------------------------------------------------------------------|
+
+	private int[] toIds(Collection<String> names)
+	{
+		int[] ids = new int[names.size()];
+		int size = 0;
+		for (String name : names)
+		{
+			int id = graph.getId(name);
+			if (id >= 0) ids[size++] = id;
+		}
+		ids = Arrays.copyOf(ids, size);
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * Search buffers of a thread.
+	 */
+	private class State
+	{
+		final int[] fStamp;
+		final int[] fDist;
+		final int[] forwardList;
+		int forwardSize;
+		int fGeneration;
+
+		final int[] bStamp;
+		final int[] bDist;
+		int bGeneration;
+
+		/**
+		 * Targets and the depth of the last backward search.
+		 */
+		int[] lastTargets;
+		int lastDepth = -1;
+
+		final int[] queue;
+
+		State(int n)
+		{
+			fStamp = new int[n];
+			fDist = new int[n];
+			forwardList = new int[n];
+			bStamp = new int[n];
+			bDist = new int[n];
+			queue = new int[n];
+		}
+
+		boolean isTarget(int v)
+		{
+			return bStamp[v] == bGeneration && bDist[v] == 0;
+		}
+
+		/**
+		 * Finds the distances to the targets up to the depth. Reuses the last result for the same targets.
+		 */
+		void searchBackward(int[] targets, int depth)
+		{
+			if (Arrays.equals(targets, lastTargets) && depth <= lastDepth) return;
+
+			bGeneration++;
+			int head = 0;
+			int tail = 0;
+			for (int t : targets)
+			{
+				bStamp[t] = bGeneration;
+				bDist[t] = 0;
+				queue[tail++] = t;
+			}
+
+			while (head < tail)
+			{
+				int u = queue[head++];
+				int d = bDist[u];
+				if (d >= depth) continue;
+
+				for (int i = csr.upOffset[u]; i < csr.upOffset[u + 1]; i++)
+				{
+					int w = csr.upAdj[i];
+					if (bStamp[w] == bGeneration) continue;
+
+					bStamp[w] = bGeneration;
+					bDist[w] = d + 1;
+					queue[tail++] = w;
+				}
+			}
+
+			lastTargets = targets;
+			lastDepth = depth;
+		}
+
+		/**
+		 * Finds the shortest walk lengths of at least one step from the source, not passing through the last targets.
+		 */
+		void searchForward(int source, int maxLength)
+		{
+			fGeneration++;
+			forwardSize = 0;
+			expand(source, 0, maxLength);
+
+			// The list of reached nodes is in BFS order, so it is also the queue
+			for (int head = 0; head < forwardSize; head++)
+			{
+				int u = forwardList[head];
+				if (!isTarget(u)) expand(u, fDist[u], maxLength);
+			}
+		}
+
+		private void expand(int u, int d, int maxLength)
+		{
+			if (d >= maxLength) return;
+
+			for (int i = csr.dwOffset[u]; i < csr.dwOffset[u + 1]; i++)
+			{
+				int v = csr.dwAdj[i];
+				if (v == u || fStamp[v] == fGeneration) continue;
+
+				fStamp[v] = fGeneration;
+				fDist[v] = d + 1;
+				forwardList[forwardSize++] = v;
+			}
+		}
+	}
+}
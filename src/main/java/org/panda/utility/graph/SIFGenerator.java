@@ -2,12 +2,18 @@ package org.panda.utility.graph;
 
 import org.panda.utility.ArrayUtil;
 import org.panda.utility.FileUtil;
+import org.panda.utility.LongHashSet;
+import org.panda.utility.StringUtil;
 
 import java.awt.*;
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -72,6 +78,18 @@ public class SIFGenerator
 
 	private Color defaultEdgeColor;
 
+	/**
+	 * In streaming mode, edges and edge colors are written as they are added, instead of being kept until the end.
+	 */
+	private boolean streaming;
+
+	// Streaming state, from open to close
+	private BufferedWriter sifWriter;
+	private BufferedWriter edgeFormatWriter;
+	private Path edgeFormatFile;
+	private LongHashSet edgeKeys;
+	private Set<String> nodesInEdges;
+
 	public SIFGenerator()
 	{
 		defaultEdgeWidth = 1;
@@ -83,6 +101,23 @@ public class SIFGenerator
 
 	public void write(String fileNameWithoutExtension)
 	{
+		if (streaming)
+		{
+			open(fileNameWithoutExtension);
+			boolean done = false;
+			try
+			{
+				prepare();
+				close();
+				done = true;
+			}
+			finally
+			{
+				if (!done) abort();
+			}
+			return;
+		}
+
 		this.filenameWithoutExtension = fileNameWithoutExtension;
 		prepare();
 
@@ -99,52 +134,216 @@ public class SIFGenerator
 			writer1.close();
 
 			BufferedWriter writer2 = Files.newBufferedWriter(Paths.get(fileNameWithoutExtension + ".format"));
-			writer2.write("node\tall-nodes\tcolor\t" + colorString(defaultNodeColor) + "\n");
-			writer2.write("node\tall-nodes\tbordercolor\t" + colorString(defaultNodeBorderColor) + "\n");
-			writer2.write("node\tall-nodes\ttextcolor\t" + colorString(defaultTextColor) + "\n");
-			writer2.write("node\tall-nodes\tborderwidth\t" + defaultNodeBorderWidth + "\n");
-			if (defaultEdgeColor != null) writer2.write("edge\tall-edges\tcolor\t" + colorString(defaultEdgeColor) + "\n");
-			writer2.write("edge\tall-edges\twidth\t" + defaultEdgeWidth + "\n");
-
-			if (nodeColorMap != null)
+			writeFormatHeader(writer2);
+			writeNodeFormat(writer2);
+
+			if (edgeColorMap != null)
 			{
-				nodeColorMap.keySet().forEach(n ->
-					FileUtil.writeln("node\t" + convert(n) + "\tcolor\t" + colorString(nodeColorMap.get(n)), writer2));
+				edgeColorMap.keySet().forEach(e -> writeEdgeColor(e, edgeColorMap.get(e), writer2));
 			}
 
-			if (nodeBorderColorMap != null)
+			writeInfoBoxes(writer2);
+			writer2.close();
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void writeFormatHeader(BufferedWriter writer) throws IOException
+	{
+		writer.write("node\tall-nodes\tcolor\t" + colorString(defaultNodeColor) + "\n");
+		writer.write("node\tall-nodes\tbordercolor\t" + colorString(defaultNodeBorderColor) + "\n");
+		writer.write("node\tall-nodes\ttextcolor\t" + colorString(defaultTextColor) + "\n");
+		writer.write("node\tall-nodes\tborderwidth\t" + defaultNodeBorderWidth + "\n");
+		if (defaultEdgeColor != null) writer.write("edge\tall-edges\tcolor\t" + colorString(defaultEdgeColor) + "\n");
+		writer.write("edge\tall-edges\twidth\t" + defaultEdgeWidth + "\n");
+	}
+
+	private void writeNodeFormat(BufferedWriter writer)
+	{
+		if (nodeColorMap != null)
+		{
+			nodeColorMap.keySet().forEach(n ->
+				FileUtil.writeln("node\t" + convert(n) + "\tcolor\t" + colorString(nodeColorMap.get(n)), writer));
+		}
+
+		if (nodeBorderColorMap != null)
+		{
+			nodeBorderColorMap.keySet().forEach(n ->
+				FileUtil.writeln("node\t" + convert(n) + "\tbordercolor\t" + colorString(nodeBorderColorMap.get(n)),
+					writer));
+		}
+
+		if (nodeTooltipMap != null)
+		{
+			nodeTooltipMap.keySet().forEach(n ->
+				FileUtil.writeln("node\t" + convert(n) + "\ttooltip\t" + nodeTooltipMap.get(n), writer));
+		}
+	}
+
+	private void writeEdgeColor(Edge e, Color c, BufferedWriter writer)
+	{
+		FileUtil.writeln("edge\t" + ArrayUtil.getString(" ", convert(e.source), e.type, convert(e.target)) +
+			"\tcolor\t" + colorString(c), writer);
+	}
+
+	private void writeInfoBoxes(BufferedWriter writer)
+	{
+		if (infoMap != null)
+		{
+			infoMap.keySet().forEach(n ->
+				infoMap.get(n).forEach(b ->
+					FileUtil.writeln("node\t" + convert(n) + "\trppasite\t" + b.toString(), writer)));
+		}
+	}
+
+	/**
+	 * Streaming mode writes each edge when it is added and keeps only the node level maps in memory. Only the order of
+	 * the lines differs from the normal mode.
+	 */
+	public void setStreaming(boolean streaming)
+	{
+		if (sifWriter != null) throw new IllegalStateException("Cannot change the mode while writing.");
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Starts writing the files in streaming mode. Called by write before prepare.
+	 */
+	public void open(String fileNameWithoutExtension)
+	{
+		if (!streaming) throw new IllegalStateException("Opening is only for the streaming mode.");
+		if (sifWriter != null) throw new IllegalStateException("Already open.");
+
+		this.filenameWithoutExtension = fileNameWithoutExtension;
+		edgeKeys = new LongHashSet();
+		nodesInEdges = new HashSet<>();
+		try
+		{
+			sifWriter = Files.newBufferedWriter(Paths.get(fileNameWithoutExtension + ".sif"));
+			Path format = Paths.get(fileNameWithoutExtension + ".format").toAbsolutePath();
+			edgeFormatFile = Files.createTempFile(format.getParent(), format.getFileName().toString(), ".tmp");
+			edgeFormatWriter = Files.newBufferedWriter(edgeFormatFile);
+		}
+		catch (IOException e)
+		{
+			abort();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Closes the streaming files without completing them and deletes the partial .sif file, if open.
+	 */
+	public void abort()
+	{
+		if (sifWriter == null) return;
+
+		release();
+		delete(Paths.get(filenameWithoutExtension + ".sif"));
+	}
+
+	private void delete(Path file)
+	{
+		try
+		{
+			Files.deleteIfExists(file);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the disconnected nodes and the .format file, and closes the streaming files. Deletes them on failure.
+	 */
+	public void close()
+	{
+		if (sifWriter == null) throw new IllegalStateException("Not open.");
+
+		Path format = Paths.get(filenameWithoutExtension + ".format");
+		boolean formatStarted = false;
+		boolean done = false;
+		try
+		{
+			if (nodes != null) nodes.stream().filter(n -> !nodesInEdges.contains(n)).forEach(n ->
+				FileUtil.writeln(convert(n), sifWriter));
+			sifWriter.close();
+			edgeFormatWriter.close();
+
+			// As in the normal mode, nothing is written when there are no edges
+			if (edgeKeys.isEmpty())
 			{
-				nodeBorderColorMap.keySet().forEach(n ->
-					FileUtil.writeln("node\t" + convert(n) + "\tbordercolor\t" + colorString(nodeBorderColorMap.get(n)),
-						writer2));
+				Files.delete(Paths.get(filenameWithoutExtension + ".sif"));
+				done = true;
+				return;
 			}
 
-			if (nodeTooltipMap != null)
+			try (BufferedWriter writer = Files.newBufferedWriter(format))
 			{
-				nodeTooltipMap.keySet().forEach(n ->
-					FileUtil.writeln("node\t" + convert(n) + "\ttooltip\t" + nodeTooltipMap.get(n), writer2));
+				formatStarted = true;
+				writeFormatHeader(writer);
+				writeNodeFormat(writer);
 			}
 
-			if (edgeColorMap != null)
+			try (FileChannel out = FileChannel.open(format, StandardOpenOption.APPEND);
+				FileChannel in = FileChannel.open(edgeFormatFile))
 			{
-				edgeColorMap.keySet().forEach(e ->
-					FileUtil.writeln("edge\t" + ArrayUtil.getString(" ", convert(e.source), e.type, convert(e.target)) +
-						"\tcolor\t" + colorString(edgeColorMap.get(e)), writer2));
+				long size = in.size();
+				for (long pos = 0; pos < size; )
+				{
+					pos += in.transferTo(pos, size - pos, out);
+				}
 			}
 
-			if (infoMap != null)
+			try (BufferedWriter writer = Files.newBufferedWriter(format, StandardOpenOption.APPEND))
 			{
-				infoMap.keySet().forEach(n ->
-					infoMap.get(n).forEach(b ->
-						FileUtil.writeln("node\t" + convert(n) + "\trppasite\t" + b.toString(), writer2)));
+				writeInfoBoxes(writer);
 			}
-
-			writer2.close();
+			done = true;
 		}
 		catch (IOException e)
 		{
 			throw new RuntimeException(e);
 		}
+		finally
+		{
+			if (done) release();
+			else
+			{
+				abort();
+				if (formatStarted) delete(format);
+			}
+		}
+	}
+
+	/**
+	 * Closes the writers, deletes the temporary file and clears the streaming state.
+	 */
+	private void release()
+	{
+		for (Closeable c : new Closeable[]{sifWriter, edgeFormatWriter})
+		{
+			try
+			{
+				if (c != null) c.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+
+		if (edgeFormatFile != null) delete(edgeFormatFile);
+
+		sifWriter = null;
+		edgeFormatWriter = null;
+		edgeFormatFile = null;
+		edgeKeys = null;
+		nodesInEdges = null;
 	}
 
 	private String convert(String molecule)
@@ -198,12 +397,31 @@ public class SIFGenerator
 	}
 	public void addEdge(String source, String target, String type, String mediators)
 	{
+		if (streaming)
+		{
+			if (sifWriter == null) throw new IllegalStateException("Streaming generator is not open.");
+			if (edgeKeys.add(StringUtil.hash64(source, target, type)))
+			{
+				FileUtil.writeln(new Edge(source, target, type, mediators).toString(), sifWriter);
+				nodesInEdges.add(source);
+				nodesInEdges.add(target);
+			}
+			return;
+		}
+
 		if (edges == null) edges = new HashSet<>();
 		edges.add(new Edge(source, target, type, mediators));
 	}
 
 	public void addEdgeColor(String source, String target, String type, Color c)
 	{
+		if (streaming)
+		{
+			if (edgeFormatWriter == null) throw new IllegalStateException("Streaming generator is not open.");
+			writeEdgeColor(new Edge(source, target, type, null), c, edgeFormatWriter);
+			return;
+		}
+
 		if (edgeColorMap == null) edgeColorMap = new HashMap<>();
 		edgeColorMap.put(new Edge(source, target, type, null), c);
 	}
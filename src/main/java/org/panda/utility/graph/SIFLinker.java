@@ -1,7 +1,10 @@
 package org.panda.utility.graph;
 
+import org.panda.utility.FileUtil;
+
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * This is class is a temporary solution to using more than one Graph in a query, and not losing the edge types in the
@@ -13,6 +16,11 @@ public class SIFLinker
 {
 	protected Map<String, Map<String, Set<String>>> sif;
 	public DirectedGraph graph;
+
+	/**
+	 * Largest total number of path elements kept in the cache of a batch run.
+	 */
+	private static final int PATH_CACHE_CAPACITY = 1000000;
 	
 	public boolean load(String filename)
 	{
@@ -92,6 +100,11 @@ public class SIFLinker
 	}
 
 	public List<String> linkMinimal(Set<String> set, int limit)
+	{
+		return linkMinimal(set, limit, null);
+	}
+
+	private List<String> linkMinimal(Set<String> set, int limit, PathCache cache)
 	{
 		List<String> rels = new ArrayList<String>();
 		Set<String> linked = new HashSet<String>();
@@ -105,7 +118,7 @@ public class SIFLinker
 					if (s1.equals(s2)) continue;
 					if (linked.contains(s1) && linked.contains(s2)) continue;
 
-					List<String> rel = link(Collections.singleton(s1), Collections.singleton(s2), i);
+					List<String> rel = link(Collections.singleton(s1), Collections.singleton(s2), i, cache);
 					
 					if (!rel.isEmpty())
 					{
@@ -120,6 +133,11 @@ public class SIFLinker
 	}
 	
 	public List<String> linkProgressive(Set<String> from, Set<String> to, int limit)
+	{
+		return linkProgressive(from, to, limit, null);
+	}
+
+	private List<String> linkProgressive(Set<String> from, Set<String> to, int limit, PathCache cache)
 	{
 		List<String> rels = new ArrayList<String>();
 
@@ -131,7 +149,7 @@ public class SIFLinker
 				{
 					if (s1.equals(s2)) continue;
 
-					List<String> rel = link(Collections.singleton(s1), Collections.singleton(s2), i);
+					List<String> rel = link(Collections.singleton(s1), Collections.singleton(s2), i, cache);
 
 					if (!rel.isEmpty())
 					{
@@ -145,12 +163,17 @@ public class SIFLinker
 	}
 
 	public List<String> link(Set<String> from, Set<String> to, int limit)
+	{
+		return link(from, to, limit, null);
+	}
+
+	private List<String> link(Set<String> from, Set<String> to, int limit, PathCache cache)
 	{
 		List<String> rels = new ArrayList<String>();
 
 		for (String s : from)
 		{
-			Set<String> eles = graph.getPathElements(s, to, limit);
+			Set<String> eles = cache == null ? graph.getPathElements(s, to, limit) : cache.get(s, to, limit);
 			eles.add(s);
 			for (String ele : eles)
 			{
@@ -172,6 +195,11 @@ public class SIFLinker
 	}
 
 	public List<String> linkCommonDownstream(Set<String> seed, int limit)
+	{
+		return linkCommonDownstream(seed, limit, null);
+	}
+
+	private List<String> linkCommonDownstream(Set<String> seed, int limit, PathCache cache)
 	{
 		List<String> rels = new ArrayList<String>();
 
@@ -195,7 +223,7 @@ public class SIFLinker
 
 		for (DirectedGraph.CommPoint p : select)
 		{
-			List<String> link = linkProgressive(p.upstr, Collections.singleton(p.s), p.dist);
+			List<String> link = linkProgressive(p.upstr, Collections.singleton(p.s), p.dist, cache);
 			for (String l : link)
 			{
 				if (!rels.contains(l)) rels.add(l);
@@ -205,6 +233,167 @@ public class SIFLinker
 		return rels;
 	}
 	
+	/**
+	 * Runs the jobs on the given number of threads and writes their relations in order, each line starting with the job
+	 * name. Repeated path searches reuse the cached result.
+	 */
+	public void link(List<Job> jobs, int threads, Writer writer)
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Deque<Future<List<String>>> pending = new ArrayDeque<>();
+		int window = threads * 4;
+		PathCache cache = new PathCache(PATH_CACHE_CAPACITY);
+
+		try
+		{
+			int next = 0;
+			for (Job job : jobs)
+			{
+				while (next < jobs.size() && pending.size() < window)
+				{
+					Job j = jobs.get(next++);
+					pending.add(executor.submit(() -> run(j, cache)));
+				}
+
+				for (String rel : pending.poll().get())
+				{
+					FileUtil.writeln(job.name + "\t" + rel, writer);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private List<String> run(Job job, PathCache cache)
+	{
+		switch (job.type)
+		{
+			case LINK: return link(job.from, job.to, job.limit, cache);
+			case PROGRESSIVE: return linkProgressive(job.from, job.to, job.limit, cache);
+			case MINIMAL: return linkMinimal(job.from, job.limit, cache);
+			case COMMON_DOWNSTREAM: return linkCommonDownstream(job.from, job.limit, cache);
+			default: throw new IllegalArgumentException("Unknown job type: " + job.type);
+		}
+	}
+
+	public enum JobType
+	{
+		LINK,
+		PROGRESSIVE,
+		MINIMAL,
+		COMMON_DOWNSTREAM
+	}
+
+	/**
+	 * A call to one of the link methods, to run in a batch.
+	 */
+	public static class Job
+	{
+		final String name;
+		final JobType type;
+		final Set<String> from;
+		final Set<String> to;
+		final int limit;
+
+		public Job(String name, JobType type, Set<String> from, Set<String> to, int limit)
+		{
+			this.name = name;
+			this.type = type;
+			this.from = from;
+			this.to = to;
+			this.limit = limit;
+		}
+	}
+
+	/**
+	 * LRU cache of the path elements found in a batch run, bounded by their total size.
+	 */
+	private class PathCache
+	{
+		private final int capacity;
+		private final LinkedHashMap<PathQuery, String[]> map = new LinkedHashMap<>(16, 0.75f, true);
+		private int size;
+
+		PathCache(int capacity)
+		{
+			this.capacity = capacity;
+		}
+
+		Set<String> get(String from, Set<String> to, int limit)
+		{
+			PathQuery query = new PathQuery(from, to, limit);
+			String[] eles;
+			synchronized (this)
+			{
+				eles = map.get(query);
+			}
+
+			if (eles == null)
+			{
+				Set<String> result = graph.getPathElements(from, to, limit);
+				eles = result.toArray(new String[result.size()]);
+				put(query, eles);
+				return result;
+			}
+			return new HashSet<>(Arrays.asList(eles));
+		}
+
+		private synchronized void put(PathQuery query, String[] eles)
+		{
+			if (eles.length > capacity || map.containsKey(query)) return;
+
+			map.put(query, eles);
+			size += eles.length;
+
+			Iterator<String[]> iter = map.values().iterator();
+			while (size > capacity)
+			{
+				size -= iter.next().length;
+				iter.remove();
+			}
+		}
+	}
+
+	private static class PathQuery
+	{
+		final String from;
+		final Set<String> to;
+		final int limit;
+
+		PathQuery(String from, Set<String> to, int limit)
+		{
+			this.from = from;
+			this.to = new HashSet<>(to);
+			this.limit = limit;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof PathQuery)) return false;
+			PathQuery q = (PathQuery) o;
+			return q.limit == limit && q.from.equals(from) && q.to.equals(to);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (from.hashCode() * 31 + to.hashCode()) * 31 + limit;
+		}
+	}
+
 	public static void main(String[] args)
 	{
 		SIFLinker linker = new SIFLinker();
@@ -0,0 +1,327 @@
+package org.panda.utility.graph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Loads UTF-8 SIF files by tokenizing byte ranges of the file in parallel. Relations are added to the graph in file
+ * order.
+ */
+public class SIFParser
+{
+	private static final int MIN_CHUNK_SIZE = 1 << 20;
+	private static final int MAX_CHUNK_SIZE = 1 << 26;
+
+	/**
+	 * Accepted edge types, or null for accepting all.
+	 */
+	private final String[] types;
+	private final byte[][] typeBytes;
+
+	public SIFParser(Set<String> types)
+	{
+		if (types == null)
+		{
+			this.types = null;
+			this.typeBytes = null;
+		}
+		else
+		{
+			this.types = types.toArray(new String[types.size()]);
+			this.typeBytes = new byte[this.types.length][];
+			for (int i = 0; i < this.types.length; i++)
+			{
+				typeBytes[i] = this.types[i].getBytes(StandardCharsets.UTF_8);
+			}
+		}
+	}
+
+	/**
+	 * Loads the relations in the file to the graph, or to the member graphs of their types if it is a GraphList.
+	 * Returns false if the file could not be read.
+	 */
+	public boolean load(String filename, Graph graph)
+	{
+		SIFParser parser = this;
+		if (graph instanceof GraphList && types == null)
+		{
+			parser = new SIFParser(((GraphList) graph).type2graph.keySet());
+		}
+
+		try
+		{
+			List<List<Relation>> chunks = parser.parse(filename);
+
+			if (graph instanceof GraphList)
+			{
+				// Group the relations by their member graph, keeping the file order in each group
+				Map<Graph, List<Relation>> groups = new IdentityHashMap<>();
+				for (List<Relation> chunk : chunks)
+				{
+					for (Relation rel : chunk)
+					{
+						Graph member = ((GraphList) graph).getGraph(rel.type);
+						if (member != null) groups.computeIfAbsent(member, k -> new ArrayList<>()).add(rel);
+					}
+				}
+
+				groups.entrySet().parallelStream().forEach(e -> e.getValue().forEach(rel -> rel.putTo(e.getKey())));
+			}
+			else
+			{
+				for (List<Relation> chunk : chunks)
+				{
+					for (Relation rel : chunk)
+					{
+						rel.putTo(graph);
+					}
+				}
+			}
+		}
+		catch (IOException e) { e.printStackTrace(); return false; } return true;
+	}
+
+	/**
+	 * Tokenizes the file in parallel and returns the accepted relations of each chunk, chunks being in file order.
+	 */
+	List<List<Relation>> parse(String filename) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			long byMinSize = (size + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE;
+			long byMaxSize = (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE;
+			int chunkCount = (int) Math.max(1, Math.min(byMinSize,
+				Math.max(Runtime.getRuntime().availableProcessors() * 4L, byMaxSize)));
+
+			return IntStream.range(0, chunkCount).parallel().mapToObj(i ->
+			{
+				try
+				{
+					return parseChunk(channel, size * i / chunkCount, size * (i + 1) / chunkCount, size);
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}).collect(Collectors.toList());
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Parses the lines that start in the given byte range. The last line is read past the range end if necessary.
+	 */
+	private List<Relation> parseChunk(FileChannel channel, long from, long to, long size) throws IOException
+	{
+		List<Relation> list = new ArrayList<>();
+		if (from >= to) return list;
+
+		// Read one byte before the range to tell if the range starts at a line start
+		long start = from == 0 ? 0 : from - 1;
+		byte[] data = read(channel, start, (int) (to - start));
+		int len = data.length;
+
+		if (len == 0) return list;
+
+		if (to < size && !isLineEnd(data[len - 1]))
+		{
+			data = readRestOfLine(channel, data, to, size);
+			len = data.length;
+		}
+
+		int pos = 0;
+		if (from > 0)
+		{
+			while (pos < len && !isLineEnd(data[pos])) pos++;
+			pos++;
+		}
+
+		int[] bounds = new int[16];
+
+		// The "\r\n" ending is read as two line ends with an empty line between, which is skipped like other lines
+		// with less than three tokens
+		while (pos < len)
+		{
+			int end = pos;
+			while (end < len && !isLineEnd(data[end])) end++;
+
+			bounds = parseLine(data, pos, end, bounds, list);
+
+			pos = end + 1;
+		}
+		return list;
+	}
+
+	private static boolean isLineEnd(byte b)
+	{
+		return b == '\n' || b == '\r';
+	}
+
+	/**
+	 * Splits the line on tabs like String.split, and adds its relation to the list if it has an accepted type. Returns
+	 * the bounds array, which may be replaced with a larger one.
+	 */
+	private int[] parseLine(byte[] data, int from, int to, int[] bounds, List<Relation> list)
+	{
+		// Token i is in [bounds[2i], bounds[2i+1])
+		int cnt = 0;
+		int tokenStart = from;
+		for (int i = from; i <= to; i++)
+		{
+			if (i == to || data[i] == '\t')
+			{
+				if (2 * cnt + 2 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+				bounds[2 * cnt] = tokenStart;
+				bounds[2 * cnt + 1] = i;
+				cnt++;
+				tokenStart = i + 1;
+			}
+		}
+
+		while (cnt > 0 && bounds[2 * cnt - 2] == bounds[2 * cnt - 1]) cnt--;
+
+		if (cnt < 3) return bounds;
+
+		String type = matchType(data, bounds[2], bounds[3]);
+		if (type == null) return bounds;
+
+		Relation rel = new Relation();
+		rel.type = type;
+		rel.source = decode(data, bounds[0], bounds[1]);
+		rel.target = decode(data, bounds[4], bounds[5]);
+		if (cnt > 3) rel.mediators = splitMediators(data, bounds[6], bounds[7]);
+		if (cnt > 4) rel.sites = decode(data, bounds[8], bounds[9]);
+		list.add(rel);
+
+		return bounds;
+	}
+
+	/**
+	 * Gets the accepted type that has the given bytes, or null if the type is not accepted.
+	 */
+	private String matchType(byte[] data, int from, int to)
+	{
+		if (types == null) return decode(data, from, to);
+
+		for (int t = 0; t < typeBytes.length; t++)
+		{
+			byte[] b = typeBytes[t];
+			if (b.length != to - from) continue;
+
+			int i = 0;
+			while (i < b.length && b[i] == data[from + i]) i++;
+			if (i == b.length) return types[t];
+		}
+		return null;
+	}
+
+	/**
+	 * Splits the mediators like String.split(" |;").
+	 */
+	private static Set<String> splitMediators(byte[] data, int from, int to)
+	{
+		List<String> tokens = new ArrayList<>();
+		int tokenStart = from;
+		for (int i = from; i <= to; i++)
+		{
+			if (i == to || data[i] == ' ' || data[i] == ';')
+			{
+				tokens.add(decode(data, tokenStart, i));
+				tokenStart = i + 1;
+			}
+		}
+
+		// A string without delimiters gives itself, even if it is empty
+		if (tokens.size() > 1)
+		{
+			while (!tokens.isEmpty() && tokens.get(tokens.size() - 1).isEmpty()) tokens.remove(tokens.size() - 1);
+		}
+		return new HashSet<>(tokens);
+	}
+
+	private static String decode(byte[] data, int from, int to)
+	{
+		return new String(data, from, to - from, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] read(FileChannel channel, long position, int length) throws IOException
+	{
+		byte[] data = new byte[length];
+		ByteBuffer bb = ByteBuffer.wrap(data);
+		while (bb.hasRemaining())
+		{
+			if (channel.read(bb, position + bb.position()) < 0) break;
+		}
+		return bb.hasRemaining() ? Arrays.copyOf(data, bb.position()) : data;
+	}
+
+	/**
+	 * Appends the bytes from the given position until the end of that line, including the line end.
+	 */
+	private static byte[] readRestOfLine(FileChannel channel, byte[] data, long position, long size)
+		throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 1024);
+		out.write(data, 0, data.length);
+
+		while (position < size)
+		{
+			byte[] more = read(channel, position, (int) Math.min(1 << 16, size - position));
+			int i = 0;
+			while (i < more.length && !isLineEnd(more[i])) i++;
+
+			if (i < more.length)
+			{
+				out.write(more, 0, i + 1);
+				break;
+			}
+			out.write(more, 0, more.length);
+			position += more.length;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * A parsed SIF line.
+	 */
+	static class Relation
+	{
+		String source;
+		String type;
+		String target;
+		Set<String> mediators;
+		String sites;
+
+		/**
+		 * Adds the relation to the graph with the method that the line based loaders use.
+		 */
+		void putTo(Graph graph)
+		{
+			if (sites != null && graph instanceof SiteSpecificGraph)
+			{
+				((SiteSpecificGraph) graph).putRelation(source, target, mediators, sites);
+			}
+			else if (mediators != null)
+			{
+				graph.putRelation(source, target, mediators);
+			}
+			else
+			{
+				graph.putRelation(source, target);
+			}
+		}
+	}
+}
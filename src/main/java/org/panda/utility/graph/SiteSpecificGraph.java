@@ -1,10 +1,10 @@
 package org.panda.utility.graph;
 
 import org.panda.utility.CollectionUtil;
+import org.panda.utility.LongHashMap;
 
 import java.io.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Extension of Graph where the affected phospho sites of relations are also kept.
@@ -15,6 +15,14 @@ public class SiteSpecificGraph extends DirectedGraph
 {
 	protected Map<String, Map<String, Set<String>>> sites;
 
+	/**
+	 * Upstream of each target site, keyed with the target id in the high bits and the site id in the low bits. Built at
+	 * the first query. May contain removed relations, which are filtered when queried.
+	 */
+	private transient LongHashMap<Set<String>> siteUpstream;
+	private transient NodeIndex targetIds;
+	private transient NodeIndex siteIds;
+
 	public SiteSpecificGraph(String name, String edgeType)
 	{
 		super(name, edgeType);
@@ -34,7 +42,10 @@ public class SiteSpecificGraph extends DirectedGraph
 
 			try
 			{
-				sites.get(source).get(target).addAll(Arrays.asList(siteString.split(";")));
+				for (String site : siteString.split(";"))
+				{
+					if (sites.get(source).get(target).add(site)) index(source, target, site);
+				}
 			}catch(Exception e){
 				System.out.println();
 			}
@@ -47,6 +58,9 @@ public class SiteSpecificGraph extends DirectedGraph
 		this.putRelation(source, target, meds, siteString);
 	}
 
+	/**
+	 * Gets the sites of the relation. The returned set should not be modified, use addSite and removeSite instead.
+	 */
 	public Set<String> getSites(String source, String target)
 	{
 		if (hasSites(source, target))
@@ -73,7 +87,7 @@ public class SiteSpecificGraph extends DirectedGraph
 		if (!sites.get(source).containsKey(target))
 			sites.get(source).put(target, new HashSet<>());
 
-		sites.get(source).get(target).add(site);
+		if (sites.get(source).get(target).add(site)) index(source, target, site);
 	}
 
 	public void removeSite(String source, String target, String site)
@@ -85,14 +99,107 @@ public class SiteSpecificGraph extends DirectedGraph
 
 		if (sites.containsKey(source) && sites.get(source).containsKey(target))
 		{
-			sites.get(source).get(target).remove(site);
+			if (sites.get(source).get(target).remove(site)) unindex(source, target, site);
 		}
 	}
 
+	/**
+	 * Gets the upstream of the target that affect any of the given sites.
+	 */
 	public Set<String> getUpstream(String target, Set<String> sites)
 	{
-		Set<String> upstream = getUpstream(target, 1);
-		return upstream.stream().filter(source -> !CollectionUtil.intersectionEmpty(getSites(source, target), sites)).collect(Collectors.toSet());
+		Set<String> result = new HashSet<>();
+		for (String site : sites)
+		{
+			collectUpstream(target, site, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the upstream of the target that affect the given site.
+	 */
+	public Set<String> getUpstream(String target, String site)
+	{
+		Set<String> result = new HashSet<>();
+		collectUpstream(target, site, result);
+		return result;
+	}
+
+	private void collectUpstream(String target, String site, Set<String> result)
+	{
+		LongHashMap<Set<String>> index = getSiteUpstream();
+		long key = key(target, site, false);
+		if (key < 0) return;
+
+		Set<String> indexed = index.get(key);
+		if (indexed == null) return;
+
+		Set<String> upstream = getUpstream(target);
+		for (String source : indexed)
+		{
+			if (upstream.contains(source)) result.add(source);
+		}
+	}
+
+	private synchronized LongHashMap<Set<String>> getSiteUpstream()
+	{
+		if (siteUpstream == null)
+		{
+			siteUpstream = new LongHashMap<>();
+			targetIds = new NodeIndex();
+			siteIds = new NodeIndex();
+
+			for (String source : sites.keySet())
+			{
+				for (String target : sites.get(source).keySet())
+				{
+					for (String site : sites.get(source).get(target))
+					{
+						index(source, target, site);
+					}
+				}
+			}
+		}
+		return siteUpstream;
+	}
+
+	private void index(String source, String target, String site)
+	{
+		if (siteUpstream == null) return;
+
+		long key = key(target, site, true);
+		Set<String> indexed = siteUpstream.get(key);
+		if (indexed == null)
+		{
+			indexed = new HashSet<>();
+			siteUpstream.put(key, indexed);
+		}
+		indexed.add(source);
+	}
+
+	private void unindex(String source, String target, String site)
+	{
+		if (siteUpstream == null) return;
+
+		long key = key(target, site, false);
+		Set<String> indexed = key < 0 ? null : siteUpstream.get(key);
+		if (indexed != null)
+		{
+			indexed.remove(source);
+			if (indexed.isEmpty()) siteUpstream.remove(key);
+		}
+	}
+
+	/**
+	 * Gets the index key of the target site, or -1 if the target or the site was never indexed and intern is false.
+	 */
+	private long key(String target, String site, boolean intern)
+	{
+		int t = intern ? targetIds.intern(target) : targetIds.getId(target);
+		int s = intern ? siteIds.intern(site) : siteIds.getId(site);
+		if (t < 0 || s < 0) return -1;
+		return ((long) t << 32) | s;
 	}
 
 	@Override
@@ -110,6 +217,14 @@ public class SiteSpecificGraph extends DirectedGraph
 					sites.put(gene, new HashMap<>());
 
 				merge(sites.get(gene), pGraph.sites.get(gene));
+
+				for (String target : pGraph.sites.get(gene).keySet())
+				{
+					for (String site : pGraph.sites.get(gene).get(target))
+					{
+						index(gene, target, site);
+					}
+				}
 			}
 		}
 	}
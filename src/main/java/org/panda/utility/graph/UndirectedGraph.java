@@ -12,6 +12,7 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * This is a simple graph, built using external maps. All nodes are identified with a unique String.
@@ -66,6 +67,7 @@ public class UndirectedGraph extends Graph
 	{
 		super.clear();
 		ppMap.clear();
+		modified();
 	}
 
 	public void putRelation(String source, String target)
@@ -76,10 +78,13 @@ public class UndirectedGraph extends Graph
 		if (!ppMap.containsKey(target)) ppMap.put(target, new HashSet<>());
 		ppMap.get(source).add(target);
 		ppMap.get(target).add(source);
+		modified();
 	}
 
 	public void removeRelation(String source, String target)
 	{
+		modified();
+
 		if (ppMap.containsKey(source))
 		{
 			ppMap.get(source).remove(target);
@@ -180,6 +185,7 @@ public class UndirectedGraph extends Graph
 	public void merge(UndirectedGraph graph)
 	{
 		merge(this.ppMap, graph.ppMap);
+		modified();
 
 		for (String gene : graph.mediators.keySet())
 		{
@@ -208,11 +214,13 @@ public class UndirectedGraph extends Graph
 	public void crop(Collection<String> symbols)
 	{
 		crop(ppMap, symbols);
+		modified();
 	}
 
 	public void cropToNeighborhood(Collection<String> symbols)
 	{
 		cropToNeighborhood(ppMap, symbols);
+		modified();
 	}
 
 	protected Set<String> getRelationStrings()
@@ -262,6 +270,59 @@ public class UndirectedGraph extends Graph
 		return g;
 	}
 
+	/**
+	 * Provides a new graph where the edges are shuffled, keeping the degree of each node.
+	 */
+	public UndirectedGraph getDegreePreservingRandomizedCopy(long seed)
+	{
+		return toUndirectedGraph(new DegreePreservingRandomizer(freeze()).randomize(seed));
+	}
+
+	/**
+	 * Generates the given number of degree preserving random copies in parallel.
+	 */
+	public List<UndirectedGraph> getDegreePreservingRandomizedCopies(int copies, long seed)
+	{
+		return new DegreePreservingRandomizer(freeze()).randomize(copies, seed).stream().map(this::toUndirectedGraph)
+			.collect(Collectors.toList());
+	}
+
+	private UndirectedGraph toUndirectedGraph(FrozenGraph graph)
+	{
+		UndirectedGraph g = new UndirectedGraph(getName(), getEdgeType());
+		g.allowSelfEdges = allowSelfEdges;
+
+		int[] buffer = new int[graph.getMaxDegree()];
+		for (int v = 0; v < graph.getNodeCount(); v++)
+		{
+			int cnt = graph.getNeighbors(v, buffer);
+			for (int i = 0; i < cnt; i++)
+			{
+				if (v <= buffer[i]) g.putRelation(graph.getName(v), graph.getName(buffer[i]));
+			}
+		}
+		return g;
+	}
+
+	@Override
+	public FrozenGraph freeze()
+	{
+		NodeIndex index = new NodeIndex(ppMap.size());
+		EdgeList edges = new EdgeList(getEdgeCount());
+
+		for (String g1 : ppMap.keySet())
+		{
+			int s = index.intern(g1);
+
+			for (String g2 : ppMap.get(g1))
+			{
+				if (g1.compareTo(g2) <= 0) edges.add(s, index.intern(g2));
+			}
+		}
+
+		return new FrozenGraph(getName(), getEdgeType(), index, edges.toCSR(index.size(), false));
+	}
+
 	public static void main(String[] args) throws FileNotFoundException
 	{
 	}
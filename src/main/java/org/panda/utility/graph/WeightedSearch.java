@@ -0,0 +1,293 @@
+package org.panda.utility.graph;
+
+import java.util.*;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Runs Dijkstra searches on a frozen snapshot of a weighted undirected graph. Not thread-safe, use copy() for other
+ * threads.
+ */
+public class WeightedSearch
+{
+	private final FrozenGraph graph;
+	private final CSR csr;
+
+	/**
+	 * Length of each edge, at the position of the edge in the adjacency array.
+	 */
+	private final double[] length;
+
+	private final double[] dist;
+	private final int[] parent;
+	private final int[] stamp;
+	private int generation;
+
+	// Indexed heap. heapPos is the position of a node in the heap, or -1 if the node is not in the heap.
+	private final int[] heap;
+	private final int[] heapPos;
+	private int heapSize;
+
+	/**
+	 * Nodes whose distances are final, in the order of increasing distance.
+	 */
+	private final int[] settled;
+	private int settledSize;
+
+	/**
+	 * Uses the edge weights as lengths.
+	 */
+	public WeightedSearch(UndirectedGraphWithEdgeWeights graph)
+	{
+		this(graph, w -> w);
+	}
+
+	/**
+	 * Converts the edge weights to non-negative lengths with the given function, e.g. 1 - w for similarities.
+	 */
+	public WeightedSearch(UndirectedGraphWithEdgeWeights graph, DoubleUnaryOperator weightToLength)
+	{
+		this(graph.freeze(), null);
+
+		for (int u = 0; u < csr.nodeCount; u++)
+		{
+			String source = this.graph.getName(u);
+			for (int i = csr.dwOffset[u]; i < csr.dwOffset[u + 1]; i++)
+			{
+				double len = weightToLength.applyAsDouble(graph.getWeight(source, this.graph.getName(csr.dwAdj[i])));
+
+				if (!(len >= 0)) throw new IllegalArgumentException("Edge lengths should be non-negative. Found " +
+					len + " between " + source + " and " + this.graph.getName(csr.dwAdj[i]));
+
+				length[i] = len;
+			}
+		}
+	}
+
+	private WeightedSearch(FrozenGraph graph, double[] length)
+	{
+		this.graph = graph;
+		this.csr = graph.getAdjacency();
+		this.length = length == null ? new double[csr.getEdgeCount()] : length;
+
+		int n = csr.nodeCount;
+		dist = new double[n];
+		parent = new int[n];
+		stamp = new int[n];
+		heap = new int[n];
+		heapPos = new int[n];
+		settled = new int[n];
+		Arrays.fill(heapPos, -1);
+	}
+
+	/**
+	 * Gets another search on the same graph and lengths, for use in another thread.
+	 */
+	public WeightedSearch copy()
+	{
+		return new WeightedSearch(graph, length);
+	}
+
+	public FrozenGraph getGraph()
+	{
+		return graph;
+	}
+
+	/**
+	 * Searches from the seeds in the given range of the array up to the radius, stopping after k non-seed nodes.
+	 * Returns the number of settled nodes, including the seeds.
+	 */
+	public int run(int[] seeds, int from, int count, double radius, int k)
+	{
+		if (++generation == 0)
+		{
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+		while (heapSize > 0)
+		{
+			heapPos[heap[--heapSize]] = -1;
+		}
+		settledSize = 0;
+
+		for (int i = from; i < from + count; i++)
+		{
+			relax(seeds[i], -1, 0);
+		}
+		int reached = 0;
+
+		while (heapSize > 0)
+		{
+			// Seeds are settled even after k nodes, as nodes can tie with them through zero-length edges
+			boolean seed = parent[heap[0]] < 0;
+			if (!seed && reached >= k) break;
+
+			int u = poll();
+			settled[settledSize++] = u;
+			if (!seed) reached++;
+
+			double d = dist[u];
+			for (int i = csr.dwOffset[u]; i < csr.dwOffset[u + 1]; i++)
+			{
+				double nd = d + length[i];
+				if (nd <= radius) relax(csr.dwAdj[i], u, nd);
+			}
+		}
+		return settledSize;
+	}
+
+	private void relax(int v, int from, double d)
+	{
+		if (stamp[v] != generation)
+		{
+			stamp[v] = generation;
+			dist[v] = d;
+			parent[v] = from;
+			heapPos[v] = heapSize;
+			heap[heapSize++] = v;
+			siftUp(heapPos[v]);
+		}
+		else if (d < dist[v] && heapPos[v] >= 0)
+		{
+			dist[v] = d;
+			parent[v] = from;
+			siftUp(heapPos[v]);
+		}
+	}
+
+	private int poll()
+	{
+		int top = heap[0];
+		heapPos[top] = -1;
+		if (--heapSize > 0)
+		{
+			heap[0] = heap[heapSize];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int pos)
+	{
+		int v = heap[pos];
+		double d = dist[v];
+		while (pos > 0)
+		{
+			int p = (pos - 1) >> 1;
+			if (dist[heap[p]] <= d) break;
+			heap[pos] = heap[p];
+			heapPos[heap[pos]] = pos;
+			pos = p;
+		}
+		heap[pos] = v;
+		heapPos[v] = pos;
+	}
+
+	private void siftDown(int pos)
+	{
+		int v = heap[pos];
+		double d = dist[v];
+		while (true)
+		{
+			int c = 2 * pos + 1;
+			if (c >= heapSize) break;
+			if (c + 1 < heapSize && dist[heap[c + 1]] < dist[heap[c]]) c++;
+			if (dist[heap[c]] >= d) break;
+			heap[pos] = heap[c];
+			heapPos[heap[pos]] = pos;
+			pos = c;
+		}
+		heap[pos] = v;
+		heapPos[v] = pos;
+	}
+
+	/**
+	 * Gets the i-th settled node of the last run. Nodes are in the order of increasing distance.
+	 */
+	public int getSettled(int i)
+	{
+		return settled[i];
+	}
+
+	public int getSettledCount()
+	{
+		return settledSize;
+	}
+
+	/**
+	 * Gets the distance of the node in the last run, or infinity if it is not settled.
+	 */
+	public double getDistance(int node)
+	{
+		return stamp[node] == generation && heapPos[node] < 0 ? dist[node] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Gets the previous node on the shortest path to the node in the last run, or -1 for seeds and unsettled nodes.
+	 */
+	public int getParent(int node)
+	{
+		return stamp[node] == generation && heapPos[node] < 0 ? parent[node] : -1;
+	}
+
+	//--- Section: Queries with names ---------------------------------------------------------------------------------|
+
+	/**
+	 * Gets the distances of the nodes within the radius of the seeds, including the seeds.
+	 */
+	public Map<String, Double> getDistances(Set<String> seeds, double radius)
+	{
+		return toMap(run(seeds, radius, Integer.MAX_VALUE), true);
+	}
+
+	/**
+	 * Gets the k nearest nodes to the seeds within the radius, excluding the seeds, in the order of distance.
+	 */
+	public LinkedHashMap<String, Double> getNearest(Set<String> seeds, int k, double radius)
+	{
+		return toMap(run(seeds, radius, k), false);
+	}
+
+	/**
+	 * Gets the nodes on a shortest path between the two nodes, or an empty list if they are not connected.
+	 */
+	public List<String> getPath(String from, String to)
+	{
+		int f = graph.getId(from);
+		int t = graph.getId(to);
+		if (f < 0 || t < 0) return Collections.emptyList();
+
+		run(new int[]{f}, 0, 1, Double.POSITIVE_INFINITY, Integer.MAX_VALUE);
+		if (getDistance(t) == Double.POSITIVE_INFINITY) return Collections.emptyList();
+
+		LinkedList<String> path = new LinkedList<>();
+		for (int v = t; v >= 0; v = parent[v])
+		{
+			path.addFirst(graph.getName(v));
+		}
+		return path;
+	}
+
+	private int run(Set<String> seeds, double radius, int k)
+	{
+		int[] ids = new int[seeds.size()];
+		int size = 0;
+		for (String seed : seeds)
+		{
+			int id = graph.getId(seed);
+			if (id >= 0) ids[size++] = id;
+		}
+		return run(ids, 0, size, radius, k);
+	}
+
+	private LinkedHashMap<String, Double> toMap(int size, boolean withSeeds)
+	{
+		LinkedHashMap<String, Double> map = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++)
+		{
+			int v = settled[i];
+			if (withSeeds || parent[v] >= 0) map.put(graph.getName(v), dist[v]);
+		}
+		return map;
+	}
+}
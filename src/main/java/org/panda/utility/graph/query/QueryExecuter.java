@@ -2,19 +2,34 @@ package org.panda.utility.graph.query;
 
 import org.panda.utility.graph.Graph;
 import org.panda.utility.graph.query.algorithm.CommonNeighborhood;
+import org.panda.utility.graph.query.algorithm.KShortestPaths;
 import org.panda.utility.graph.query.algorithm.PathsBetween;
 
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * @author Ozgun Babur
  */
 public class QueryExecuter
 {
+	/**
+	 * Query graphs of the recently queried graphs, dropped when their graphs are garbage collected.
+	 */
+	private static final Map<Graph, CacheEntry> cache = new WeakHashMap<>();
+
+	/**
+	 * Largest total number of seeds for which pathsFromTo uses the bidirectional corridor.
+	 */
+	private static final int BIDIRECTIONAL_SEED_LIMIT = 16;
+
 	public static Set<QueryGraphObject> pathsBetween(Set<String> seed, Graph graph, int limit,
 		boolean directed, int k, boolean ignoreLoops)
 	{
-		QueryGraph g = new QueryGraph(graph);
+		QueryGraph g = getQueryGraph(graph);
 		PathsBetween query = new PathsBetween(g.getNodes(seed), directed, limit);
 
 		if (k >= 0)
@@ -31,8 +46,11 @@ public class QueryExecuter
 	public static Set<QueryGraphObject> pathsFromTo(Set<String> source, Set<String> target, Graph graph,
 		int limit, boolean directedGraph, int k, boolean ignoreLoops)
 	{
-		QueryGraph g = new QueryGraph(graph);
-		PathsBetween query = new PathsBetween(g.getNodes(source), g.getNodes(target), directedGraph, limit);
+		QueryGraph g = getQueryGraph(graph);
+		Set<QueryNode> from = g.getNodes(source);
+		Set<QueryNode> to = g.getNodes(target);
+		PathsBetween query = new PathsBetween(from, to, directedGraph, limit);
+		query.setBidirectional(from.size() + to.size() <= BIDIRECTIONAL_SEED_LIMIT);
 
 		if (k >= 0)
 		{
@@ -47,10 +65,70 @@ public class QueryExecuter
 
 	public static Set<QueryGraphObject> commonNeighborhood(Set<String> seed, Graph graph, int commonalityThreshold)
 	{
-		QueryGraph g = new QueryGraph(graph);
+		QueryGraph g = getQueryGraph(graph);
 		CommonNeighborhood query = new CommonNeighborhood(g.getNodes(seed), commonalityThreshold);
 		return query.run();
 	}
 
+	/**
+	 * Iterates over the simple paths from the source to the target, up to the limit, shortest first.
+	 */
+	public static Iterator<KShortestPaths.Path> shortestPaths(String source, String target, Graph graph, int limit,
+		boolean directed)
+	{
+		QueryGraph g = getQueryGraph(graph);
+		Set<QueryNode> from = g.getNodes(Collections.singleton(source));
+		Set<QueryNode> to = g.getNodes(Collections.singleton(target));
+		if (from.isEmpty() || to.isEmpty()) return Collections.emptyIterator();
+
+		KShortestPaths paths = new KShortestPaths(g, from.iterator().next(), to.iterator().next(), directed);
+		paths.setLimit(limit);
+		return paths;
+	}
+
+	/**
+	 * Gets the cached query graph of the graph, generated again if the graph is modified. Should not be modified.
+	 */
+	public static QueryGraph getQueryGraph(Graph graph)
+	{
+		CacheEntry entry;
+		synchronized (cache)
+		{
+			entry = cache.get(graph);
+			if (entry == null)
+			{
+				entry = new CacheEntry();
+				cache.put(graph, entry);
+			}
+		}
+
+		// Lock only this graph's entry while generating, so other graphs can be served meanwhile
+		synchronized (entry)
+		{
+			int modCount = graph.getModificationCount();
+			if (entry.queryGraph == null || entry.modCount != modCount)
+			{
+				entry.queryGraph = new QueryGraph(graph);
+				entry.modCount = modCount;
+			}
+			return entry.queryGraph;
+		}
+	}
+
+	/**
+	 * Drops all cached query graphs.
+	 */
+	public static void clearCache()
+	{
+		synchronized (cache)
+		{
+			cache.clear();
+		}
+	}
 
+	private static class CacheEntry
+	{
+		QueryGraph queryGraph;
+		int modCount;
+	}
 }
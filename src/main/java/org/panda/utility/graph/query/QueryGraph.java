@@ -20,6 +20,11 @@ public class QueryGraph
 	Map<String, QueryNode> nodeMap;
 	Set<QueryEdge> edges;
 
+	/**
+	 * Number of indexes given to nodes and edges. Removed edges leave their indexes unused.
+	 */
+	int objectCount;
+
 	public QueryGraph(Graph... graphs)
 	{
 		if (graphs.length == 1 && graphs[0] instanceof GraphList)
@@ -49,6 +54,9 @@ public class QueryGraph
 	{
 		if (edges.contains(edge)) return;
 
+		assignIndex(edge.source);
+		assignIndex(edge.target);
+		assignIndex(edge);
 		edge.source.outgoing.add(edge);
 		edge.target.incoming.add(edge);
 		edges.add(edge);
@@ -65,10 +73,28 @@ public class QueryGraph
 
 	public QueryNode getNode(String id)
 	{
-		if (!nodeMap.containsKey(id)) nodeMap.put(id, new QueryNode(id));
+		if (!nodeMap.containsKey(id))
+		{
+			QueryNode node = new QueryNode(id);
+			assignIndex(node);
+			nodeMap.put(id, node);
+		}
 		return nodeMap.get(id);
 	}
 
+	private void assignIndex(QueryGraphObject obj)
+	{
+		if (obj.index < 0) obj.index = objectCount++;
+	}
+
+	/**
+	 * Gets the upper bound of the indexes of the nodes and edges in this graph.
+	 */
+	public int getObjectCount()
+	{
+		return objectCount;
+	}
+
 	public Set<QueryNode> getNodes(Set<String> names)
 	{
 		return names.stream().map(nodeMap::get).filter(n -> n != null).collect(Collectors.toSet());
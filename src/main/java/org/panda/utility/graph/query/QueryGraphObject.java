@@ -10,6 +10,16 @@ public class QueryGraphObject
 {
 	private Map<Object, Object> labelMap;
 
+	/**
+	 * Position of the object in its query graph, or -1 if it is not in a query graph.
+	 */
+	int index = -1;
+
+	public int getIndex()
+	{
+		return index;
+	}
+
 	/**
 	 * Puts the specified label.
 	 */
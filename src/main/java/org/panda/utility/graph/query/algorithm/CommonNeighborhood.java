@@ -4,10 +4,8 @@ import org.panda.utility.graph.query.QueryEdge;
 import org.panda.utility.graph.query.QueryGraphObject;
 import org.panda.utility.graph.query.QueryNode;
 
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Finds the common neighborhood of the given nodes. This is an undirected query.
@@ -28,33 +26,12 @@ public class CommonNeighborhood
 
 	public Set<QueryGraphObject> run()
 	{
-		Set<QueryGraphObject> wanted = new HashSet<>(sourceSeed);
-
-		Set<QueryGraphObject> consider = new HashSet<>();
+		CommonNeighborhoodIndex index = new CommonNeighborhoodIndex(commonalityThreshold);
 		for (QueryNode node : sourceSeed)
 		{
-			consider.addAll(getNeighbors(node));
-		}
-		consider.addAll(sourceSeed);
-
-		for (QueryGraphObject go : consider)
-		{
-			if (go instanceof QueryNode)
-			{
-				QueryNode node = (QueryNode) go;
-
-				Set<QueryGraphObject> neigh = getNeighbors(node);
-
-				neigh.retainAll(sourceSeed);
-
-				if (neigh.size() >= commonalityThreshold) wanted.add(go);
-			}
+			index.addSeed(node);
 		}
-
-		return consider.stream().filter(o -> o instanceof QueryEdge).map(o -> (QueryEdge) o)
-			.filter(e -> wanted.contains(e.source) && wanted.contains(e.target))
-			.map(e -> new QueryGraphObject[]{e, e.source, e.target}).flatMap(Arrays::stream)
-			.collect(Collectors.toSet());
+		return index.getResult();
 	}
 
 	public Set<QueryGraphObject> getNeighbors(QueryNode node)
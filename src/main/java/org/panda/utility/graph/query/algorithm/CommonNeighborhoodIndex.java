@@ -0,0 +1,160 @@
+package org.panda.utility.graph.query.algorithm;
+
+import org.panda.utility.graph.query.QueryEdge;
+import org.panda.utility.graph.query.QueryGraphObject;
+import org.panda.utility.graph.query.QueryNode;
+
+import java.util.*;
+
+/**
+ * Keeps the undirected common neighborhood of a changing seed set. Adding or removing a seed costs only its degree.
+ */
+public class CommonNeighborhoodIndex
+{
+	private final int commonalityThreshold;
+
+	private final Set<QueryNode> seeds;
+
+	/**
+	 * Number of seeds neighboring each node.
+	 */
+	private int[] count;
+
+	/**
+	 * Nodes whose count reached the threshold.
+	 */
+	private final Set<QueryNode> common;
+
+	// For visiting the neighbors of a seed once when there are parallel edges
+	private int[] stamp;
+	private int generation;
+
+	public CommonNeighborhoodIndex(int commonalityThreshold)
+	{
+		// Only the neighbors of seeds are considered, so a node needs at least one seed neighbor in any case
+		this.commonalityThreshold = Math.max(1, commonalityThreshold);
+		seeds = new HashSet<>();
+		common = new HashSet<>();
+		count = new int[16];
+		stamp = new int[16];
+	}
+
+	/**
+	 * Adds the seed and gives the nodes whose count reached the threshold with it.
+	 */
+	public List<QueryNode> addSeed(QueryNode seed)
+	{
+		if (!seeds.add(seed)) return Collections.emptyList();
+		return update(seed, 1);
+	}
+
+	/**
+	 * Removes the seed and gives the nodes whose count fell below the threshold without it.
+	 */
+	public List<QueryNode> removeSeed(QueryNode seed)
+	{
+		if (!seeds.remove(seed)) return Collections.emptyList();
+		return update(seed, -1);
+	}
+
+	private List<QueryNode> update(QueryNode seed, int change)
+	{
+		List<QueryNode> crossed = new ArrayList<>();
+		generation++;
+
+		for (QueryEdge edge : seed.incoming)
+		{
+			update(edge.source, change, crossed);
+		}
+		for (QueryEdge edge : seed.outgoing)
+		{
+			update(edge.target, change, crossed);
+		}
+		return crossed;
+	}
+
+	private void update(QueryNode node, int change, List<QueryNode> crossed)
+	{
+		int i = node.getIndex();
+		if (i < 0) throw new IllegalArgumentException("The node is not in a query graph: " + node.id);
+		if (i >= count.length)
+		{
+			int capacity = Math.max(i + 1, count.length * 2);
+			count = Arrays.copyOf(count, capacity);
+			stamp = Arrays.copyOf(stamp, capacity);
+		}
+
+		if (stamp[i] == generation) return;
+		stamp[i] = generation;
+
+		count[i] += change;
+
+		if (change > 0 && count[i] == commonalityThreshold)
+		{
+			common.add(node);
+			crossed.add(node);
+		}
+		else if (change < 0 && count[i] == commonalityThreshold - 1)
+		{
+			common.remove(node);
+			crossed.add(node);
+		}
+	}
+
+	/**
+	 * Gets the number of seeds that are neighbors of the node.
+	 */
+	public int getCount(QueryNode node)
+	{
+		int i = node.getIndex();
+		return i >= 0 && i < count.length ? count[i] : 0;
+	}
+
+	public Set<QueryNode> getSeeds()
+	{
+		return Collections.unmodifiableSet(seeds);
+	}
+
+	/**
+	 * Gets the nodes that have at least the threshold number of seed neighbors. These can be seeds as well.
+	 */
+	public Set<QueryNode> getCommonNodes()
+	{
+		return Collections.unmodifiableSet(common);
+	}
+
+	/**
+	 * Gets the same result as CommonNeighborhood.
+	 */
+	public Set<QueryGraphObject> getResult()
+	{
+		Set<QueryGraphObject> result = new HashSet<>();
+		for (QueryNode seed : seeds)
+		{
+			for (QueryEdge edge : seed.incoming)
+			{
+				addIfWanted(edge, result);
+			}
+			for (QueryEdge edge : seed.outgoing)
+			{
+				addIfWanted(edge, result);
+			}
+		}
+		return result;
+	}
+
+	private void addIfWanted(QueryEdge edge, Set<QueryGraphObject> result)
+	{
+		if (isWanted(edge.source) && isWanted(edge.target))
+		{
+			result.add(edge);
+			result.add(edge.source);
+			result.add(edge.target);
+		}
+	}
+
+	private boolean isWanted(QueryNode node)
+	{
+		return seeds.contains(node) || getCount(node) >= commonalityThreshold;
+	}
+}
@@ -0,0 +1,318 @@
+package org.panda.utility.graph.query.algorithm;
+
+import org.panda.utility.graph.query.QueryEdge;
+import org.panda.utility.graph.query.QueryGraph;
+import org.panda.utility.graph.query.QueryGraphObject;
+import org.panda.utility.graph.query.QueryNode;
+
+import java.util.*;
+
+/**
+ * Iterates over the simple paths from a source to a target, shortest first, using Yen's algorithm. Each path is
+ * generated when it is asked for.
+ */
+public class KShortestPaths implements Iterator<KShortestPaths.Path>
+{
+	private final QueryNode source;
+	private final QueryNode target;
+	private final boolean directed;
+	private int limit = Integer.MAX_VALUE;
+
+	/**
+	 * Paths that are returned.
+	 */
+	private final List<Path> found;
+
+	/**
+	 * Candidates for the next path, ordered by length, then by the order of generation.
+	 */
+	private final PriorityQueue<Path> candidates;
+
+	/**
+	 * Edges of all paths that are either found or are candidates, to avoid generating the same path twice.
+	 */
+	private final Set<List<QueryEdge>> generated;
+
+	private Path next;
+	private boolean finished;
+	private int candidateCount;
+
+	// Search state, indexed by the object indexes. An object is blocked or seen if its stamp is the current one.
+	private final int[] blockStamp;
+	private final int[] seenStamp;
+	private final QueryEdge[] parentEdge;
+	private final QueryNode[] parentNode;
+	private final int[] depth;
+	private int blockGeneration;
+	private int seenGeneration;
+
+	public KShortestPaths(QueryGraph graph, QueryNode source, QueryNode target, boolean directed)
+	{
+		this.source = source;
+		this.target = target;
+		this.directed = directed;
+
+		found = new ArrayList<>();
+		candidates = new PriorityQueue<>((p1, p2) -> p1.length() != p2.length() ?
+			Integer.compare(p1.length(), p2.length()) : Integer.compare(p1.order, p2.order));
+		generated = new HashSet<>();
+
+		int n = graph.getObjectCount();
+		blockStamp = new int[n];
+		seenStamp = new int[n];
+		parentEdge = new QueryEdge[n];
+		parentNode = new QueryNode[n];
+		depth = new int[n];
+	}
+
+	/**
+	 * Sets the maximum length of the paths. The iteration ends when the next path would be longer.
+	 */
+	public void setLimit(int limit)
+	{
+		this.limit = limit;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (next == null && !finished)
+		{
+			next = findNext();
+			if (next == null) finished = true;
+		}
+		return next != null;
+	}
+
+	@Override
+	public Path next()
+	{
+		if (!hasNext()) throw new NoSuchElementException();
+		Path path = next;
+		next = null;
+		return path;
+	}
+
+	/**
+	 * Gets up to k next paths.
+	 */
+	public List<Path> next(int k)
+	{
+		List<Path> paths = new ArrayList<>(k);
+		while (paths.size() < k && hasNext())
+		{
+			paths.add(next());
+		}
+		return paths;
+	}
+
+	private Path findNext()
+	{
+		if (found.isEmpty())
+		{
+			blockGeneration++;
+			Path path = search(source, limit);
+			if (path != null)
+			{
+				found.add(path);
+				generated.add(path.getEdges());
+			}
+			return path;
+		}
+
+		Path last = found.get(found.size() - 1);
+
+		// Deviate from the last path at each of its nodes, without using the next edges of the earlier paths that
+		// share the same root, and without passing the root nodes again
+		for (int i = 0; i < last.length(); i++)
+		{
+			if (i >= limit) break;
+
+			blockGeneration++;
+			for (Path path : found)
+			{
+				if (path.length() > i && path.hasSameRoot(last, i)) block(path.edges[i]);
+			}
+			for (int j = 0; j < i; j++)
+			{
+				block(last.nodes[j]);
+			}
+
+			Path spur = search(last.nodes[i], limit - i);
+			if (spur == null) continue;
+
+			Path candidate = last.join(i, spur, candidateCount);
+			if (generated.add(candidate.getEdges()))
+			{
+				candidates.add(candidate);
+				candidateCount++;
+			}
+		}
+
+		Path path = candidates.poll();
+		if (path != null) found.add(path);
+		return path;
+	}
+
+	/**
+	 * BFS for a shortest path to the target avoiding the blocked objects. Null if none within the maximum length.
+	 */
+	private Path search(QueryNode from, int maxLength)
+	{
+		if (isBlocked(from)) return null;
+
+		seenGeneration++;
+		see(from, null, null, 0);
+
+		Queue<QueryNode> queue = new ArrayDeque<>();
+		queue.add(from);
+
+		while (!queue.isEmpty())
+		{
+			QueryNode node = queue.poll();
+			if (node == target) return tracePath(from);
+
+			int d = depth[node.getIndex()];
+			if (d >= maxLength) continue;
+
+			for (QueryEdge edge : node.outgoing)
+			{
+				visit(edge, node, edge.target, d, queue);
+			}
+			if (!directed)
+			{
+				for (QueryEdge edge : node.incoming)
+				{
+					visit(edge, node, edge.source, d, queue);
+				}
+			}
+		}
+		return null;
+	}
+
+	private void visit(QueryEdge edge, QueryNode node, QueryNode n, int d, Queue<QueryNode> queue)
+	{
+		if (isBlocked(edge) || isBlocked(n) || seenStamp[n.getIndex()] == seenGeneration) return;
+
+		see(n, edge, node, d + 1);
+		queue.add(n);
+	}
+
+	private void see(QueryNode node, QueryEdge edge, QueryNode parent, int d)
+	{
+		int i = node.getIndex();
+		seenStamp[i] = seenGeneration;
+		parentEdge[i] = edge;
+		parentNode[i] = parent;
+		depth[i] = d;
+	}
+
+	private Path tracePath(QueryNode from)
+	{
+		int length = depth[target.getIndex()];
+		QueryNode[] nodes = new QueryNode[length + 1];
+		QueryEdge[] edges = new QueryEdge[length];
+
+		QueryNode node = target;
+		for (int i = length; i > 0; i--)
+		{
+			nodes[i] = node;
+			edges[i - 1] = parentEdge[node.getIndex()];
+			node = parentNode[node.getIndex()];
+		}
+		nodes[0] = from;
+
+		return new Path(nodes, edges, -1);
+	}
+
+	private void block(QueryGraphObject go)
+	{
+		blockStamp[go.getIndex()] = blockGeneration;
+	}
+
+	private boolean isBlocked(QueryGraphObject go)
+	{
+		return blockStamp[go.getIndex()] == blockGeneration;
+	}
+
+	/**
+	 * A path as the sequence of its nodes and the edges between them.
+	 */
+	public static class Path
+	{
+		private final QueryNode[] nodes;
+		private final QueryEdge[] edges;
+
+		/**
+		 * Order of generation, for breaking ties between candidates.
+		 */
+		private final int order;
+
+		Path(QueryNode[] nodes, QueryEdge[] edges, int order)
+		{
+			this.nodes = nodes;
+			this.edges = edges;
+			this.order = order;
+		}
+
+		/**
+		 * Number of edges on the path.
+		 */
+		public int length()
+		{
+			return edges.length;
+		}
+
+		public List<QueryNode> getNodes()
+		{
+			return Arrays.asList(nodes);
+		}
+
+		public List<QueryEdge> getEdges()
+		{
+			return Arrays.asList(edges);
+		}
+
+		/**
+		 * Gets the nodes and edges of the path.
+		 */
+		public Set<QueryGraphObject> getObjects()
+		{
+			Set<QueryGraphObject> set = new HashSet<>(Arrays.asList(nodes));
+			set.addAll(Arrays.asList(edges));
+			return set;
+		}
+
+		boolean hasSameRoot(Path other, int length)
+		{
+			for (int i = 0; i < length; i++)
+			{
+				if (!edges[i].equals(other.edges[i]) || !nodes[i].equals(other.nodes[i])) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Joins the first edges of this path with the spur path that starts at the node at that position.
+		 */
+		Path join(int rootLength, Path spur, int order)
+		{
+			QueryNode[] n = Arrays.copyOf(nodes, rootLength + spur.nodes.length);
+			System.arraycopy(spur.nodes, 0, n, rootLength, spur.nodes.length);
+			QueryEdge[] e = Arrays.copyOf(edges, rootLength + spur.edges.length);
+			System.arraycopy(spur.edges, 0, e, rootLength, spur.edges.length);
+			return new Path(n, e, order);
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder(nodes[0].id);
+			for (int i = 0; i < edges.length; i++)
+			{
+				sb.append(" -").append(edges[i].type).append("- ").append(nodes[i + 1].id);
+			}
+			return sb.toString();
+		}
+	}
+}
@@ -5,6 +5,7 @@ import org.panda.utility.graph.query.QueryGraphObject;
 import org.panda.utility.graph.query.QueryNode;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * @author Ozgun Babur
@@ -41,14 +42,27 @@ public class PathsBetween
 	private Map<QueryNode, Integer> shortestSingleLengths;
 	private int k = 0;
 
+	/**
+	 * If true, the searches of the seeds are restricted to the nodes found between the sources and the targets first.
+	 * Does not change the result.
+	 */
+	private boolean bidirectional = false;
+
+	/**
+	 * Nodes that the searches of the seeds are restricted to, indexed by the object indexes. Null if not restricted.
+	 */
+	private boolean[] corridor;
+
 	Set<QueryGraphObject> goi;
 
 	private Map<QueryGraphObject, Map<Integer, Set<QueryNode>>> fwdLabel;
 	private Map<QueryGraphObject, Map<Integer, Set<QueryNode>>> bkwLabel;
 	private Map<QueryGraphObject, Map<Integer, Set<QueryNode>>> labelMap;
 
-	private Set<QueryGraphObject> visitedGlobal;
-	private Set<QueryGraphObject> visitedStep;
+	/**
+	 * Number of seeds whose searches are run in parallel before their distances are recorded.
+	 */
+	private static final int SEED_BATCH = 256;
 
 	public PathsBetween(Set<QueryNode> seed, boolean directed, int limit)
 	{
@@ -93,11 +107,14 @@ public class PathsBetween
 		this.k = k;
 	}
 
+	public void setBidirectional(boolean bidirectional)
+	{
+		this.bidirectional = bidirectional;
+	}
+
 	public Set<QueryGraphObject> run()
 	{
 		goi = new HashSet<>();
-		visitedGlobal = new HashSet<>();
-		visitedStep = new HashSet<>();
 
 		if (directed)
 		{
@@ -106,47 +123,16 @@ public class PathsBetween
 		}
 		else this.labelMap = new HashMap<>();
 
-		for (QueryNode node : sourceSeed)
-		{
-			initSeed(node);
-
-			if (directed)
-			{
-				runBFS_directed(node, FORWARD);
-			}
-			else
-			{
-				runBFS_undirected(node);
-			}
-
-			// Record distances for that seed node
-			recordDistances(node);
-
-			// Remove all algorithm specific labels
-			clearLabels();
-		}
-
+		List<QueryNode> targets = new ArrayList<>();
 		for (QueryNode node : targetSeed)
 		{
-			if (!directed && sourceSeed.contains(node)) continue;
-
-			initSeed(node);
-
-			if (directed)
-			{
-				runBFS_directed(node, BACKWARD);
-			}
-			else
-			{
-				runBFS_undirected(node);
-			}
+			if (directed || !sourceSeed.contains(node)) targets.add(node);
+		}
 
-			// Record distances for that seed node
-			recordDistances(node);
+		corridor = bidirectional ? findCorridor() : null;
 
-			// Remove all algorithm specific labels
-			clearLabels();
-		}
+		runSeeds(new ArrayList<>(sourceSeed), FORWARD);
+		runSeeds(targets, BACKWARD);
 
 		if (useShortestPlusK) findShortestPaths();
 
@@ -171,110 +157,299 @@ public class PathsBetween
 		return goi;
 	}
 
-	private void runBFS_directed(QueryNode seed, boolean direction)
+	/**
+	 * Runs the search of each seed in parallel, then records the distances in the order of the seeds.
+	 */
+	private void runSeeds(List<QueryNode> seeds, boolean direction)
+	{
+		ThreadLocal<RunLabels> localLabels = ThreadLocal.withInitial(() -> new RunLabels(directed ? 2 : 1, 0));
+
+		for (int from = 0; from < seeds.size(); from += SEED_BATCH)
+		{
+			int start = from;
+			SeedDistances[] batch = new SeedDistances[Math.min(SEED_BATCH, seeds.size() - from)];
+
+			IntStream.range(0, batch.length).parallel().forEach(i ->
+				batch[i] = runSeed(seeds.get(start + i), direction, localLabels.get()));
+
+			for (SeedDistances distances : batch)
+			{
+				recordDistances(distances);
+			}
+		}
+	}
+
+	private SeedDistances runSeed(QueryNode seed, boolean direction, RunLabels labels)
+	{
+		initSeed(seed, labels);
+
+		if (directed)
+		{
+			runBFS_directed(seed, direction, labels);
+		}
+		else
+		{
+			runBFS_undirected(seed, labels);
+		}
+
+		SeedDistances distances = new SeedDistances(seed, labels);
+
+		// Remove all algorithm specific labels
+		labels.clear();
+
+		return distances;
+	}
+
+	private void runBFS_directed(QueryNode seed, boolean direction, RunLabels labels)
 	{
 		assert directed;
 
 		// Initialize queue to contain all seed nodes
 
-		LinkedList<QueryNode> queue = new LinkedList<>();
+		Queue<QueryNode> queue = new ArrayDeque<>();
 		queue.add(seed);
-		visitedStep.add(seed);
+		labels.visit(seed);
 
 		// Run BFS forward or backward till queue is not empty
 
 		while (!queue.isEmpty())
 		{
 			QueryNode node = queue.poll();
-			BFS_directed(node, direction, queue);
+			BFS_directed(node, direction, queue, labels);
 		}
 	}
 
-	private void runBFS_undirected(QueryNode seed)
+	private void runBFS_undirected(QueryNode seed, RunLabels labels)
 	{
 		assert !directed;
 
 		// Initialize queue to contain all seed nodes
 
-		LinkedList<QueryNode> queue = new LinkedList<>();
+		Queue<QueryNode> queue = new ArrayDeque<>();
 		queue.add(seed);
-		visitedStep.add(seed);
+		labels.visit(seed);
 
 		// Run BFS till queue is not empty
 
 		while (!queue.isEmpty())
 		{
 			QueryNode node = queue.poll();
-			BFS_undirected(node, queue);
+			BFS_undirected(node, queue, labels);
 		}
 	}
 
-	private void BFS_directed(QueryNode node, boolean forward, LinkedList<QueryNode> queue)
+	private void BFS_directed(QueryNode node, boolean forward, Queue<QueryNode> queue, RunLabels labels)
 	{
 		assert directed;
 
 		if (forward)
 		{
-			BFStep(node, DOWNSTREAM, DIST_FORWARD, queue);
+			BFStep(node, DOWNSTREAM, FWD, queue, labels);
 		}
 		else
 		{
-			BFStep(node, UPSTREAM, DIST_BACKWARD, queue);
+			BFStep(node, UPSTREAM, BKW, queue, labels);
 		}
 	}
 
-	private void BFStep(QueryNode node, boolean upstr, String label, LinkedList<QueryNode> queue)
+	private void BFStep(QueryNode node, boolean upstr, int label, Queue<QueryNode> queue, RunLabels labels)
 	{
-		int d = getLabel(node, label);
+		int d = labels.get(node, label);
 
 		if (d < limit)
 		{
 			for (QueryEdge edge : upstr? node.incoming : node.outgoing)
 			{
-				if (visitedStep.contains(edge)) continue;
+				QueryNode n = upstr ? edge.source : edge.target;
 
-				setLabel(edge, label, !upstr && label.equals(DIST_FORWARD) ? d + 1 : d);
+				if (labels.isVisited(edge) || (corridor != null && !inCorridor(n))) continue;
 
-				QueryNode n = upstr ? edge.source : edge.target;
+				labels.set(edge, label, directed && !upstr && label == FWD ? d + 1 : d);
 
-				int d_n = getLabel(n, label);
+				int d_n = labels.get(n, label);
 
 				if (d_n > d + 1)
 				{
-					if (d + 1 < limit && !visitedStep.contains(n) && !queue.contains(n)
+					// Nodes in the queue are already visited, so they are not added twice
+					if (d + 1 < limit && !labels.isVisited(n)
 						&& (!ignoreSelfLoops || !(sourceSeed.contains(n) || targetSeed.contains(n))))
 						queue.add(n);
 
-					setLabel(n, label, d + 1);
+					labels.set(n, label, d + 1);
 				}
 			}
 		}
 	}
 
-	private void BFS_undirected(QueryNode node, LinkedList<QueryNode> queue)
+	private void BFS_undirected(QueryNode node, Queue<QueryNode> queue, RunLabels labels)
 	{
 		assert !directed;
 
-		BFStep(node, UPSTREAM, DIST, queue);
-		BFStep(node, DOWNSTREAM, DIST, queue);
+		BFStep(node, UPSTREAM, FWD, queue, labels);
+		BFStep(node, DOWNSTREAM, FWD, queue, labels);
 	}
 
-	private void initSeed(QueryGraphObject obj)
+	/**
+	 * Finds the nodes on a path from a source to a target within the limit, or within the shortest length plus k for a
+	 * single source and target. Returns null if the searches should not be restricted.
+	 */
+	private boolean[] findCorridor()
 	{
-		if (directed)
+		int bound = limit;
+
+		if (useShortestPlusK)
 		{
-			setLabel(obj, DIST_FORWARD, 0);
-			setLabel(obj, DIST_BACKWARD, 0);
+			if (sourceSeed.size() != 1 || targetSeed.size() != 1 || sourceSeed.equals(targetSeed)) return null;
+
+			int shortest = findShortestLength(sourceSeed.iterator().next(), targetSeed.iterator().next());
+			if (shortest < 0) return new boolean[0];
+
+			bound = Math.min(shortest + k, limit);
 		}
-		else
+
+		// The backward search passes only through the nodes the forward search reached within the bound, because any
+		// node on a result path has its distances from both sides adding up to at most the bound.
+		RunLabels labels = new RunLabels(2, 0);
+		searchCorridor(sourceSeed, FORWARD, FWD, -1, bound, labels);
+		searchCorridor(targetSeed, BACKWARD, BKW, FWD, bound, labels);
+
+		int size = 0;
+		for (int i = 0; i < labels.getVisitedCount(); i++)
 		{
-			setLabel(obj, DIST, 0);
+			size = Math.max(size, labels.getVisited(i).getIndex() + 1);
 		}
+
+		boolean[] nodes = new boolean[size];
+		for (int i = 0; i < labels.getVisitedCount(); i++)
+		{
+			QueryGraphObject node = labels.getVisited(i);
+			if (labels.get(node, FWD) + labels.get(node, BKW) <= bound) nodes[node.getIndex()] = true;
+		}
+		return nodes;
+	}
+
+	/**
+	 * Multi-source BFS from the seeds. Skips the nodes that cannot reach the other side, if its label is not -1.
+	 */
+	private void searchCorridor(Set<QueryNode> seeds, boolean forward, int label, int otherLabel, int bound,
+		RunLabels labels)
+	{
+		Queue<QueryNode> queue = new ArrayDeque<>();
+		for (QueryNode seed : seeds)
+		{
+			labels.set(seed, label, 0);
+			queue.add(seed);
+		}
+
+		List<QueryNode> neighbors = new ArrayList<>();
+
+		while (!queue.isEmpty())
+		{
+			QueryNode node = queue.poll();
+			int d = labels.get(node, label) + 1;
+			if (d > bound) continue;
+
+			neighbors.clear();
+			collectNeighbors(node, forward, neighbors);
+
+			for (QueryNode n : neighbors)
+			{
+				if (labels.get(n, label) != RunLabels.NONE) continue;
+
+				labels.set(n, label, d);
+
+				if (ignoreSelfLoops && (sourceSeed.contains(n) || targetSeed.contains(n))) continue;
+				if (otherLabel >= 0 && d + labels.get(n, otherLabel) > bound) continue;
+
+				queue.add(n);
+			}
+		}
+	}
+
+	/**
+	 * Bidirectional BFS for the shortest path length from the source to the target, or -1 if longer than the limit.
+	 */
+	private int findShortestLength(QueryNode source, QueryNode target)
+	{
+		RunLabels labels = new RunLabels(2, 0);
+		labels.set(source, FWD, 0);
+		labels.set(target, BKW, 0);
+
+		List<QueryNode> fwdFrontier = new ArrayList<>(Collections.singletonList(source));
+		List<QueryNode> bkwFrontier = new ArrayList<>(Collections.singletonList(target));
+		int fwdDepth = 0;
+		int bkwDepth = 0;
+
+		List<QueryNode> neighbors = new ArrayList<>();
+
+		while (fwdDepth + bkwDepth < limit && !fwdFrontier.isEmpty() && !bkwFrontier.isEmpty())
+		{
+			boolean forward = fwdFrontier.size() <= bkwFrontier.size();
+			int label = forward ? FWD : BKW;
+			int other = forward ? BKW : FWD;
+			int d = forward ? ++fwdDepth : ++bkwDepth;
+
+			List<QueryNode> next = new ArrayList<>();
+			int shortest = RunLabels.NONE;
+
+			for (QueryNode node : forward ? fwdFrontier : bkwFrontier)
+			{
+				neighbors.clear();
+				collectNeighbors(node, forward, neighbors);
+
+				for (QueryNode n : neighbors)
+				{
+					if (labels.get(n, label) != RunLabels.NONE) continue;
+
+					labels.set(n, label, d);
+					next.add(n);
+					shortest = Math.min(shortest, d + labels.get(n, other));
+				}
+			}
+
+			// The first level where the searches meet contains the shortest path
+			if (shortest <= limit) return shortest;
+
+			if (forward) fwdFrontier = next;
+			else bkwFrontier = next;
+		}
+		return -1;
+	}
+
+	private void collectNeighbors(QueryNode node, boolean forward, List<QueryNode> neighbors)
+	{
+		if (!directed || forward)
+		{
+			for (QueryEdge edge : node.outgoing)
+			{
+				neighbors.add(edge.target);
+			}
+		}
+		if (!directed || !forward)
+		{
+			for (QueryEdge edge : node.incoming)
+			{
+				neighbors.add(edge.source);
+			}
+		}
+	}
+
+	private boolean inCorridor(QueryNode node)
+	{
+		int i = node.getIndex();
+		return i < corridor.length && corridor[i];
+	}
+
+	private void initSeed(QueryGraphObject obj, RunLabels labels)
+	{
+		labels.set(obj, FWD, 0);
+		if (directed) labels.set(obj, BKW, 0);
 	}
 
 	private void selectSatisfyingElements()
 	{
-		for (QueryGraphObject go : visitedGlobal)
+		// Objects without recorded distances cannot satisfy
+		for (QueryGraphObject go : directed ? fwdLabel.keySet() : labelMap.keySet())
 		{
 			if (distanceSatisfies(go))
 			{
@@ -404,23 +579,6 @@ public class PathsBetween
 		return set;
 	}
 
-	private void clearLabels()
-	{
-		for (QueryGraphObject go : visitedStep)
-		{
-			if (directed)
-			{
-				go.removeLabel(DIST_FORWARD);
-				go.removeLabel(DIST_BACKWARD);
-			}
-			else
-			{
-				go.removeLabel(DIST);
-			}
-		}
-		visitedStep.clear();
-	}
-
 	private boolean checkEdgeSanity()
 	{
 		for (QueryGraphObject go : goi)
@@ -436,35 +594,27 @@ public class PathsBetween
 		return true;
 	}
 
-	private int getLabel(QueryGraphObject go, String label)
-	{
-		if (go.hasLabel(label)) return (Integer) go.getLabel(label);
-		else return Integer.MAX_VALUE / 2;
-	}
-	private void setLabel(QueryGraphObject go, String label, Integer value)
-	{
-		go.putLabel(label, value);
-		visitedStep.add(go);
-		visitedGlobal.add(go);
-	}
-
-	private void recordDistances(QueryNode seed)
+	/**
+	 * Records the distances of the objects visited in the BFS of the seed.
+	 */
+	private void recordDistances(SeedDistances distances)
 	{
-		for (QueryGraphObject go : visitedGlobal)
+		for (int i = 0; i < distances.objects.length; i++)
 		{
+			QueryGraphObject go = distances.objects[i];
+
 			if (directed)
 			{
-				recordDistance(go, seed, DIST_FORWARD, fwdLabel);
-				recordDistance(go, seed, DIST_BACKWARD, bkwLabel);
+				recordDistance(go, distances.seed, distances.values[FWD][i], fwdLabel);
+				recordDistance(go, distances.seed, distances.values[BKW][i], bkwLabel);
 			}
-			else recordDistance(go, seed, DIST, labelMap);
+			else recordDistance(go, distances.seed, distances.values[FWD][i], labelMap);
 		}
 	}
 
-	private void recordDistance(QueryGraphObject go, QueryNode seed, String label,
+	private void recordDistance(QueryGraphObject go, QueryNode seed, int d,
 		Map<QueryGraphObject, Map<Integer, Set<QueryNode>>> map)
 	{
-		int d = getLabel(go, label);
 		if (d > limit) return;
 		if (!map.containsKey(go)) map.put(go, new HashMap<>());
 		if (!map.get(go).containsKey(d)) map.get(go).put(d, new HashSet<>());
@@ -616,10 +766,48 @@ public class PathsBetween
 		}
 	}
 
+	/**
+	 * Distances found by the search of a seed, copied out of the labels of the thread that ran it.
+	 */
+	private static class SeedDistances
+	{
+		final QueryNode seed;
+		final QueryGraphObject[] objects;
+
+		/**
+		 * Distances of the objects, per label slot.
+		 */
+		final int[][] values;
+
+		SeedDistances(QueryNode seed, RunLabels labels)
+		{
+			this.seed = seed;
+			int n = labels.getVisitedCount();
+			int slots = labels.getLabelCount();
+			objects = new QueryGraphObject[n];
+			values = new int[slots][n];
+
+			for (int i = 0; i < n; i++)
+			{
+				objects[i] = labels.getVisited(i);
+				for (int l = 0; l < slots; l++)
+				{
+					values[l][i] = labels.get(objects[i], l);
+				}
+			}
+		}
+	}
+
 	public static final String DIST = "DIST";
 	public static final String DIST_FORWARD = "DIST_FORWARD";
 	public static final String DIST_BACKWARD = "DIST_BACKWARD";
 
+	/**
+	 * Label slots. Undirected searches use only the first slot.
+	 */
+	private static final int FWD = 0;
+	private static final int BKW = 1;
+
 	public static final boolean FORWARD = true;
 	public static final boolean BACKWARD = false;
 	public static final boolean UPSTREAM = true;
@@ -0,0 +1,116 @@
+package org.panda.utility.graph.query.algorithm;
+
+import org.panda.utility.graph.query.QueryGraphObject;
+
+import java.util.Arrays;
+
+/**
+ * Integer labels of query graph objects during a run of a search, kept in arrays indexed by the object indexes. Objects
+ * are stamped with the generation of the run, so clearing does not touch the arrays.
+ */
+class RunLabels
+{
+	/**
+	 * Value of a label that is not set.
+	 */
+	static final int NONE = Integer.MAX_VALUE / 2;
+
+	private final int[][] values;
+	private int[] stamp;
+	private int generation;
+
+	/**
+	 * Objects visited in the current run, in the order of visit.
+	 */
+	private QueryGraphObject[] visited;
+	private int visitedSize;
+
+	RunLabels(int labelCount, int capacity)
+	{
+		capacity = Math.max(16, capacity);
+		values = new int[labelCount][capacity];
+		stamp = new int[capacity];
+		visited = new QueryGraphObject[16];
+		generation = 1;
+	}
+
+	int get(QueryGraphObject go, int label)
+	{
+		int i = go.getIndex();
+		return i >= 0 && i < stamp.length && stamp[i] == generation ? values[label][i] : NONE;
+	}
+
+	void set(QueryGraphObject go, int label, int value)
+	{
+		visit(go);
+		values[label][go.getIndex()] = value;
+	}
+
+	boolean isVisited(QueryGraphObject go)
+	{
+		int i = go.getIndex();
+		return i >= 0 && i < stamp.length && stamp[i] == generation;
+	}
+
+	/**
+	 * Marks the object as visited in the current run, with none of its labels set.
+	 */
+	void visit(QueryGraphObject go)
+	{
+		int i = go.getIndex();
+		if (i < 0) throw new IllegalArgumentException("The object is not in a query graph: " + go);
+		if (i >= stamp.length) grow(i);
+
+		if (stamp[i] != generation)
+		{
+			stamp[i] = generation;
+			for (int[] v : values)
+			{
+				v[i] = NONE;
+			}
+
+			if (visitedSize == visited.length) visited = Arrays.copyOf(visited, visitedSize * 2);
+			visited[visitedSize++] = go;
+		}
+	}
+
+	int getLabelCount()
+	{
+		return values.length;
+	}
+
+	int getVisitedCount()
+	{
+		return visitedSize;
+	}
+
+	QueryGraphObject getVisited(int i)
+	{
+		return visited[i];
+	}
+
+	/**
+	 * Removes all labels and visits, for starting a new run.
+	 */
+	void clear()
+	{
+		Arrays.fill(visited, 0, visitedSize, null);
+		visitedSize = 0;
+
+		if (++generation == 0)
+		{
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+	}
+
+	private void grow(int index)
+	{
+		int capacity = Math.max(index + 1, stamp.length * 2);
+		stamp = Arrays.copyOf(stamp, capacity);
+		for (int l = 0; l < values.length; l++)
+		{
+			values[l] = Arrays.copyOf(values[l], capacity);
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package org.panda.utility.statistics;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.*;
+
+/**
+ * Finds the Pearson correlations of all row pairs of a matrix that pass a threshold, as cache-tiled dot products of the
+ * standardized rows. Rows without variance or with a NaN have 0 correlation, as in Correlation.pearsonVal.
+ */
+public class PairwiseCorrelation
+{
+	private static final int BLOCK = 64;
+	private static final int TILE = 256;
+
+	private final int rowCount;
+	private final int colCount;
+
+	/**
+	 * Standardized rows, one after another.
+	 */
+	private final double[] z;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	public PairwiseCorrelation(double[][] rows)
+	{
+		rowCount = rows.length;
+		colCount = rowCount == 0 ? 0 : rows[0].length;
+		z = new double[rowCount * colCount];
+
+		for (int i = 0; i < rowCount; i++)
+		{
+			if (rows[i].length != colCount) throw new IllegalArgumentException("Arrays have to be same length.");
+			standardize(rows[i], i * colCount);
+		}
+	}
+
+	private void standardize(double[] row, int offset)
+	{
+		double mean = 0;
+		for (double v : row)
+		{
+			mean += v;
+		}
+		mean /= row.length;
+
+		double ss = 0;
+		for (double v : row)
+		{
+			ss += (v - mean) * (v - mean);
+		}
+
+		// Zero or NaN variance leaves the row as zeros
+		if (!(ss > 0)) return;
+
+		double norm = Math.sqrt(ss);
+		for (int k = 0; k < row.length; k++)
+		{
+			z[offset + k] = (row[k] - mean) / norm;
+		}
+	}
+
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Receives the row pairs that pass the threshold, with i < j.
+	 */
+	public interface PairConsumer
+	{
+		void accept(int i, int j, double corr);
+	}
+
+	/**
+	 * Gives the pairs with an absolute correlation at least the given value to the consumer.
+	 */
+	public void run(double minCorrelation, PairConsumer consumer)
+	{
+		int blocks = (rowCount + BLOCK - 1) / BLOCK;
+		long taskCount = (long) blocks * (blocks + 1) / 2;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Deque<Future<Pairs>> pending = new ArrayDeque<>();
+		int window = threads * 4;
+
+		try
+		{
+			int bi = 0;
+			int bj = 0;
+			for (long t = 0; t < taskCount; t++)
+			{
+				while (pending.size() < window && bi < blocks)
+				{
+					int i = bi;
+					int j = bj;
+					pending.add(executor.submit(() -> compute(i, j, minCorrelation)));
+
+					if (++bj == blocks) bj = ++bi;
+				}
+
+				Pairs pairs = pending.poll().get();
+				for (int p = 0; p < pairs.size; p++)
+				{
+					consumer.accept(pairs.i[p], pairs.j[p], pairs.corr[p]);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Computes the dot products between two row blocks, a column tile at a time.
+	 */
+	private Pairs compute(int bi, int bj, double minCorrelation)
+	{
+		int i0 = bi * BLOCK;
+		int i1 = Math.min(rowCount, i0 + BLOCK);
+		int j0 = bj * BLOCK;
+		int j1 = Math.min(rowCount, j0 + BLOCK);
+
+		double[] sums = new double[BLOCK * BLOCK];
+
+		for (int k0 = 0; k0 < colCount; k0 += TILE)
+		{
+			int k1 = Math.min(colCount, k0 + TILE);
+
+			int i = i0;
+			for (; i + 1 < i1; i += 2)
+			{
+				int j = j0;
+				for (; j + 3 < j1; j += 4)
+				{
+					multiply(i, j, k0, k1, sums, (i - i0) * BLOCK + j - j0);
+				}
+				for (; j < j1; j++)
+				{
+					sums[(i - i0) * BLOCK + j - j0] += dot(i, j, k0, k1);
+					sums[(i + 1 - i0) * BLOCK + j - j0] += dot(i + 1, j, k0, k1);
+				}
+			}
+			for (; i < i1; i++)
+			{
+				for (int j = j0; j < j1; j++)
+				{
+					sums[(i - i0) * BLOCK + j - j0] += dot(i, j, k0, k1);
+				}
+			}
+		}
+
+		Pairs pairs = new Pairs();
+		for (int i = i0; i < i1; i++)
+		{
+			int row = (i - i0) * BLOCK;
+			for (int j = bi == bj ? i + 1 : j0; j < j1; j++)
+			{
+				double corr = sums[row + j - j0];
+				if (Math.abs(corr) >= minCorrelation) pairs.add(i, j, corr);
+			}
+		}
+		return pairs;
+	}
+
+	/**
+	 * Dot product of the two rows in the given column range.
+	 */
+	private double dot(int i, int j, int k0, int k1)
+	{
+		int a = i * colCount;
+		int b = j * colCount;
+		double s = 0;
+		for (int k = k0; k < k1; k++)
+		{
+			s += z[a + k] * z[b + k];
+		}
+		return s;
+	}
+
+	/**
+	 * Adds the dot products of the two rows from i with the four rows from j to the sums at the given position.
+	 */
+	private void multiply(int i, int j, int k0, int k1, double[] sums, int pos)
+	{
+		int a0 = i * colCount;
+		int a1 = a0 + colCount;
+		int b0 = j * colCount;
+		int b1 = b0 + colCount;
+		int b2 = b1 + colCount;
+		int b3 = b2 + colCount;
+
+		double s00 = 0, s01 = 0, s02 = 0, s03 = 0;
+		double s10 = 0, s11 = 0, s12 = 0, s13 = 0;
+		for (int k = k0; k < k1; k++)
+		{
+			double x0 = z[a0 + k];
+			double x1 = z[a1 + k];
+			double y0 = z[b0 + k];
+			double y1 = z[b1 + k];
+			double y2 = z[b2 + k];
+			double y3 = z[b3 + k];
+			s00 += x0 * y0;
+			s01 += x0 * y1;
+			s02 += x0 * y2;
+			s03 += x0 * y3;
+			s10 += x1 * y0;
+			s11 += x1 * y1;
+			s12 += x1 * y2;
+			s13 += x1 * y3;
+		}
+
+		sums[pos] += s00;
+		sums[pos + 1] += s01;
+		sums[pos + 2] += s02;
+		sums[pos + 3] += s03;
+		sums[pos + BLOCK] += s10;
+		sums[pos + BLOCK + 1] += s11;
+		sums[pos + BLOCK + 2] += s12;
+		sums[pos + BLOCK + 3] += s13;
+	}
+
+	/**
+	 * Passing pairs of a block pair.
+	 */
+	private static class Pairs
+	{
+		int[] i = new int[16];
+		int[] j = new int[16];
+		double[] corr = new double[16];
+		int size;
+
+		void add(int i, int j, double corr)
+		{
+			if (size == this.i.length)
+			{
+				this.i = Arrays.copyOf(this.i, size * 2);
+				this.j = Arrays.copyOf(this.j, size * 2);
+				this.corr = Arrays.copyOf(this.corr, size * 2);
+			}
+			this.i[size] = i;
+			this.j[size] = j;
+			this.corr[size++] = corr;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BinaryGraphFileTest
+{
+	@Test
+	public void directedWithMediators() throws IOException
+	{
+		DirectedGraph graph = new DirectedGraph("priors", "controls-state-change-of");
+		graph.putRelation("A", "B", "M1 M2");
+		graph.putRelation("B", "C");
+		graph.putRelation("C", "A", "M3");
+
+		Graph loaded = writeAndLoad(graph);
+
+		assertTrue(loaded instanceof CompactDirectedGraph);
+		assertEquals("priors", loaded.getName());
+		assertEquals("controls-state-change-of", loaded.getEdgeType());
+		assertEquals(graph.getRelationStrings(), loaded.getRelationStrings());
+		assertEquals(set("M1", "M2"), loaded.getMediators("A", "B"));
+		assertEquals(set(), loaded.getMediators("B", "C"));
+		assertEquals(set("M3"), loaded.getMediators("C", "A"));
+
+		loaded.removeRelation("A", "B");
+		loaded.putRelation("B", "D", "M4");
+		assertEquals(set(), loaded.getMediators("A", "B"));
+		assertEquals(set("M4"), loaded.getMediators("B", "D"));
+		assertEquals(set("M3"), loaded.getMediators("C", "A"));
+	}
+
+	@Test
+	public void undirected() throws IOException
+	{
+		UndirectedGraph graph = new UndirectedGraph("ppi", "interacts-with");
+		graph.putRelation("A", "B", "M1");
+		graph.putRelation("B", "C");
+
+		Graph loaded = writeAndLoad(graph);
+
+		assertTrue(loaded instanceof UndirectedGraph);
+		assertEquals(set("A", "C"), loaded.getNeighbors("B"));
+		assertEquals(set("B"), loaded.getNeighbors("A"));
+		assertEquals(set("M1"), loaded.getMediators("A", "B"));
+		assertEquals(set("M1"), loaded.getMediators("B", "A"));
+		assertEquals(2, loaded.getEdgeCount());
+
+		loaded.putRelation("C", "D");
+		assertEquals(set("B", "D"), loaded.getNeighbors("C"));
+	}
+
+	@Test
+	public void siteSpecific() throws IOException
+	{
+		SiteSpecificGraph graph = new SiteSpecificGraph("phospho", "phosphorylates");
+		graph.putRelation("A", "C", "M1", "S10;T20");
+		graph.putRelation("B", "C", "M2", "S10");
+		graph.putRelation("B", "D");
+
+		SiteSpecificGraph loaded = (SiteSpecificGraph) writeAndLoad(graph);
+
+		assertEquals(set("A", "B"), loaded.getUpstream("C"));
+		assertEquals(set("C", "D"), loaded.getDownstream("B"));
+		assertEquals(set("S10", "T20"), loaded.getSites("A", "C"));
+		assertEquals(set(), loaded.getSites("B", "D"));
+		assertEquals(set("M2"), loaded.getMediators("B", "C"));
+		assertEquals(set("A", "B"), loaded.getUpstream("C", "S10"));
+		assertEquals(set("A"), loaded.getUpstream("C", "T20"));
+
+		loaded.addSite("B", "C", "T20");
+		assertEquals(set("A", "B"), loaded.getUpstream("C", "T20"));
+	}
+
+	@Test
+	public void graphList() throws IOException
+	{
+		DirectedGraph g1 = new DirectedGraph("g1", "type1");
+		g1.putRelation("A", "B");
+		UndirectedGraph g2 = new UndirectedGraph("g2", "type2");
+		g2.putRelation("B", "C");
+
+		GraphList list = new GraphList("list");
+		list.addGraph(g1);
+		list.addGraph(g2);
+
+		GraphList loaded = (GraphList) writeAndLoad(list);
+
+		assertEquals("list", loaded.getName());
+		assertEquals(2, loaded.getGraphs().size());
+		assertEquals(set("B"), ((DirectedGraph) loaded.getGraphs().get(0)).getDownstream("A"));
+		assertEquals(set("B"), loaded.getGraphs().get(1).getNeighbors("C"));
+	}
+
+	private Graph writeAndLoad(Graph graph) throws IOException
+	{
+		File file = File.createTempFile("graph", ".bin");
+		file.deleteOnExit();
+		graph.writeBinary(file.getPath());
+		return BinaryGraphFile.load(file.getPath());
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
@@ -0,0 +1,93 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DegreePreservingRandomizerTest
+{
+	@Test
+	public void directedDegrees()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		for (int i = 0; i < 10; i++)
+		{
+			graph.putRelation("N" + i, "N" + ((i + 1) % 10));
+			graph.putRelation("N" + i, "N" + ((i + 3) % 10));
+		}
+		FrozenGraph frozen = graph.freeze();
+
+		FrozenGraph random = new DegreePreservingRandomizer(frozen).randomize(7);
+
+		assertTrue(random.isDirected());
+		assertEquals(20, random.getEdgeCount());
+		for (int v = 0; v < frozen.getNodeCount(); v++)
+		{
+			assertEquals(frozen.getOutDegree(v), random.getOutDegree(v));
+			assertEquals(frozen.getInDegree(v), random.getInDegree(v));
+			assertFalse(random.hasRelation(v, v));
+		}
+		assertFalse(edges(frozen).equals(edges(random)));
+	}
+
+	@Test
+	public void undirectedDegrees()
+	{
+		UndirectedGraph graph = new UndirectedGraph("g", "t");
+		for (int i = 0; i < 10; i++)
+		{
+			graph.putRelation("N" + i, "N" + ((i + 1) % 10));
+			graph.putRelation("N" + i, "N" + ((i + 2) % 10));
+		}
+		FrozenGraph frozen = graph.freeze();
+
+		FrozenGraph random = new DegreePreservingRandomizer(frozen).randomize(7);
+
+		assertFalse(random.isDirected());
+		assertEquals(20, random.getEdgeCount());
+		for (int v = 0; v < frozen.getNodeCount(); v++)
+		{
+			assertEquals(4, random.getOutDegree(v));
+			assertFalse(random.hasRelation(v, v));
+		}
+		assertFalse(edges(frozen).equals(edges(random)));
+	}
+
+	@Test
+	public void sameSeedSameGraph()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		for (int i = 0; i < 10; i++)
+		{
+			graph.putRelation("N" + i, "N" + ((i + 1) % 10));
+			graph.putRelation("N" + i, "N" + ((i + 4) % 10));
+		}
+		DegreePreservingRandomizer randomizer = new DegreePreservingRandomizer(graph.freeze());
+
+		assertEquals(edges(randomizer.randomize(5)), edges(randomizer.randomize(5)));
+
+		List<FrozenGraph> copies = randomizer.randomize(3, 5);
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals(edges(randomizer.randomize(DegreePreservingRandomizer.deriveSeed(5, i))),
+				edges(copies.get(i)));
+		}
+	}
+
+	private Set<String> edges(FrozenGraph graph)
+	{
+		Set<String> set = new HashSet<>();
+		int[] buffer = new int[graph.getMaxDegree()];
+		for (int v = 0; v < graph.getNodeCount(); v++)
+		{
+			int n = graph.getDownstream(v, buffer);
+			for (int i = 0; i < n; i++)
+			{
+				set.add(graph.getName(v) + " " + graph.getName(buffer[i]));
+			}
+		}
+		return set;
+	}
+}
@@ -0,0 +1,59 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DistanceTableTest
+{
+	@Test
+	public void directedDistances()
+	{
+		DirectedGraph graph = new DirectedGraph();
+		graph.putRelation("A", "B");
+		graph.putRelation("B", "C");
+		graph.putRelation("A", "C");
+		graph.putRelation("C", "D");
+
+		DistanceTable table = graph.getShortestDistanceTable(2);
+		assertEquals(1, table.getDistance("A", "C"));
+		assertEquals(2, table.getDistance("A", "D"));
+		assertEquals(-1, table.getDistance("B", "A"));
+		assertEquals(-1, table.getDistance("A", "X"));
+
+		Map<String, Map<String, Integer>> map = graph.getShortestDistances(2);
+		assertEquals(3, map.get("A").size());
+		assertEquals(2, (int) map.get("B").get("D"));
+		assertFalse(map.containsKey("D"));
+	}
+
+	@Test
+	public void limitAboveTable()
+	{
+		UndirectedGraph graph = new UndirectedGraph();
+		for (int i = 0; i < 300; i++)
+		{
+			graph.putRelation("N" + i, "N" + (i + 1));
+		}
+
+		Map<String, Map<String, Integer>> map = graph.getShortestDistances(400);
+		assertEquals(300, (int) map.get("N0").get("N300"));
+		assertEquals(1, (int) map.get("N150").get("N149"));
+
+		// Same with getNeighbors, a node reaches itself through a neighbor
+		assertEquals(2, (int) map.get("N150").get("N150"));
+		assertEquals(301, map.get("N150").size());
+
+		try
+		{
+			graph.getShortestDistanceTable(400);
+			fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+			// The table keeps distances in bytes
+		}
+	}
+}
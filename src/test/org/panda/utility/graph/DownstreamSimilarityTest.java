@@ -0,0 +1,67 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DownstreamSimilarityTest
+{
+	@Test
+	public void jaccard()
+	{
+		UndirectedGraphWithEdgeWeights sim = graph().getDownstreamSimilarityGraph();
+
+		assertEquals(set("A B", "A C", "A E", "B E"), pairs(sim));
+		assertEquals(2 / 3D, sim.getWeight("A", "B"), 1E-10);
+		assertEquals(1 / 3D, sim.getWeight("C", "A"), 1E-10);
+		assertEquals(1 / 4D, sim.getWeight("A", "E"), 1E-10);
+		assertEquals(1 / 3D, sim.getWeight("B", "E"), 1E-10);
+	}
+
+	@Test
+	public void filters()
+	{
+		assertEquals(set("A B", "A C", "B E"), pairs(graph().getDownstreamSimilarityGraph(0.3, 0)));
+		assertEquals(set("A B", "A C", "B E"), pairs(graph().getDownstreamSimilarityGraph(0, 1)));
+		assertEquals(set("A B"), pairs(graph().getDownstreamSimilarityGraph(0.5, 1)));
+	}
+
+	private DirectedGraph graph()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		addTargets(graph, "A", "X", "Y", "Z");
+		addTargets(graph, "B", "X", "Y");
+		addTargets(graph, "C", "Z");
+		addTargets(graph, "D", "V");
+		addTargets(graph, "E", "X", "W");
+		return graph;
+	}
+
+	private void addTargets(DirectedGraph graph, String source, String... targets)
+	{
+		for (String target : targets)
+		{
+			graph.putRelation(source, target);
+		}
+	}
+
+	private Set<String> pairs(UndirectedGraph graph)
+	{
+		Set<String> set = new HashSet<>();
+		for (String s : graph.getSymbols())
+		{
+			for (String t : graph.getNeighbors(s))
+			{
+				if (s.compareTo(t) < 0) set.add(s + " " + t);
+			}
+		}
+		return set;
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
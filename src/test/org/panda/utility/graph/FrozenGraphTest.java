@@ -0,0 +1,99 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+import org.panda.utility.graph.DirectedGraph.NeighborType;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class FrozenGraphTest
+{
+	@Test
+	public void directed()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		graph.putRelation("A", "B");
+		graph.putRelation("A", "C");
+		graph.putRelation("B", "C");
+		graph.putRelation("C", "D");
+		graph.putRelation("E", "A");
+
+		FrozenGraph frozen = graph.freeze();
+		graph.putRelation("D", "E");
+
+		assertTrue(frozen.isDirected());
+		assertEquals(5, frozen.getEdgeCount());
+		assertEquals(-1, frozen.getId("X"));
+		assertEquals(set("B", "C"), get(frozen, "A", NeighborType.DOWNSTREAM));
+		assertEquals(set("A", "B"), get(frozen, "C", NeighborType.UPSTREAM));
+		assertEquals(set("B", "C", "E"), get(frozen, "A", NeighborType.BOTHSTREAM));
+		assertEquals(set(), get(frozen, "D", NeighborType.DOWNSTREAM));
+
+		NodeMarker visited = new NodeMarker(frozen.getNodeCount());
+		int[] frontier = {frozen.getId("A")};
+		visited.mark(frontier[0]);
+		int[] out = new int[frozen.getNodeCount()];
+
+		int n = frozen.goBFS(frontier, 1, visited, out, NeighborType.DOWNSTREAM);
+		assertEquals(set("B", "C"), names(frozen, n, out));
+		int m = frozen.goBFS(Arrays.copyOf(out, n), n, visited, out, NeighborType.DOWNSTREAM);
+		assertEquals(set("D"), names(frozen, m, out));
+	}
+
+	@Test
+	public void inducedSubgraph()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		graph.putRelation("A", "B");
+		graph.putRelation("B", "C");
+		graph.putRelation("C", "D");
+		FrozenGraph frozen = graph.freeze();
+
+		FrozenGraph sub = frozen.getInducedSubgraph(Arrays.asList("A", "B", "C", "X"));
+
+		assertEquals(2, sub.getEdgeCount());
+		assertEquals(set("A", "B", "C"), sub.getSymbols());
+		assertEquals(frozen.getId("D"), sub.getId("D"));
+		assertFalse(sub.hasEdge(sub.getId("D")));
+		assertTrue(sub.hasRelation(sub.getId("A"), sub.getId("B")));
+	}
+
+	@Test
+	public void undirected()
+	{
+		UndirectedGraph graph = new UndirectedGraph("g", "t");
+		graph.putRelation("A", "B");
+		graph.putRelation("B", "C");
+		FrozenGraph frozen = graph.freeze();
+
+		assertFalse(frozen.isDirected());
+		assertEquals(2, frozen.getEdgeCount());
+		assertEquals(set("A", "C"), get(frozen, "B", NeighborType.BOTHSTREAM));
+		assertTrue(frozen.hasRelation(frozen.getId("C"), frozen.getId("B")));
+	}
+
+	private Set<String> get(FrozenGraph graph, String node, NeighborType type)
+	{
+		int id = graph.getId(node);
+		int[] buffer = new int[2 * graph.getMaxDegree()];
+		int size = type == NeighborType.DOWNSTREAM ? graph.getDownstream(id, buffer) :
+			type == NeighborType.UPSTREAM ? graph.getUpstream(id, buffer) : graph.getNeighbors(id, buffer);
+		return names(graph, size, buffer);
+	}
+
+	private Set<String> names(FrozenGraph graph, int size, int[] ids)
+	{
+		Set<String> set = new HashSet<>();
+		for (int i = 0; i < size; i++)
+		{
+			set.add(graph.getName(ids[i]));
+		}
+		return set;
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
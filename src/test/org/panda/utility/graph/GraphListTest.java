@@ -0,0 +1,42 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GraphListTest
+{
+	@Test
+	public void membersChangedThroughGetGraphs()
+	{
+		DirectedGraph g1 = new DirectedGraph("g1", "type1");
+		g1.putRelation("A", "B");
+		DirectedGraph g2 = new DirectedGraph("g2", "type2");
+		g2.putRelation("A", "C");
+		DirectedGraph g3 = new DirectedGraph("g3", "type3");
+		g3.putRelation("A", "D");
+
+		GraphList list = new GraphList("list");
+		list.addGraph(g1);
+		list.addGraph(g2);
+		assertEquals(set("B", "C"), list.getDownstream("A"));
+
+		int cnt = list.getModificationCount();
+		list.getGraphs().set(1, g3);
+		assertTrue(cnt != list.getModificationCount());
+		assertEquals(set("B", "D"), list.getDownstream("A"));
+
+		list.getGraphs().remove(0);
+		assertEquals(set("D"), list.getDownstream("A"));
+
+		g3.putRelation("A", "E");
+		assertEquals(set("D", "E"), list.getDownstream("A"));
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
@@ -0,0 +1,118 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+import org.panda.utility.graph.DirectedGraph.NeighborType;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MultiSourceBFSTest
+{
+	@Test
+	public void lanes()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		graph.putRelation("A", "B");
+		graph.putRelation("B", "C");
+		graph.putRelation("C", "A");
+		graph.putRelation("C", "D");
+		graph.putRelation("E", "B");
+		FrozenGraph frozen = graph.freeze();
+
+		MultiSourceBFS bfs = new MultiSourceBFS(frozen);
+		int[] sources = ids(frozen, "A", "D", "E");
+
+		bfs.run(sources, 0, 3, 2, NeighborType.DOWNSTREAM);
+		assertEquals(set("B", "C"), reached(bfs, 0));
+		assertEquals(set(), reached(bfs, 1));
+		assertEquals(set("B", "C"), reached(bfs, 2));
+
+		bfs.run(sources, 0, 3, 3, NeighborType.DOWNSTREAM);
+		assertEquals(set("A", "B", "C", "D"), reached(bfs, 0));
+		assertTrue(bfs.isReached(0, frozen.getId("A")));
+		assertEquals(set("A", "B", "C", "D"), reached(bfs, 2));
+
+		boolean[] marked = new boolean[frozen.getNodeCount()];
+		marked[frozen.getId("C")] = true;
+		marked[frozen.getId("D")] = true;
+		int[] size = new int[3];
+		int[] hits = new int[3];
+		bfs.count(marked, size, hits);
+		assertArrayEquals(new int[]{4, 0, 4}, size);
+		assertArrayEquals(new int[]{2, 0, 2}, hits);
+
+		bfs.run(sources, 0, 3, 1, NeighborType.UPSTREAM);
+		assertEquals(set("C"), reached(bfs, 0));
+		assertEquals(set("C"), reached(bfs, 1));
+		assertEquals(set(), reached(bfs, 2));
+
+		bfs.run(sources, 0, 3, 1, NeighborType.BOTHSTREAM);
+		assertEquals(set("B", "C"), reached(bfs, 0));
+		assertEquals(set("C"), reached(bfs, 1));
+		assertEquals(set("B"), reached(bfs, 2));
+	}
+
+	@Test
+	public void batches()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		String[] nodes = new String[70];
+		for (int i = 0; i < nodes.length; i++)
+		{
+			nodes[i] = "N" + i;
+			if (i > 0) graph.putRelation(nodes[i - 1], nodes[i]);
+		}
+		FrozenGraph frozen = graph.freeze();
+		int[] sources = ids(frozen, nodes);
+
+		MultiSourceBFS bfs = new MultiSourceBFS(frozen);
+		for (int from = 0; from < nodes.length; from += MultiSourceBFS.LANES)
+		{
+			int count = Math.min(MultiSourceBFS.LANES, nodes.length - from);
+			bfs.run(sources, from, count, 2, NeighborType.DOWNSTREAM);
+
+			int[] size = new int[count];
+			bfs.count(new boolean[frozen.getNodeCount()], size, new int[count]);
+			for (int lane = 0; lane < count; lane++)
+			{
+				assertEquals(Math.min(2, nodes.length - 1 - from - lane), size[lane]);
+			}
+		}
+
+		try
+		{
+			bfs.run(sources, 0, MultiSourceBFS.LANES + 1, 2, NeighborType.DOWNSTREAM);
+			fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+
+	private int[] ids(FrozenGraph graph, String... nodes)
+	{
+		int[] ids = new int[nodes.length];
+		for (int i = 0; i < nodes.length; i++)
+		{
+			ids[i] = graph.getId(nodes[i]);
+		}
+		return ids;
+	}
+
+	private Set<String> reached(MultiSourceBFS bfs, int lane)
+	{
+		Set<String> set = new HashSet<>();
+		for (int v = 0; v < bfs.getGraph().getNodeCount(); v++)
+		{
+			if (bfs.isReached(lane, v)) set.add(bfs.getGraph().getName(v));
+		}
+		return set;
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
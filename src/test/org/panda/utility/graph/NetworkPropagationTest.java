@@ -0,0 +1,96 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class NetworkPropagationTest
+{
+	@Test
+	public void randomWalkWithRestart()
+	{
+		UndirectedGraph undirected = new UndirectedGraph("g", "t");
+		undirected.putRelation("A", "B");
+
+		// p(A) = r + (1 - r) p(B) and p(B) = (1 - r) p(A)
+		Map<String, Double> scores = propagation(undirected).randomWalkWithRestart(list(set("A")), 0.5).get(0);
+		assertEquals(2 / 3D, scores.get("A"), 1E-9);
+		assertEquals(1 / 3D, scores.get("B"), 1E-9);
+
+		// Walkers at B have no downstream and return to A
+		DirectedGraph directed = new DirectedGraph("g", "t");
+		directed.putRelation("A", "B");
+		scores = propagation(directed).randomWalkWithRestart(list(set("A")), 0.5).get(0);
+		assertEquals(2 / 3D, scores.get("A"), 1E-9);
+		assertEquals(1 / 3D, scores.get("B"), 1E-9);
+	}
+
+	@Test
+	public void heatDiffusion()
+	{
+		UndirectedGraph undirected = new UndirectedGraph("g", "t");
+		undirected.putRelation("A", "B");
+
+		Map<String, Double> heat = propagation(undirected).heatDiffusion(list(set("A")), 1).get(0);
+		assertEquals(0.5 + 0.5 * Math.exp(-2), heat.get("A"), 1E-9);
+		assertEquals(0.5 - 0.5 * Math.exp(-2), heat.get("B"), 1E-9);
+
+		// Heat reaching B stays there
+		DirectedGraph directed = new DirectedGraph("g", "t");
+		directed.putRelation("A", "B");
+		heat = propagation(directed).heatDiffusion(list(set("A")), 1).get(0);
+		assertEquals(Math.exp(-1), heat.get("A"), 1E-9);
+		assertEquals(1 - Math.exp(-1), heat.get("B"), 1E-9);
+	}
+
+	@Test
+	public void columnsAreIndependent()
+	{
+		UndirectedGraph graph = new UndirectedGraph("g", "t");
+		for (int i = 0; i < 50; i++)
+		{
+			graph.putRelation("N" + i, "N" + ((i + 1) % 50));
+			graph.putRelation("N" + i, "N" + ((i * 7) % 50));
+		}
+
+		List<Set<String>> seeds = list(set("N0"), set("N3", "N20"), set("N49"));
+		NetworkPropagation parallel = propagation(graph);
+		List<Map<String, Double>> together = parallel.randomWalkWithRestart(seeds, 0.3);
+
+		NetworkPropagation sequential = propagation(graph);
+		sequential.setParallel(false);
+		for (int i = 0; i < seeds.size(); i++)
+		{
+			Map<String, Double> alone = sequential.randomWalkWithRestart(list(seeds.get(i)), 0.3).get(0);
+			assertEquals(alone.keySet(), together.get(i).keySet());
+			double sum = 0;
+			for (String node : alone.keySet())
+			{
+				assertEquals(alone.get(node), together.get(i).get(node), 1E-9);
+				sum += alone.get(node);
+			}
+			assertEquals(1, sum, 1E-9);
+		}
+	}
+
+	private NetworkPropagation propagation(Graph graph)
+	{
+		NetworkPropagation np = new NetworkPropagation(graph.freeze());
+		np.setTolerance(1E-13);
+		np.setMaxIterations(10000);
+		return np;
+	}
+
+	@SafeVarargs
+	private final List<Set<String>> list(Set<String>... sets)
+	{
+		return Arrays.asList(sets);
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
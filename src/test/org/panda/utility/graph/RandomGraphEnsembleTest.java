@@ -0,0 +1,77 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+import static org.junit.Assert.*;
+
+public class RandomGraphEnsembleTest
+{
+	@Test
+	public void independentOfThreads()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		for (int i = 0; i < 12; i++)
+		{
+			graph.putRelation("N" + i, "N" + ((i + 1) % 12));
+			graph.putRelation("N" + i, "N" + ((i + 5) % 12));
+		}
+		FrozenGraph frozen = graph.freeze();
+		RandomGraphEnsemble ensemble = new RandomGraphEnsemble(frozen);
+		ToDoubleFunction<FrozenGraph> overlap = ensemble.getEdgeOverlapStatistic(graph);
+
+		ensemble.setThreads(1);
+		double[] single = ensemble.runDouble(20, 3, overlap);
+		ensemble.setThreads(4);
+		double[] multi = ensemble.runDouble(20, 3, overlap);
+
+		assertArrayEquals(single, multi, 0);
+
+		DegreePreservingRandomizer randomizer = new DegreePreservingRandomizer(frozen);
+		List<Integer> edgeCounts = ensemble.run(5, 3, FrozenGraph::getEdgeCount);
+		for (int i = 0; i < 5; i++)
+		{
+			assertEquals(24, (int) edgeCounts.get(i));
+			FrozenGraph random = randomizer.randomize(DegreePreservingRandomizer.deriveSeed(3, i));
+			assertEquals(overlap.applyAsDouble(random), single[i], 0);
+		}
+	}
+
+	@Test
+	public void edgeOverlap()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		graph.putRelation("A", "B");
+		graph.putRelation("B", "C");
+		graph.putRelation("C", "D");
+		FrozenGraph frozen = graph.freeze();
+
+		DirectedGraph other = new DirectedGraph("o", "t");
+		other.putRelation("A", "B");
+		other.putRelation("C", "B");
+		other.putRelation("X", "D");
+
+		assertEquals(1, new RandomGraphEnsemble(frozen).getEdgeOverlapStatistic(other).applyAsDouble(frozen), 0);
+
+		UndirectedGraph undirected = new UndirectedGraph("u", "t");
+		undirected.putRelation("A", "B");
+		undirected.putRelation("B", "C");
+		FrozenGraph frozenUndirected = undirected.freeze();
+
+		UndirectedGraph otherUndirected = new UndirectedGraph("o", "t");
+		otherUndirected.putRelation("C", "B");
+		otherUndirected.putRelation("A", "C");
+
+		assertEquals(1, new RandomGraphEnsemble(frozenUndirected).getEdgeOverlapStatistic(otherUndirected)
+			.applyAsDouble(frozenUndirected), 0);
+	}
+
+	@Test
+	public void pValue()
+	{
+		assertEquals(0.6, RandomGraphEnsemble.getPValue(3, new double[]{1, 3, 5, 2}), 1E-10);
+		assertEquals(0.2, RandomGraphEnsemble.getPValue(6, new double[]{1, 3, 5, 2}), 1E-10);
+	}
+}
@@ -0,0 +1,122 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ReachabilityIndexTest
+{
+	@Test
+	public void getPathElements()
+	{
+		DirectedGraph graph = new DirectedGraph();
+		graph.putRelation("A", "B");
+		graph.putRelation("B", "C");
+		graph.putRelation("C", "D");
+		graph.putRelation("A", "E");
+		graph.putRelation("E", "D");
+		graph.putRelation("E", "F");
+		graph.putRelation("F", "G");
+
+		Set<String> to = Collections.singleton("D");
+
+		assertEquals(set(), graph.getPathElements("A", to, 0));
+		assertEquals(set("E", "D"), graph.getPathElements("A", to, 1));
+		assertEquals(set("B", "C", "D", "E"), graph.getPathElements("A", to, 2));
+		assertEquals(set("B", "C", "D", "E"), graph.getPathElements("A", to, 5));
+		assertEquals(set(), graph.getPathElements("D", to, 5));
+	}
+
+	@Test
+	public void getPathElementsWithCycleToSource()
+	{
+		DirectedGraph graph = new DirectedGraph();
+		graph.putRelation("A", "A");
+		graph.putRelation("A", "B");
+		graph.putRelation("B", "A");
+		graph.putRelation("B", "C");
+		graph.putRelation("C", "C");
+
+		Set<String> to = Collections.singleton("C");
+
+		assertEquals(set("B", "C"), graph.getPathElements("A", to, 1));
+		assertEquals(set("B", "C"), graph.getPathElements("A", to, 2));
+		assertEquals(set("A", "B", "C"), graph.getPathElements("A", to, 3));
+
+		// Source is a target, and walks return to it
+		to = set("A", "C");
+		assertEquals(set("A", "B", "C"), graph.getPathElements("A", to, 1));
+		assertEquals(set("A", "B", "C"), graph.getPathElements("A", to, 2));
+	}
+
+	@Test
+	public void getCommonDownstream()
+	{
+		DirectedGraph graph = new DirectedGraph();
+		Set<String> seed = new HashSet<>();
+
+		// More than 64 seeds, so that seed bits take more than one word
+		Set<String> many = new HashSet<>();
+		for (int i = 0; i < 70; i++)
+		{
+			many.add("S" + i);
+			graph.putRelation("S" + i, "X");
+		}
+		graph.putRelation("S0", "Y");
+		graph.putRelation("S1", "Y");
+		graph.putRelation("X", "Z");
+		graph.putRelation("Y", "Z");
+		graph.putRelation("T", "Z");
+
+		seed.addAll(many);
+		seed.add("T");
+
+		Set<String> manyAndT = new HashSet<>(many);
+		manyAndT.add("T");
+
+		assertEquals(set(point("X", 1, many), point("Y", 1, set("S0", "S1"))),
+			toStrings(graph.getCommonDownstream(seed, 2)));
+
+		// Z is reached by T in one step, and by the others in two
+		assertEquals(set(point("X", 1, many), point("Y", 1, set("S0", "S1")), point("Z", 2, manyAndT)),
+			toStrings(graph.getCommonDownstream(seed, 3)));
+	}
+
+	@Test
+	public void getCommonDownstreamOfFewSeeds()
+	{
+		DirectedGraph graph = new DirectedGraph();
+		graph.putRelation("A", "C");
+		graph.putRelation("B", "D");
+		graph.putRelation("D", "C");
+		graph.putRelation("C", "E");
+
+		Set<String> seed = set("A", "B");
+
+		assertEquals(set(), toStrings(graph.getCommonDownstream(seed, 2)));
+		assertEquals(set(point("C", 2, seed)), toStrings(graph.getCommonDownstream(seed, 3)));
+		assertEquals(set(point("C", 2, seed)), toStrings(graph.getCommonDownstream(seed, 4)));
+	}
+
+	private String point(String node, int dist, Set<String> upstream)
+	{
+		return node + " " + dist + " " + new TreeSet<>(upstream);
+	}
+
+	private Set<String> toStrings(List<DirectedGraph.CommPoint> points)
+	{
+		Set<String> set = new HashSet<>();
+		for (DirectedGraph.CommPoint p : points)
+		{
+			assertTrue("Duplicate point " + p.s, set.add(point(p.s, p.dist, p.upstr)));
+		}
+		return set;
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
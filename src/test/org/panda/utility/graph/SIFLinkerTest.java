@@ -0,0 +1,70 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SIFLinkerTest
+{
+	private static final String SIF = "A\tcontrols-state-change-of\tB\n" +
+		"B\tcontrols-state-change-of\tC\n" +
+		"C\tcontrols-expression-of\tD\n" +
+		"A\tcontrols-expression-of\tE\n" +
+		"E\tcontrols-state-change-of\tD\n" +
+		"F\tcontrols-state-change-of\tD\n";
+
+	@Test
+	public void batchMatchesSingleCalls() throws IOException
+	{
+		SIFLinker linker = new SIFLinker();
+		assertTrue(linker.load(new ByteArrayInputStream(SIF.getBytes(StandardCharsets.UTF_8)),
+			"controls-state-change-of", "controls-expression-of"));
+
+		assertEquals(set("A\tcontrols-state-change-of\tB", "B\tcontrols-state-change-of\tC"),
+			new HashSet<>(linker.link(set("A"), set("C"), 2)));
+
+		List<SIFLinker.Job> jobs = new ArrayList<>();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 40; i++)
+		{
+			SIFLinker.JobType type = SIFLinker.JobType.values()[i % SIFLinker.JobType.values().length];
+			Set<String> from = i % 2 == 0 ? set("A") : set("A", "F");
+			Set<String> to = i % 3 == 0 ? set("D") : set("C");
+			int limit = 1 + i % 3;
+			jobs.add(new SIFLinker.Job("job" + i, type, from, to, limit));
+
+			for (String rel : single(linker, type, from, to, limit))
+			{
+				expected.append("job").append(i).append("\t").append(rel).append("\n");
+			}
+		}
+
+		StringWriter writer = new StringWriter();
+		linker.link(jobs, 4, writer);
+
+		assertEquals(expected.toString(), writer.toString());
+	}
+
+	private List<String> single(SIFLinker linker, SIFLinker.JobType type, Set<String> from, Set<String> to,
+		int limit)
+	{
+		switch (type)
+		{
+			case LINK: return linker.link(from, to, limit);
+			case PROGRESSIVE: return linker.linkProgressive(from, to, limit);
+			case MINIMAL: return linker.linkMinimal(from, limit);
+			default: return linker.linkCommonDownstream(from, limit);
+		}
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
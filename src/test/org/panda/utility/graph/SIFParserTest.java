@@ -0,0 +1,83 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SIFParserTest
+{
+	@Test
+	public void lineEndings() throws IOException
+	{
+		String sif = "A\tt\tB\tM1 M2\n" +
+			"B\tt\tC\r\n" +
+			"C\tt\tD\r" +
+			"D\tother\tE\n" +
+			"E\tt\tF\t\t\n" +
+			"short\tline\r" +
+			"\n" +
+			"F\tt\tA";
+
+		DirectedGraph graph = loadParallel(sif, Collections.singleton("t"));
+
+		assertEquals(set("A B", "B C", "C D", "E F", "F A"), graph.getRelationStrings());
+		assertEquals(set("M1", "M2"), graph.getMediators("A", "B"));
+		assertEquals(set(), graph.getMediators("C", "D"));
+		assertEquals(loadSequential(sif, Collections.singleton("t")).getRelationStrings(), graph.getRelationStrings());
+	}
+
+	@Test
+	public void multipleChunks() throws IOException
+	{
+		String[] ends = {"\n", "\r\n", "\r"};
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 150000; i++)
+		{
+			sb.append("N").append(i).append("\t").append(i % 5 == 0 ? "other" : "t").append("\tN").append(i + 1);
+			if (i % 3 == 0) sb.append("\tM").append(i);
+			sb.append(ends[i % ends.length]);
+		}
+		String sif = sb.toString();
+		assertTrue(sif.length() > 2 << 20);
+
+		DirectedGraph parallel = loadParallel(sif, Collections.singleton("t"));
+		DirectedGraph sequential = loadSequential(sif, Collections.singleton("t"));
+
+		assertEquals(120000, parallel.getRelationStrings().size());
+		assertEquals(sequential.getRelationStrings(), parallel.getRelationStrings());
+		for (int i = 0; i < 150000; i++)
+		{
+			String s = "N" + i;
+			String t = "N" + (i + 1);
+			assertEquals(sequential.getMediators(s, t), parallel.getMediators(s, t));
+		}
+	}
+
+	private DirectedGraph loadParallel(String sif, Set<String> types) throws IOException
+	{
+		File file = File.createTempFile("parser", ".sif");
+		file.deleteOnExit();
+		Files.write(file.toPath(), sif.getBytes(StandardCharsets.UTF_8));
+
+		DirectedGraph graph = new DirectedGraph();
+		assertTrue(graph.load(file.getPath(), types));
+		return graph;
+	}
+
+	private DirectedGraph loadSequential(String sif, Set<String> types)
+	{
+		DirectedGraph graph = new DirectedGraph();
+		assertTrue(graph.load(new ByteArrayInputStream(sif.getBytes(StandardCharsets.UTF_8)), types));
+		return graph;
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
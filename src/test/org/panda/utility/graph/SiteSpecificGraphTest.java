@@ -0,0 +1,85 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SiteSpecificGraphTest
+{
+	@Test
+	public void upstreamOfSites()
+	{
+		SiteSpecificGraph graph = graph();
+
+		assertEquals(set("A", "B"), graph.getUpstream("C", "S10"));
+		assertEquals(set("A"), graph.getUpstream("C", "T20"));
+		assertEquals(set("A"), graph.getUpstream("C", set("T20", "Y5")));
+		assertEquals(set("B"), graph.getUpstream("D", "S10"));
+		assertEquals(set(), graph.getUpstream("C", "Y5"));
+		assertEquals(set(), graph.getUpstream("X", "S10"));
+	}
+
+	@Test
+	public void changesAfterQueries()
+	{
+		SiteSpecificGraph graph = graph();
+		assertEquals(set("A"), graph.getUpstream("C", "T20"));
+
+		graph.addSite("B", "C", "T20");
+		assertEquals(set("A", "B"), graph.getUpstream("C", "T20"));
+
+		graph.removeSite("A", "C", "T20");
+		assertEquals(set("B"), graph.getUpstream("C", "T20"));
+
+		graph.removeRelation("B", "C");
+		assertEquals(set("A"), graph.getUpstream("C", "S10"));
+
+		graph.putRelation("E", "C", "", "Y5");
+		assertEquals(set("E"), graph.getUpstream("C", "Y5"));
+
+		SiteSpecificGraph other = new SiteSpecificGraph("other", "phosphorylates");
+		other.putRelation("F", "D", "", "S10;S12");
+		graph.merge(other);
+		assertEquals(set("B", "F"), graph.getUpstream("D", "S10"));
+		assertEquals(set("F"), graph.getUpstream("D", "S12"));
+	}
+
+	@Test
+	public void serialization() throws IOException, ClassNotFoundException
+	{
+		SiteSpecificGraph graph = graph();
+		assertEquals(set("A", "B"), graph.getUpstream("C", "S10"));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(graph);
+		}
+		SiteSpecificGraph copy;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+		{
+			copy = (SiteSpecificGraph) in.readObject();
+		}
+
+		assertEquals(set("A", "B"), copy.getUpstream("C", "S10"));
+		copy.addSite("B", "D", "T20");
+		assertEquals(set("B"), copy.getUpstream("D", "T20"));
+	}
+
+	private SiteSpecificGraph graph()
+	{
+		SiteSpecificGraph graph = new SiteSpecificGraph("phospho", "phosphorylates");
+		graph.putRelation("A", "C", "", "S10;T20");
+		graph.putRelation("B", "C", "", "S10");
+		graph.putRelation("B", "D", "", "S10");
+		return graph;
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
@@ -0,0 +1,79 @@
+package org.panda.utility.graph;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class WeightedSearchTest
+{
+	@Test
+	public void distances()
+	{
+		WeightedSearch search = new WeightedSearch(graph());
+
+		Map<String, Double> expected = new HashMap<>();
+		expected.put("A", 0D);
+		expected.put("B", 1D);
+		expected.put("C", 2D);
+		expected.put("D", 2.5);
+		assertEquals(expected, search.getDistances(set("A"), Double.POSITIVE_INFINITY));
+
+		expected.remove("D");
+		assertEquals(expected, search.getDistances(set("A"), 2));
+
+		expected.clear();
+		expected.put("A", 0D);
+		expected.put("D", 0D);
+		expected.put("C", 0.5);
+		expected.put("B", 1D);
+		assertEquals(expected, search.getDistances(set("A", "D"), 1));
+	}
+
+	@Test
+	public void nearestAndPath()
+	{
+		WeightedSearch search = new WeightedSearch(graph());
+
+		assertEquals(Arrays.asList("B", "C"), new ArrayList<>(search.getNearest(set("A"), 2, 10).keySet()));
+		assertEquals(Arrays.asList("A", "B", "C", "D"), search.getPath("A", "D"));
+		assertEquals(Collections.emptyList(), search.getPath("A", "E"));
+		assertEquals(Collections.emptyList(), search.getPath("A", "X"));
+
+		// With inverse weights as lengths, the heavy A-C edge becomes the shortcut
+		WeightedSearch inverse = new WeightedSearch(graph(), w -> 1 / w);
+		assertEquals(Arrays.asList("A", "C", "D"), inverse.getPath("A", "D"));
+		assertEquals(Arrays.asList("A", "C", "D"), inverse.copy().getPath("A", "D"));
+	}
+
+	@Test
+	public void negativeLength()
+	{
+		try
+		{
+			new WeightedSearch(graph(), w -> w - 2);
+			fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+
+	private UndirectedGraphWithEdgeWeights graph()
+	{
+		UndirectedGraphWithEdgeWeights graph = new UndirectedGraphWithEdgeWeights("g", "t");
+		graph.putRelation("A", "B", 1);
+		graph.putRelation("B", "C", 1);
+		graph.putRelation("A", "C", 3);
+		graph.putRelation("C", "D", 0.5);
+		graph.putRelation("E", "F", 1);
+		return graph;
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
@@ -0,0 +1,65 @@
+package org.panda.utility.graph.query;
+
+import org.junit.Test;
+import org.panda.utility.graph.DirectedGraph;
+import org.panda.utility.graph.GraphList;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class QueryExecuterTest
+{
+	@Test
+	public void cachedUntilModified()
+	{
+		DirectedGraph graph = new DirectedGraph("g", "t");
+		graph.putRelation("A", "B");
+		graph.putRelation("B", "C");
+
+		QueryGraph qg = QueryExecuter.getQueryGraph(graph);
+		assertSame(qg, QueryExecuter.getQueryGraph(graph));
+		assertEquals(set(), nodeIDs(QueryExecuter.pathsFromTo(set("A"), set("D"), graph, 5, true, -1, true)));
+
+		graph.putRelation("C", "D");
+
+		assertNotSame(qg, QueryExecuter.getQueryGraph(graph));
+		assertEquals(set("A", "B", "C", "D"),
+			nodeIDs(QueryExecuter.pathsFromTo(set("A"), set("D"), graph, 5, true, -1, true)));
+	}
+
+	@Test
+	public void graphListMembers()
+	{
+		DirectedGraph g1 = new DirectedGraph("g1", "t1");
+		g1.putRelation("A", "B");
+		DirectedGraph g2 = new DirectedGraph("g2", "t2");
+		g2.putRelation("B", "C");
+		GraphList list = new GraphList("list");
+		list.addGraph(g1);
+
+		QueryGraph qg = QueryExecuter.getQueryGraph(list);
+		assertEquals(set(), nodeIDs(QueryExecuter.pathsFromTo(set("A"), set("C"), list, 5, true, -1, true)));
+
+		list.getGraphs().add(g2);
+
+		assertNotSame(qg, QueryExecuter.getQueryGraph(list));
+		assertEquals(set("A", "B", "C"),
+			nodeIDs(QueryExecuter.pathsFromTo(set("A"), set("C"), list, 5, true, -1, true)));
+	}
+
+	private Set<String> nodeIDs(Set<QueryGraphObject> result)
+	{
+		Set<String> ids = new HashSet<>();
+		for (QueryGraphObject obj : result)
+		{
+			if (obj instanceof QueryNode) ids.add(((QueryNode) obj).id);
+		}
+		return ids;
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
@@ -0,0 +1,95 @@
+package org.panda.utility.graph.query.algorithm;
+
+import org.junit.Test;
+import org.panda.utility.graph.query.QueryEdge;
+import org.panda.utility.graph.query.QueryGraph;
+import org.panda.utility.graph.query.QueryGraphObject;
+import org.panda.utility.graph.query.QueryNode;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CommonNeighborhoodIndexTest
+{
+	@Test
+	public void addAndRemoveSeeds()
+	{
+		QueryGraph graph = new QueryGraph();
+		QueryNode a = graph.getNode("A");
+		QueryNode b = graph.getNode("B");
+		QueryNode c = graph.getNode("C");
+		QueryNode d = graph.getNode("D");
+		QueryNode e = graph.getNode("E");
+
+		QueryEdge ac = addEdge(graph, a, c, "x");
+		QueryEdge bcx = addEdge(graph, b, c, "x");
+		QueryEdge bcy = addEdge(graph, b, c, "y");
+		QueryEdge cc = addEdge(graph, c, c, "x");
+		QueryEdge db = addEdge(graph, d, b, "x");
+		addEdge(graph, a, e, "x");
+
+		CommonNeighborhoodIndex index = new CommonNeighborhoodIndex(2);
+
+		assertEquals(list(), index.addSeed(a));
+		assertEquals(1, index.getCount(c));
+		assertEquals(1, index.getCount(e));
+
+		// The parallel edges from B count once
+		assertEquals(list(c), index.addSeed(b));
+		assertEquals(2, index.getCount(c));
+		assertEquals(set(c), index.getCommonNodes());
+		assertEquals(set(a, b, c, ac, bcx, bcy), index.getResult());
+
+		// C is a neighbor of itself through the self-loop
+		assertEquals(list(), index.addSeed(c));
+		assertEquals(3, index.getCount(c));
+		assertEquals(list(), index.addSeed(c));
+
+		assertEquals(list(b), index.addSeed(d));
+		assertEquals(set(b, c), index.getCommonNodes());
+		assertEquals(set(a, b, c, d, ac, bcx, bcy, cc, db), index.getResult());
+
+		assertEquals(list(), index.removeSeed(b));
+		assertEquals(list(c), index.removeSeed(a));
+		assertEquals(list(), index.removeSeed(a));
+		assertEquals(set(b), index.getCommonNodes());
+		assertEquals(set(c, d), index.getSeeds());
+		assertEquals(set(b, c, d, bcx, bcy, cc, db), index.getResult());
+	}
+
+	@Test
+	public void thresholdOfOne()
+	{
+		QueryGraph graph = new QueryGraph();
+		QueryNode a = graph.getNode("A");
+		QueryNode b = graph.getNode("B");
+		QueryNode c = graph.getNode("C");
+		QueryEdge ab = addEdge(graph, a, b, "x");
+		addEdge(graph, b, c, "x");
+
+		// A threshold below one is the same with one
+		CommonNeighborhoodIndex index = new CommonNeighborhoodIndex(0);
+		assertEquals(list(b), index.addSeed(a));
+		assertEquals(set(a, b, ab), index.getResult());
+		assertEquals(list(b), index.removeSeed(a));
+		assertEquals(set(), index.getResult());
+	}
+
+	private QueryEdge addEdge(QueryGraph graph, QueryNode source, QueryNode target, String type)
+	{
+		QueryEdge edge = new QueryEdge(source, target, type);
+		graph.addEdge(edge);
+		return edge;
+	}
+
+	private List<QueryNode> list(QueryNode... nodes)
+	{
+		return Arrays.asList(nodes);
+	}
+
+	private Set<QueryGraphObject> set(QueryGraphObject... objects)
+	{
+		return new HashSet<>(Arrays.asList(objects));
+	}
+}
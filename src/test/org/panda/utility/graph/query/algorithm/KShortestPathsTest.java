@@ -0,0 +1,107 @@
+package org.panda.utility.graph.query.algorithm;
+
+import org.junit.Test;
+import org.panda.utility.graph.query.QueryEdge;
+import org.panda.utility.graph.query.QueryGraph;
+import org.panda.utility.graph.query.QueryNode;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class KShortestPathsTest
+{
+	@Test
+	public void pathsInOrderOfLength()
+	{
+		QueryGraph graph = new QueryGraph();
+		addEdges(graph, "x", "A B", "B E", "A C", "C D", "D E", "B C", "D B");
+		addEdges(graph, "y", "B E");
+
+		KShortestPaths paths = new KShortestPaths(graph, graph.getNode("A"), graph.getNode("E"), true);
+		List<KShortestPaths.Path> list = paths.next(10);
+
+		assertEquals(6, list.size());
+		assertEquals(set("A -x- B -x- E", "A -x- B -y- E"), strings(list.subList(0, 2)));
+		assertEquals("A -x- C -x- D -x- E", list.get(2).toString());
+		assertEquals(set("A -x- B -x- C -x- D -x- E", "A -x- C -x- D -x- B -x- E", "A -x- C -x- D -x- B -y- E"),
+			strings(list.subList(3, 6)));
+		assertFalse(paths.hasNext());
+	}
+
+	@Test
+	public void limit()
+	{
+		QueryGraph graph = new QueryGraph();
+		addEdges(graph, "x", "A B", "B C", "C D", "A D");
+
+		KShortestPaths paths = new KShortestPaths(graph, graph.getNode("A"), graph.getNode("D"), true);
+		paths.setLimit(2);
+		List<KShortestPaths.Path> list = paths.next(10);
+		assertEquals(1, list.size());
+		assertEquals("A -x- D", list.get(0).toString());
+
+		// Undirected, the edges are also used backwards
+		paths = new KShortestPaths(graph, graph.getNode("D"), graph.getNode("A"), false);
+		paths.setLimit(3);
+		assertEquals(set("D -x- A", "D -x- C -x- B -x- A"), strings(paths.next(10)));
+	}
+
+	@Test
+	public void sourceIsTarget()
+	{
+		QueryGraph graph = new QueryGraph();
+		QueryNode a = graph.getNode("A");
+		QueryNode b = graph.getNode("B");
+		graph.addEdge(new QueryEdge(a, b, "x"));
+		graph.addEdge(new QueryEdge(b, a, "x"));
+		graph.addEdge(new QueryEdge(a, a, "x"));
+
+		KShortestPaths paths = new KShortestPaths(graph, a, a, false);
+		List<KShortestPaths.Path> list = paths.next(10);
+		assertEquals(1, list.size());
+		assertEquals(0, list.get(0).length());
+	}
+
+	@Test
+	public void parallelEdges()
+	{
+		QueryGraph graph = new QueryGraph();
+		addEdges(graph, "x", "A B", "C B");
+		addEdges(graph, "y", "A B");
+
+		// Each edge type between A and B gives a separate path
+		KShortestPaths paths = new KShortestPaths(graph, graph.getNode("C"), graph.getNode("A"), false);
+		assertEquals(set("C -x- B -x- A", "C -x- B -y- A"), strings(paths.next(10)));
+
+		paths = new KShortestPaths(graph, graph.getNode("C"), graph.getNode("A"), true);
+		assertFalse(paths.hasNext());
+	}
+
+	/**
+	 * Adds an edge of the type for each "source target" pair.
+	 */
+	private void addEdges(QueryGraph graph, String type, String... pairs)
+	{
+		for (String pair : pairs)
+		{
+			String[] t = pair.split(" ");
+			graph.addEdge(new QueryEdge(graph.getNode(t[0]), graph.getNode(t[1]), type));
+		}
+	}
+
+	private Set<String> strings(List<KShortestPaths.Path> paths)
+	{
+		Set<String> set = new HashSet<>();
+		for (KShortestPaths.Path path : paths)
+		{
+			set.add(path.toString());
+		}
+		return set;
+	}
+
+	private Set<String> set(String... s)
+	{
+		return new HashSet<>(Arrays.asList(s));
+	}
+}
@@ -0,0 +1,161 @@
+package org.panda.utility.graph.query.algorithm;
+
+import org.junit.Test;
+import org.panda.utility.graph.query.QueryEdge;
+import org.panda.utility.graph.query.QueryGraph;
+import org.panda.utility.graph.query.QueryGraphObject;
+import org.panda.utility.graph.query.QueryNode;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class PathsBetweenTest
+{
+	@Test
+	public void fromTo()
+	{
+		QueryGraph graph = new QueryGraph();
+		addEdges(graph, "A B", "B C", "C D", "A E", "E D", "B F", "F F", "G C");
+
+		Set<QueryNode> source = nodes(graph, "A");
+		Set<QueryNode> target = nodes(graph, "D");
+
+		assertResult(objects(graph, "A E D", "A E", "E D"), () -> new PathsBetween(source, target, true, 2));
+
+		Set<QueryGraphObject> all = objects(graph, "A B C D E", "A B", "B C", "C D", "A E", "E D");
+		assertResult(all, () -> new PathsBetween(source, target, true, 3));
+		assertResult(all, () -> new PathsBetween(source, target, true, 5));
+
+		// Only the shortest path, or up to one longer
+		assertResult(objects(graph, "A E D", "A E", "E D"), () -> shortestPlusK(source, target, 0));
+		assertResult(all, () -> shortestPlusK(source, target, 1));
+
+		// Nothing goes against the edges
+		assertResult(objects(graph, ""), () -> new PathsBetween(target, source, true, 5));
+	}
+
+	@Test
+	public void betweenSeedsUndirected()
+	{
+		QueryGraph graph = new QueryGraph();
+		addEdges(graph, "A B", "B C", "C D", "E A", "E D", "G C");
+
+		Set<QueryNode> seed = nodes(graph, "A D");
+
+		assertResult(objects(graph, "A E D", "E A", "E D"), () -> new PathsBetween(seed, false, 2));
+		assertResult(objects(graph, "A B C D E", "A B", "B C", "C D", "E A", "E D"),
+			() -> new PathsBetween(seed, false, 3));
+	}
+
+	@Test
+	public void moreSeedsThanABatch()
+	{
+		QueryGraph graph = new QueryGraph();
+		StringBuilder sources = new StringBuilder();
+		StringBuilder targets = new StringBuilder();
+		for (int i = 0; i < 300; i++)
+		{
+			addEdges(graph, "S" + i + " M" + i, "M" + i + " T" + i, "S" + i + " X" + i);
+			sources.append(" S").append(i);
+			targets.append(" T").append(i);
+		}
+
+		PathsBetween pb = new PathsBetween(nodes(graph, sources.toString()), nodes(graph, targets.toString()), true, 2);
+		Set<QueryGraphObject> result = pb.run();
+
+		assertEquals(300 * 5, result.size());
+		for (int i = 0; i < 300; i++)
+		{
+			assertTrue(result.containsAll(objects(graph, "S" + i + " M" + i + " T" + i, "S" + i + " M" + i,
+				"M" + i + " T" + i)));
+		}
+	}
+
+	@Test
+	public void concurrentQueries() throws Exception
+	{
+		QueryGraph graph = new QueryGraph();
+		addEdges(graph, "A B", "B C", "C D", "A E", "E D", "B F", "F F", "G C");
+		Set<QueryGraphObject> expected = objects(graph, "A B C D E", "A B", "B C", "C D", "A E", "E D");
+
+		Set<QueryNode> source = nodes(graph, "A");
+		Set<QueryNode> target = nodes(graph, "D");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<Set<QueryGraphObject>>> results = new ArrayList<>();
+			for (int i = 0; i < 40; i++)
+			{
+				results.add(executor.submit(() -> new PathsBetween(source, target, true, 3).run()));
+			}
+			for (Future<Set<QueryGraphObject>> result : results)
+			{
+				assertEquals(expected, result.get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Checks the result with and without the bidirectional search corridor.
+	 */
+	private void assertResult(Set<QueryGraphObject> expected, Supplier<PathsBetween> query)
+	{
+		for (boolean bidirectional : new boolean[]{false, true})
+		{
+			PathsBetween pb = query.get();
+			pb.setBidirectional(bidirectional);
+			assertEquals("bidirectional: " + bidirectional, expected, pb.run());
+		}
+	}
+
+	private PathsBetween shortestPlusK(Set<QueryNode> source, Set<QueryNode> target, int k)
+	{
+		PathsBetween pb = new PathsBetween(source, target, true, 5);
+		pb.setUseShortestPlusK(true);
+		pb.setK(k);
+		return pb;
+	}
+
+	/**
+	 * Adds an edge for each "source target" pair.
+	 */
+	private void addEdges(QueryGraph graph, String... pairs)
+	{
+		for (String pair : pairs)
+		{
+			String[] t = pair.split(" ");
+			graph.addEdge(new QueryEdge(graph.getNode(t[0]), graph.getNode(t[1]), "x"));
+		}
+	}
+
+	private Set<QueryNode> nodes(QueryGraph graph, String names)
+	{
+		Set<QueryNode> set = new HashSet<>();
+		for (String name : names.split(" "))
+		{
+			if (!name.isEmpty()) set.add(graph.getNode(name));
+		}
+		return set;
+	}
+
+	private Set<QueryGraphObject> objects(QueryGraph graph, String nodes, String... edges)
+	{
+		Set<QueryGraphObject> set = new HashSet<>(nodes(graph, nodes));
+		for (String pair : edges)
+		{
+			String[] t = pair.split(" ");
+			set.add(new QueryEdge(graph.getNode(t[0]), graph.getNode(t[1]), "x"));
+		}
+		return set;
+	}
+}
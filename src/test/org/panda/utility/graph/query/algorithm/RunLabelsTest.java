@@ -0,0 +1,71 @@
+package org.panda.utility.graph.query.algorithm;
+
+import org.junit.Test;
+import org.panda.utility.graph.query.QueryGraph;
+import org.panda.utility.graph.query.QueryNode;
+
+import static org.junit.Assert.*;
+
+public class RunLabelsTest
+{
+	@Test
+	public void labelsOfARun()
+	{
+		QueryGraph graph = new QueryGraph();
+		QueryNode a = graph.getNode("A");
+		QueryNode b = graph.getNode("B");
+
+		RunLabels labels = new RunLabels(2, 0);
+		assertEquals(RunLabels.NONE, labels.get(a, 0));
+		assertFalse(labels.isVisited(a));
+
+		labels.set(a, 0, 3);
+		labels.visit(b);
+		assertEquals(3, labels.get(a, 0));
+		assertEquals(RunLabels.NONE, labels.get(a, 1));
+		assertEquals(RunLabels.NONE, labels.get(b, 0));
+		assertTrue(labels.isVisited(b));
+		assertEquals(2, labels.getVisitedCount());
+		assertSame(a, labels.getVisited(0));
+		assertSame(b, labels.getVisited(1));
+
+		labels.clear();
+		assertEquals(RunLabels.NONE, labels.get(a, 0));
+		assertFalse(labels.isVisited(a));
+		assertEquals(0, labels.getVisitedCount());
+
+		labels.set(b, 1, 5);
+		assertEquals(5, labels.get(b, 1));
+		assertEquals(RunLabels.NONE, labels.get(b, 0));
+	}
+
+	@Test
+	public void grows()
+	{
+		QueryGraph graph = new QueryGraph();
+		RunLabels labels = new RunLabels(1, 0);
+		for (int i = 0; i < 100; i++)
+		{
+			labels.set(graph.getNode("N" + i), 0, i);
+		}
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i, labels.get(graph.getNode("N" + i), 0));
+		}
+		assertEquals(100, labels.getVisitedCount());
+	}
+
+	@Test
+	public void objectOutsideGraph()
+	{
+		try
+		{
+			new RunLabels(1, 0).visit(new QueryNode("A"));
+			fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+}
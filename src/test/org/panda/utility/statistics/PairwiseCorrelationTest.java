@@ -0,0 +1,69 @@
+package org.panda.utility.statistics;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PairwiseCorrelationTest
+{
+	@Test
+	public void matchesPearson()
+	{
+		Random rand = new Random(1);
+		double[][] rows = new double[150][300];
+		for (double[] row : rows)
+		{
+			for (int k = 0; k < row.length; k++)
+			{
+				row[k] = rand.nextGaussian();
+			}
+		}
+		Arrays.fill(rows[10], 3);
+		rows[70][5] = Double.NaN;
+		for (int k = 0; k < rows[0].length; k++)
+		{
+			rows[80][k] = rows[20][k] * 2 + rand.nextGaussian() / 10;
+		}
+
+		double[][] corr = new double[rows.length][rows.length];
+		int[] count = new int[1];
+		PairwiseCorrelation pc = new PairwiseCorrelation(rows);
+		pc.setThreads(3);
+		pc.run(0, (i, j, c) ->
+		{
+			assertTrue(i < j);
+			corr[i][j] = c;
+			count[0]++;
+		});
+
+		assertEquals(150 * 149 / 2, count[0]);
+		for (int i = 0; i < rows.length; i++)
+		{
+			for (int j = i + 1; j < rows.length; j++)
+			{
+				assertEquals(Correlation.pearsonVal(rows[i], rows[j]), corr[i][j], 1E-9);
+			}
+		}
+		assertEquals(0, corr[10][11], 0);
+		assertEquals(0, corr[70][71], 0);
+		assertTrue(corr[20][80] > 0.99);
+	}
+
+	@Test
+	public void threshold()
+	{
+		double[][] rows = {
+			{1, 2, 3, 4},
+			{2, 4, 6, 8},
+			{4, 3, 2, 1},
+			{1, 1, 1, 1},
+			{1, 2, 4, 3}};
+
+		List<String> pairs = new ArrayList<>();
+		new PairwiseCorrelation(rows).run(0.99, (i, j, c) -> pairs.add(i + " " + j + " " + Math.round(c)));
+
+		assertEquals(Arrays.asList("0 1 1", "0 2 -1", "1 2 -1"), pairs);
+	}
+}